@@ -0,0 +1,98 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Compares BatchEvaluator with asking GameManager.validateMove about every cell of every position, one position at
+ * a time, which is how the legal moves of a position were found before the batch API.
+ * Both sides work out the legal cells of both players and the stone counts; the batch also finds the groups.
+ * Positions are snapshots of seeded random games, so runs are repeatable.
+ * Usage: java BatchBenchmark [radius] [positions], defaulting to 6 and 20000.
+ */
+public class BatchBenchmark {
+    private static final long SEED = 42;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        int radius = args.length > 0 ? Integer.parseInt(args[0]) : GameState.DEFAULT_RADIUS;
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+
+        List<GameState> states = snapshots(radius, count);
+        BatchEvaluator evaluator = new BatchEvaluator(radius);
+        long[] packed = new long[count * 2 * evaluator.stride];
+        for (int i = 0; i < count; i++) evaluator.pack(states.get(i), packed, i);
+        BatchEvaluator.Results results = evaluator.newResults(count);
+
+        long scalar = Long.MAX_VALUE;
+        long serial = Long.MAX_VALUE;
+        long parallel = Long.MAX_VALUE;
+        long checksum = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (GameState state : states) checksum += perPosition(state);
+            scalar = Math.min(scalar, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            evaluator.evaluate(packed, 0, count, results);
+            serial = Math.min(serial, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            evaluator.evaluate(packed, count, results);
+            parallel = Math.min(parallel, System.nanoTime() - start);
+        }
+
+        int mismatches = 0;
+        for (int i = 0; i < count; i++) {
+            GameState state = states.get(i);
+            for (int cell = 0; cell < state.topology.cellCount; cell++) {
+                if (GameManager.isLegal(state, cell, Colour.RED) != evaluator.isLegal(results, i, Colour.RED, cell)) {
+                    mismatches++;
+                }
+            }
+        }
+
+        System.out.printf("radius %d, %d positions, %d threads (checksum %d, %d mismatches)%n", radius, count,
+                Runtime.getRuntime().availableProcessors(), checksum, mismatches);
+        System.out.printf("%-28s %14s %10s%n", "", "positions/sec", "speedup");
+        report("validateMove per position", count, scalar, scalar);
+        report("batch, one thread", count, serial, scalar);
+        report("batch, parallel", count, parallel, scalar);
+    }
+
+    private static void report(String name, int count, long nanos, long baseline) {
+        System.out.printf("%-28s %14.0f %9.1fx%n", name, count * 1e9 / nanos, (double) baseline / nanos);
+    }
+
+    // The legal cells of both players and the stone counts through the per-move rule check
+    private static int perPosition(GameState state) {
+        int legal = 0;
+        int turn = state.playerTurn;
+        List<HexCube> hexs = state.hexs();
+        for (int colour : new int[] {Colour.RED, Colour.BLUE}) {
+            state.playerTurn = colour;
+            for (HexCube hex : hexs) legal += GameManager.validateMove(state, hex, false);
+        }
+        state.playerTurn = turn;
+        return legal + state.stoneCount(Colour.RED) + state.stoneCount(Colour.BLUE);
+    }
+
+    private static List<GameState> snapshots(int radius, int count) {
+        List<GameState> states = new ArrayList<>(count);
+        SplittableRandom random = new SplittableRandom(SEED);
+        GameState state = new GameState(radius);
+        while (states.size() < count) {
+            state.reset();
+            for (int moves = 0; moves < 4 * state.topology.cellCount && states.size() < count; moves++) {
+                if (GameManager.winner(state) != -1) break;
+                Bitboard legal = GameManager.legalMoves(state, state.playerTurn);
+                if (legal.isEmpty()) break;
+                int cell = legal.nthSetBit(random.nextInt(legal.cardinality()));
+                GameManager.apply(state, GameManager.evaluate(state, cell, state.playerTurn));
+                GameState copy = new GameState(radius);
+                copy.copyFrom(state);
+                states.add(copy);
+            }
+        }
+        return states;
+    }
+}
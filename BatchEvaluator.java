@@ -0,0 +1,276 @@
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Evaluates many positions at once for analysis and training jobs: the legal cells of both players, the stone counts
+ * and the group sizes of each position, from the same rules as GameManager.
+ * Positions are packed as whole-board bit sets laid out on a padded grid, one column of 2 * radius + 2 bits per q,
+ * where the last bit of each column is always empty. On that grid every one of the six neighbour directions is a
+ * fixed shift of the whole bit set, so growing a group or finding the cells next to it is a handful of shifts and
+ * masks over a few 64-bit words instead of a walk over neighbour lists. Popcounts use Long.bitCount, which the JIT
+ * turns into a single instruction.
+ * Batches are split into chunks that run on the common fork-join pool, each worker with its own scratch space.
+ */
+public final class BatchEvaluator {
+    private static final int CHUNK = 256; // positions per parallel task
+
+    public final BoardTopology topology;
+    public final int stride; // longs per packed board
+    private final int column; // bits per q column, one more than the cells in the longest column
+    private final int[] bit; // cell -> bit on the padded grid
+    private final long[] board; // every bit that is a cell
+    private final int[] shifts;
+    private final ThreadLocal<Scratch> scratch;
+
+    /**
+     * What a batch produced, one slot per position.
+     */
+    public static final class Results {
+        /** Per position: red's legal cells then blue's, each stride longs on the padded grid. */
+        public final long[] legal;
+        /** Per position: the number of red stones, then blue. */
+        public final int[] stones;
+        /** Per position: the size of the largest red group, then blue, 0 without stones. */
+        public final int[] largestGroup;
+        /** Per position: the number of red groups, then blue. */
+        public final int[] groups;
+
+        Results(int capacity, int stride) {
+            legal = new long[capacity * 2 * stride];
+            stones = new int[capacity * 2];
+            largestGroup = new int[capacity * 2];
+            groups = new int[capacity * 2];
+        }
+    }
+
+    // Per-thread working space; groups are kept grown by one ring, so the cells around them are a single mask
+    private final class Scratch {
+        final long[] empty = new long[stride];
+        final long[] remaining = new long[stride];
+        final long[] group = new long[stride];
+        final long[] grown = new long[stride];
+        final long[] touched = new long[stride];
+        final long[][] dilated = new long[2][topology.cellCount * stride];
+        final int[][] ids = new int[2][stride * 64]; // bit -> group of the stone on it
+        final int[][] sizes = new int[2][topology.cellCount];
+        final int[] counts = new int[2];
+        final int[] smallestNeighbour = new int[topology.cellCount];
+        final int[] merged = new int[stride * 64]; // bit -> size of the group a stone there would make
+        final int[] smallest = new int[stride * 64]; // bit -> smallest opponent group that group would touch
+    }
+
+    /**
+     * Creates an evaluator for boards of the given radius.
+     *
+     * @param radius the number of rings around the centre cell
+     */
+    public BatchEvaluator(int radius) {
+        topology = BoardTopology.forRadius(radius);
+        column = 2 * radius + 2;
+        int bits = (2 * radius + 1) * column;
+        stride = (bits + 63) >>> 6;
+        bit = new int[topology.cellCount];
+        board = new long[stride];
+        for (int cell = 0; cell < topology.cellCount; cell++) {
+            int b = (topology.q(cell) + radius) * column + topology.r(cell) + radius;
+            bit[cell] = b;
+            board[b >>> 6] |= 1L << b;
+        }
+        shifts = new int[6];
+        for (int d = 0; d < 6; d++) {
+            shifts[d] = HexCube.DIRECTION_Q[d] * column + HexCube.DIRECTION_R[d];
+        }
+        scratch = ThreadLocal.withInitial(Scratch::new);
+    }
+
+    /**
+     * @return space for the results of up to capacity positions
+     */
+    public Results newResults(int capacity) {
+        return new Results(capacity, stride);
+    }
+
+    /**
+     * Packs a game's board into a batch: red's stones then blue's, each stride longs on the padded grid.
+     *
+     * @param state a game on this evaluator's board
+     * @param positions the batch, 2 * stride longs per position
+     * @param index the slot to fill
+     */
+    public void pack(GameState state, long[] positions, int index) {
+        int base = index * 2 * stride;
+        Arrays.fill(positions, base, base + 2 * stride, 0L);
+        for (int cell = 0; cell < topology.cellCount; cell++) {
+            int colour = state.colourAt(cell);
+            if (colour == Colour.WHITE) continue;
+            int at = base + (colour == Colour.RED ? 0 : stride) + (bit[cell] >>> 6);
+            positions[at] |= 1L << bit[cell];
+        }
+    }
+
+    /**
+     * @return true if the results say the colour may place on the cell in the given position
+     */
+    public boolean isLegal(Results results, int index, int colour, int cell) {
+        int at = index * 2 * stride + (colour == Colour.RED ? 0 : stride) + (bit[cell] >>> 6);
+        return (results.legal[at] & (1L << bit[cell])) != 0;
+    }
+
+    /**
+     * Evaluates a whole batch, in parallel for batches larger than one chunk.
+     *
+     * @param positions packed positions, as filled by pack
+     * @param count the number of positions to evaluate
+     * @param results receives one slot per position
+     */
+    public void evaluate(long[] positions, int count, Results results) {
+        int chunks = (count + CHUNK - 1) / CHUNK;
+        IntStream.range(0, chunks).parallel().forEach(chunk ->
+                evaluate(positions, chunk * CHUNK, Math.min(count, (chunk + 1) * CHUNK), results));
+    }
+
+    /**
+     * Evaluates a range of a batch on the calling thread.
+     */
+    public void evaluate(long[] positions, int from, int to, Results results) {
+        Scratch s = scratch.get();
+        for (int i = from; i < to; i++) {
+            int base = i * 2 * stride;
+            for (int w = 0; w < stride; w++) {
+                s.empty[w] = board[w] & ~positions[base + w] & ~positions[base + stride + w];
+            }
+            findGroups(positions, base, 0, s);
+            findGroups(positions, base + stride, 1, s);
+            for (int c = 0; c < 2; c++) {
+                int largest = 0;
+                int total = 0;
+                for (int g = 0; g < s.counts[c]; g++) {
+                    largest = Math.max(largest, s.sizes[c][g]);
+                    total += s.sizes[c][g];
+                }
+                results.stones[2 * i + c] = total;
+                results.largestGroup[2 * i + c] = largest;
+                results.groups[2 * i + c] = s.counts[c];
+            }
+            legalCells(positions, base, 0, s, results.legal, base);
+            legalCells(positions, base, 1, s, results.legal, base + stride);
+        }
+    }
+
+    // Splits one colour's stones into groups by growing each from its lowest stone until it stops changing
+    private void findGroups(long[] positions, int at, int colour, Scratch s) {
+        System.arraycopy(positions, at, s.remaining, 0, stride);
+        int count = 0;
+        long[] dilated = s.dilated[colour];
+        int[] ids = s.ids[colour];
+        for (int w = 0; w < stride; w++) {
+            while (s.remaining[w] != 0) {
+                Arrays.fill(s.group, 0L);
+                s.group[w] = Long.lowestOneBit(s.remaining[w]);
+                while (true) {
+                    dilate(s.group, s.grown);
+                    boolean changed = false;
+                    for (int k = 0; k < stride; k++) {
+                        long next = s.group[k] | (s.grown[k] & positions[at + k]);
+                        changed |= next != s.group[k];
+                        s.group[k] = next;
+                    }
+                    if (!changed) break;
+                }
+                int size = 0;
+                for (int k = 0; k < stride; k++) {
+                    s.remaining[k] &= ~s.group[k];
+                    size += Long.bitCount(s.group[k]);
+                    dilated[count * stride + k] = s.grown[k];
+                    for (long bits = s.group[k]; bits != 0; bits &= bits - 1) {
+                        ids[(k << 6) + Long.numberOfTrailingZeros(bits)] = count;
+                    }
+                }
+                s.sizes[colour][count++] = size;
+            }
+        }
+        s.counts[colour] = count;
+    }
+
+    // An empty cell away from the player's groups is always legal; one next to them must capture.
+    // Each group visits only the cells around it, so the work grows with the total group outline.
+    private void legalCells(long[] positions, int base, int colour, Scratch s, long[] legal, int at) {
+        int opponent = 1 - colour;
+        long[] own = s.dilated[colour];
+        long[] theirs = s.dilated[opponent];
+        int[] ownSizes = s.sizes[colour];
+        int[] theirSizes = s.sizes[opponent];
+        int[] ownIds = s.ids[colour];
+        int ownStones = base + (colour == 0 ? 0 : stride);
+
+        // Smallest opponent group touching each own group: any of them is captured by a big enough merge
+        Arrays.fill(s.smallestNeighbour, 0, s.counts[colour], Integer.MAX_VALUE);
+        for (int h = 0; h < s.counts[opponent]; h++) {
+            for (int w = 0; w < stride; w++) {
+                for (long bits = theirs[h * stride + w] & positions[ownStones + w]; bits != 0; bits &= bits - 1) {
+                    int g = ownIds[(w << 6) + Long.numberOfTrailingZeros(bits)];
+                    s.smallestNeighbour[g] = Math.min(s.smallestNeighbour[g], theirSizes[h]);
+                }
+            }
+        }
+
+        // Size of the merged group and smallest group it would touch, for every empty cell next to the player
+        Arrays.fill(s.touched, 0L);
+        for (int g = 0; g < s.counts[colour]; g++) {
+            for (int w = 0; w < stride; w++) {
+                long fresh = own[g * stride + w] & s.empty[w];
+                for (long bits = fresh & ~s.touched[w]; bits != 0; bits &= bits - 1) {
+                    int b = (w << 6) + Long.numberOfTrailingZeros(bits);
+                    s.merged[b] = 1;
+                    s.smallest[b] = Integer.MAX_VALUE;
+                }
+                s.touched[w] |= fresh;
+                for (long bits = fresh; bits != 0; bits &= bits - 1) {
+                    int b = (w << 6) + Long.numberOfTrailingZeros(bits);
+                    s.merged[b] += ownSizes[g];
+                    s.smallest[b] = Math.min(s.smallest[b], s.smallestNeighbour[g]);
+                }
+            }
+        }
+        for (int h = 0; h < s.counts[opponent]; h++) {
+            for (int w = 0; w < stride; w++) {
+                for (long bits = theirs[h * stride + w] & s.touched[w]; bits != 0; bits &= bits - 1) {
+                    int b = (w << 6) + Long.numberOfTrailingZeros(bits);
+                    s.smallest[b] = Math.min(s.smallest[b], theirSizes[h]);
+                }
+            }
+        }
+
+        for (int w = 0; w < stride; w++) {
+            long cells = s.empty[w] & ~s.touched[w];
+            for (long bits = s.touched[w]; bits != 0; bits &= bits - 1) {
+                int b = (w << 6) + Long.numberOfTrailingZeros(bits);
+                if (s.merged[b] > s.smallest[b]) cells |= bits & -bits;
+            }
+            legal[at + w] = cells;
+        }
+    }
+
+    // Every cell next to the set, and the set itself, restricted to the board
+    private void dilate(long[] set, long[] out) {
+        System.arraycopy(set, 0, out, 0, stride);
+        for (int shift : shifts) {
+            int words = Math.abs(shift) >>> 6;
+            int bits = Math.abs(shift) & 63;
+            if (shift > 0) {
+                for (int w = stride - 1; w >= words; w--) {
+                    long v = set[w - words] << bits;
+                    if (bits != 0 && w - words > 0) v |= set[w - words - 1] >>> (64 - bits);
+                    out[w] |= v;
+                }
+            } else {
+                for (int w = 0; w + words < stride; w++) {
+                    long v = set[w + words] >>> bits;
+                    if (bits != 0 && w + words + 1 < stride) v |= set[w + words + 1] << (64 - bits);
+                    out[w] |= v;
+                }
+            }
+        }
+        for (int w = 0; w < stride; w++) out[w] &= board[w];
+    }
+}
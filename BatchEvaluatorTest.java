@@ -0,0 +1,92 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchEvaluatorTest {
+
+    // Positions from seeded random games, snapshotted every few moves
+    private static List<GameState> positions(int radius, int count, long seed) {
+        List<GameState> positions = new ArrayList<>();
+        SplittableRandom random = new SplittableRandom(seed);
+        GameState state = new GameState(radius);
+        while (positions.size() < count) {
+            state.reset();
+            for (int moves = 0; moves < 6 * state.topology.cellCount && positions.size() < count; moves++) {
+                if (RandomGames.play(state, random) == null) break;
+                if (random.nextInt(3) == 0) positions.add(RandomGames.copy(state));
+            }
+        }
+        return positions;
+    }
+
+    private static void assertMatchesRules(int radius, int count) {
+        BatchEvaluator evaluator = new BatchEvaluator(radius);
+        List<GameState> states = positions(radius, count, radius);
+        long[] packed = new long[count * 2 * evaluator.stride];
+        for (int i = 0; i < count; i++) evaluator.pack(states.get(i), packed, i);
+        BatchEvaluator.Results results = evaluator.newResults(count);
+
+        evaluator.evaluate(packed, count, results);
+
+        for (int i = 0; i < count; i++) {
+            GameState state = states.get(i);
+            for (int colour : new int[] {Colour.RED, Colour.BLUE}) {
+                int c = colour == Colour.RED ? 0 : 1;
+                for (int cell = 0; cell < state.topology.cellCount; cell++) {
+                    assertEquals(GameManager.isLegal(state, cell, colour), evaluator.isLegal(results, i, colour, cell));
+                }
+                assertEquals(state.stoneCount(colour), results.stones[2 * i + c]);
+
+                int largest = 0;
+                int groups = 0;
+                for (int cell = 0; cell < state.topology.cellCount; cell++) {
+                    if (state.colourAt(cell) != colour) continue;
+                    largest = Math.max(largest, state.groups.size(cell));
+                    if (state.groups.find(cell) == cell) groups++;
+                }
+                assertEquals(largest, results.largestGroup[2 * i + c]);
+                assertEquals(groups, results.groups[2 * i + c]);
+            }
+        }
+    }
+
+    @Test
+    public void testMatchesRulesOnSmallBoard() {
+        assertMatchesRules(2, 300);
+    }
+
+    @Test
+    public void testMatchesRulesOnStandardBoard() {
+        assertMatchesRules(GameState.DEFAULT_RADIUS, 600);
+    }
+
+    @Test
+    public void testMatchesRulesWhenBoardSpansManyWords() {
+        assertMatchesRules(9, 100);
+    }
+
+    @Test
+    public void testMatchesRulesWhenColumnsAreLongerThanAWord() {
+        assertMatchesRules(32, 20);
+    }
+
+    @Test
+    public void testEmptyBoardIsAllLegal() {
+        BatchEvaluator evaluator = new BatchEvaluator(3);
+        long[] packed = new long[2 * evaluator.stride];
+        evaluator.pack(new GameState(3), packed, 0);
+        BatchEvaluator.Results results = evaluator.newResults(1);
+
+        evaluator.evaluate(packed, 0, 1, results);
+
+        for (int cell = 0; cell < evaluator.topology.cellCount; cell++) {
+            assertTrue(evaluator.isLegal(results, 0, Colour.RED, cell));
+        }
+        assertEquals(0, results.stones[0]);
+        assertEquals(0, results.largestGroup[1]);
+    }
+}
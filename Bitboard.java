@@ -0,0 +1,105 @@
+/**
+ * Fixed-width bit set holding one bit per cell of a HexOust board.
+ * Cell indices come from the board's BoardTopology, so rule checks work on whole 64-bit words
+ * instead of walking lists of HexCube objects.
+ */
+public final class Bitboard {
+    final long[] words;
+
+    /**
+     * Creates an empty set wide enough for the given number of cells.
+     *
+     * @param cells the number of cells on the board
+     */
+    public Bitboard(int cells) {
+        words = new long[(cells + 63) >>> 6];
+    }
+
+    public boolean get(int cell) {
+        return (words[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    public void set(int cell) {
+        words[cell >>> 6] |= 1L << cell;
+    }
+
+    public void clear(int cell) {
+        words[cell >>> 6] &= ~(1L << cell);
+    }
+
+    public void clear() {
+        java.util.Arrays.fill(words, 0L);
+    }
+
+    public void copyFrom(Bitboard other) {
+        System.arraycopy(other.words, 0, words, 0, words.length);
+    }
+
+    public void or(Bitboard other) {
+        for (int w = 0; w < words.length; w++) words[w] |= other.words[w];
+    }
+
+    public void and(Bitboard other) {
+        for (int w = 0; w < words.length; w++) words[w] &= other.words[w];
+    }
+
+    public void andNot(Bitboard other) {
+        for (int w = 0; w < words.length; w++) words[w] &= ~other.words[w];
+    }
+
+    public boolean intersects(Bitboard other) {
+        for (int w = 0; w < words.length; w++) {
+            if ((words[w] & other.words[w]) != 0) return true;
+        }
+        return false;
+    }
+
+    public boolean isEmpty() {
+        for (long word : words) {
+            if (word != 0) return false;
+        }
+        return true;
+    }
+
+    public int cardinality() {
+        int count = 0;
+        for (long word : words) count += Long.bitCount(word);
+        return count;
+    }
+
+    /**
+     * Finds the first set bit at or after the given cell.
+     *
+     * @param from the cell index to start searching from
+     * @return the index of the next set bit, or -1 if there is none
+     */
+    public int nextSetBit(int from) {
+        int w = from >>> 6;
+        if (w >= words.length) return -1;
+        long word = words[w] & (-1L << from);
+        while (true) {
+            if (word != 0) return (w << 6) + Long.numberOfTrailingZeros(word);
+            if (++w == words.length) return -1;
+            word = words[w];
+        }
+    }
+
+    /**
+     * Finds the set bit of the given rank, counting from zero, skipping whole words by their bit counts.
+     *
+     * @param n the rank of the wanted bit
+     * @return the cell index of the bit, or -1 if fewer than n + 1 bits are set
+     */
+    public int nthSetBit(int n) {
+        for (int w = 0; w < words.length; w++) {
+            long word = words[w];
+            int count = Long.bitCount(word);
+            if (n < count) {
+                for (int i = 0; i < n; i++) word &= word - 1;
+                return (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+            n -= count;
+        }
+        return -1;
+    }
+}
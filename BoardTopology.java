@@ -0,0 +1,129 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable geometry of a hexagonal board of a given radius.
+ * Cells get dense indices, neighbours are kept in a primitive table and coordinates map to indices through a flat
+ * array, so every lookup the rules need is O(1) and memory grows linearly with the number of cells. One instance is built per radius and shared by every game and thread.
+ */
+public final class BoardTopology {
+    private static final ConcurrentHashMap<Integer, BoardTopology> topologies = new ConcurrentHashMap<>();
+
+    public final int radius;
+    public final int cellCount;
+    public final int words;
+    public final Zobrist zobrist;
+    public final Symmetry symmetry;
+
+    private final int span;
+    private final int[] index; // (q, r) -> cell index, -1 when off the board
+    private final int[] cellQ;
+    private final int[] cellR;
+    private final int[][] neighbours;
+    private final ThreadLocal<FloodFill> floodFills = ThreadLocal.withInitial(() -> new FloodFill(this));
+
+    private BoardTopology(int radius) {
+        if (radius < 0) throw new IllegalArgumentException("radius must not be negative");
+        this.radius = radius;
+        this.cellCount = 3 * radius * (radius + 1) + 1;
+        this.words = (cellCount + 63) >>> 6;
+        this.span = 2 * radius + 1;
+        this.index = new int[span * span];
+        this.cellQ = new int[cellCount];
+        this.cellR = new int[cellCount];
+        this.neighbours = new int[cellCount][];
+        this.zobrist = new Zobrist(cellCount);
+
+        Arrays.fill(index, -1);
+        int cell = 0;
+        // Same q-then-r order FrontEnd uses to lay out the board
+        for (int q = -radius; q <= radius; q++) {
+            for (int r = -radius; r <= radius; r++) {
+                if (Math.abs(q + r) > radius) continue;
+                index[(q + radius) * span + (r + radius)] = cell;
+                cellQ[cell] = q;
+                cellR[cell] = r;
+                cell++;
+            }
+        }
+
+        int[] buffer = new int[6];
+        for (int i = 0; i < cellCount; i++) {
+            int count = 0;
+            for (int d = 0; d < 6; d++) {
+                int n = index(cellQ[i] + HexCube.DIRECTION_Q[d], cellR[i] + HexCube.DIRECTION_R[d]);
+                if (n != -1) buffer[count++] = n;
+            }
+            neighbours[i] = Arrays.copyOf(buffer, count);
+        }
+        this.symmetry = new Symmetry(this);
+    }
+
+    /**
+     * Returns the shared topology for a board radius, building it on first use.
+     *
+     * @param radius the number of rings around the centre cell
+     * @return the topology for that radius
+     */
+    public static BoardTopology forRadius(int radius) {
+        return topologies.computeIfAbsent(radius, BoardTopology::new);
+    }
+
+    /**
+     * Looks up the dense cell index of an axial coordinate.
+     *
+     * @param q the q coordinate
+     * @param r the r coordinate
+     * @return the cell index, or -1 if the coordinate is not on the board
+     */
+    public int index(int q, int r) {
+        if (q < -radius || q > radius || r < -radius || r > radius) return -1;
+        return index[(q + radius) * span + (r + radius)];
+    }
+
+    public int q(int cell) {
+        return cellQ[cell];
+    }
+
+    public int r(int cell) {
+        return cellR[cell];
+    }
+
+    public int s(int cell) {
+        return -cellQ[cell] - cellR[cell];
+    }
+
+    /**
+     * Returns the on-board neighbours of a cell. The array is shared and must not be modified.
+     *
+     * @param cell the cell index
+     * @return the indices of the adjacent cells
+     */
+    public int[] neighbours(int cell) {
+        return neighbours[cell];
+    }
+
+    /**
+     * Checks whether any neighbour of a cell holds one of the given stones.
+     * Costs at most six bit tests whatever the board size, unlike intersecting whole bitboards.
+     *
+     * @param cell the cell index
+     * @param stones the stones to look for
+     * @return true if the cell is next to at least one of the stones
+     */
+    public boolean touches(int cell, Bitboard stones) {
+        for (int n : neighbours[cell]) {
+            if (stones.get(n)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the flood fill scratch space belonging to the calling thread for this board.
+     *
+     * @return the calling thread's flood fill
+     */
+    public FloodFill floodFill() {
+        return floodFills.get();
+    }
+}
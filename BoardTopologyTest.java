@@ -0,0 +1,50 @@
+import org.junit.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BoardTopologyTest {
+
+    @Test
+    public void testCellCountForRadius() {
+        assertEquals(1, BoardTopology.forRadius(0).cellCount);
+        assertEquals(7, BoardTopology.forRadius(1).cellCount);
+        assertEquals(127, BoardTopology.forRadius(6).cellCount);
+        assertEquals(7651, BoardTopology.forRadius(50).cellCount);
+    }
+
+    @Test
+    public void testTopologyIsShared() {
+        assertSame(BoardTopology.forRadius(6), BoardTopology.forRadius(6));
+    }
+
+    @Test
+    public void testIndexRoundTrip() {
+        BoardTopology topology = BoardTopology.forRadius(6);
+        for (int cell = 0; cell < topology.cellCount; cell++) {
+            assertEquals(cell, topology.index(topology.q(cell), topology.r(cell)));
+            assertEquals(0, topology.q(cell) + topology.r(cell) + topology.s(cell));
+        }
+        assertEquals(-1, topology.index(7, 0));
+        assertEquals(-1, topology.index(4, 4));
+    }
+
+    @Test
+    public void testNeighbourCounts() {
+        BoardTopology topology = BoardTopology.forRadius(6);
+        assertEquals(6, topology.neighbours(topology.index(0, 0)).length);
+        assertEquals(3, topology.neighbours(topology.index(6, 0)).length);
+        assertEquals(4, topology.neighbours(topology.index(6, -3)).length);
+    }
+
+    @Test
+    public void testNeighboursAreSymmetric() {
+        BoardTopology topology = BoardTopology.forRadius(6);
+        for (int cell = 0; cell < topology.cellCount; cell++) {
+            Bitboard self = new Bitboard(topology.cellCount);
+            self.set(cell);
+            for (int n : topology.neighbours(cell)) {
+                assertTrue(topology.touches(n, self));
+            }
+        }
+    }
+}
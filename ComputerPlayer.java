@@ -0,0 +1,246 @@
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Computer opponent that plays one colour with the alpha-beta Search and thinks on the human's time.
+ * While the human is to move it ponders on a background thread: it predicts the human's reply, then searches the
+ * position after that reply and after a few other likely replies in turn, keeping each result by position key.
+ * When the human's move arrives, a matching pondered result is played at once and any other position is searched
+ * with a transposition table already warmed by pondering; results for replies that were not played are dropped.
+ * All engine work runs on one background thread, and results are handed back through the given UI executor,
+ * so the caller's thread never waits for the engine.
+ */
+public class ComputerPlayer {
+    static final int PONDER_REPLIES = 4; // replies pondered besides the predicted one
+    static final int INSTANT_DEPTH = 4; // pondered results at least this deep are played without searching again
+
+    private static final long PREDICT_MILLIS = 50;
+    private static final long SLICE_MILLIS = 100; // ponder time per reply before moving on to the next
+
+    public final int colour;
+    private final long thinkMillis;
+    private final Executor ui;
+    private final Search search = new Search(new TranspositionTable(32));
+    private final ExecutorService engine = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "HexOust engine");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private OpeningBook book;
+    private final ConcurrentHashMap<Long, Pondered> pondered = new ConcurrentHashMap<>();
+    private volatile int generation = 0; // bumped whenever pondering or a response must stop
+    private volatile int predicted = GameManager.PASS;
+    private volatile int ponderHits = 0;
+    // What the engine was last asked to do, each tagged with the generation it started in; only touched on the UI
+    // thread. Positions are told apart by key, requests by generation, since a game can come back to a position.
+    private long ponderingKey;
+    private long respondingKey;
+    private int pondering = -1;
+    private int responding = -1;
+    private boolean busy; // pondering or responding
+
+    private static final class Pondered {
+        final MoveResult move;
+        final int depth;
+
+        Pondered(MoveResult move, int depth) {
+            this.move = move;
+            this.depth = depth;
+        }
+    }
+
+    /**
+     * Creates a computer player.
+     *
+     * @param colour the colour it plays
+     * @param thinkMillis the time it may search when nothing useful was pondered
+     * @param ui runs the move callbacks, typically Platform::runLater
+     */
+    public ComputerPlayer(int colour, long thinkMillis, Executor ui) {
+        this.colour = colour;
+        this.thinkMillis = thinkMillis;
+        this.ui = ui;
+    }
+
+    /**
+     * Lets the player read exact results from a solved table. Call before the first move.
+     *
+     * @param tablebase the table, or null to search everything
+     */
+    public void useTablebase(Tablebase tablebase) {
+        search.setTablebase(tablebase);
+    }
+
+    /**
+     * Sets the weights the player's search scores positions with. Call before the first move.
+     *
+     * @param weights the weights, for example loaded from a file written by Tuner
+     */
+    public void useWeights(EvalWeights weights) {
+        search.setWeights(weights);
+    }
+
+    /**
+     * Lets the player answer straight from an opening book in positions it covers. Call before the first move.
+     *
+     * @param book the book, or null to search every position
+     */
+    public void useBook(OpeningBook book) {
+        this.book = book;
+    }
+
+    /**
+     * Starts thinking about the human's likely replies in the given position, unless it already is.
+     * Returns at once.
+     *
+     * @param game the game, with the human to move
+     */
+    public void startPondering(GameState game) {
+        if (busy && pondering == generation && ponderingKey == game.key()) return;
+        stopPondering();
+        busy = true;
+        pondering = generation;
+        ponderingKey = game.key();
+        pondered.clear();
+
+        GameState position = new GameState(game.topology.radius);
+        position.copyFrom(game);
+        int ponderGeneration = generation;
+        engine.execute(() -> ponder(position, ponderGeneration));
+    }
+
+    /**
+     * Stops pondering, and drops the move being worked out if any, without waiting for the background thread.
+     */
+    public void stopPondering() {
+        generation++;
+        search.cancel();
+        busy = false;
+    }
+
+    /**
+     * Works out the computer's move in the given position, unless it is already doing so, and passes it to the
+     * callback on the UI executor. Returns at once. The callback is skipped if the game has moved on by then.
+     *
+     * @param game the game, with the computer to move
+     * @param onMove receives the move to play, or null if the computer has no legal move
+     */
+    public void respond(GameState game, Consumer<MoveResult> onMove) {
+        long key = game.key();
+        if (busy && responding == generation && respondingKey == key) return;
+        stopPondering();
+        busy = true;
+        int request = generation;
+        responding = request;
+        respondingKey = key;
+
+        GameState position = new GameState(game.topology.radius);
+        position.copyFrom(game);
+        engine.execute(() -> {
+            MoveResult move = choose(position, key);
+            ui.execute(() -> {
+                if (generation != request || game.key() != key) return; // stopped, restarted or moved on meanwhile
+                busy = false;
+                onMove.accept(move);
+            });
+        });
+    }
+
+    /**
+     * @return the human reply pondering expects, or GameManager.PASS before one is known
+     */
+    public int predictedReply() {
+        return predicted;
+    }
+
+    /**
+     * @return how many moves were played straight from pondered results
+     */
+    public int ponderHits() {
+        return ponderHits;
+    }
+
+    /**
+     * Stops the background thread. The player cannot be used afterwards.
+     */
+    public void shutdown() {
+        stopPondering();
+        engine.shutdownNow();
+    }
+
+    // A book move, a pondered move deep enough to trust, or a fresh search, in that order
+    private MoveResult choose(GameState position, long key) {
+        MoveResult move = book == null ? null : book.probe(position);
+        if (move != null) return move;
+        Pondered hit = pondered.get(key);
+        if (hit != null && hit.depth >= INSTANT_DEPTH) {
+            ponderHits++;
+            return hit.move;
+        }
+        search.clearCancel(); // a stopPondering from now on stops this search too
+        return search.search(position, thinkMillis, Search.MAX_DEPTH);
+    }
+
+    // Runs on the engine thread until generation moves on
+    private void ponder(GameState position, int ponderGeneration) {
+        predicted = GameManager.PASS;
+        // cleared before the generation checks, so a stopPondering after a check still cancels the search it allowed
+        search.clearCancel();
+        if (generation != ponderGeneration) return;
+        MoveResult prediction = search.search(position, PREDICT_MILLIS, Search.MAX_DEPTH);
+        if (prediction == null || generation != ponderGeneration) return;
+        predicted = prediction.cell;
+
+        // The predicted reply first, then the replies that capture the most
+        int human = position.playerTurn;
+        ArrayList<MoveResult> captures = new ArrayList<>();
+        Bitboard legal = GameManager.legalMoves(position, human);
+        for (int cell = legal.nextSetBit(0); cell != -1; cell = legal.nextSetBit(cell + 1)) {
+            MoveResult reply = GameManager.cachedEvaluate(position, cell, human);
+            if (cell != prediction.cell && reply.movesAgain) captures.add(reply);
+        }
+        captures.sort((a, b) -> b.capturedStoneCount() - a.capturedStoneCount());
+        int count = 1 + Math.min(PONDER_REPLIES, captures.size());
+        MoveResult[] replies = new MoveResult[count];
+        replies[0] = prediction;
+        for (int r = 1; r < count; r++) {
+            replies[r] = captures.get(r - 1);
+        }
+
+        GameState[] after = new GameState[count];
+        for (int r = 0; r < count; r++) {
+            after[r] = new GameState(position.topology.radius);
+            after[r].copyFrom(position);
+            GameManager.apply(after[r], replies[r]);
+        }
+
+        // Round-robin slices, so every likely reply gets deeper as the human keeps thinking
+        boolean progress = true;
+        while (progress && generation == ponderGeneration) {
+            progress = false;
+            for (int r = 0; r < count && generation == ponderGeneration; r++) {
+                if (after[r].playerTurn != colour) continue; // a capture: the human moves again, predicted next time
+                long key = after[r].key();
+                Pondered previous = pondered.get(key);
+                if (previous != null && previous.depth >= Search.MAX_DEPTH) continue;
+                search.clearCancel();
+                if (generation != ponderGeneration) return;
+                MoveResult move = search.search(after[r], SLICE_MILLIS, Search.MAX_DEPTH);
+                if (generation != ponderGeneration) return;
+                int depth = search.completedDepth();
+                if (Math.abs(search.score()) >= Search.WIN - Search.MAX_DEPTH * 2 && depth > 0) {
+                    depth = Search.MAX_DEPTH; // forced result, deeper search will not change it
+                }
+                if (previous == null || depth >= previous.depth) {
+                    pondered.put(key, new Pondered(move, depth));
+                }
+                progress = true;
+            }
+        }
+    }
+}
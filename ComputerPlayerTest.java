@@ -0,0 +1,113 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ComputerPlayerTest {
+    private GameState state;
+    private ComputerPlayer computer;
+
+    @Before
+    public void setUp() {
+        state = new GameState();
+        computer = new ComputerPlayer(Colour.BLUE, 200, Runnable::run);
+    }
+
+    @After
+    public void tearDown() {
+        computer.shutdown();
+    }
+
+    private MoveResult respond() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<MoveResult> chosen = new AtomicReference<>();
+        computer.respond(state, move -> {
+            chosen.set(move);
+            done.countDown();
+        });
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        return chosen.get();
+    }
+
+    @Test
+    public void testRespondsWithLegalMove() throws InterruptedException {
+        GameManager.apply(state, GameManager.evaluate(state, state.cellIndex(state.hexAt(0, 0, 0)), Colour.RED));
+
+        MoveResult move = respond();
+
+        assertNotNull(move);
+        assertEquals(Colour.BLUE, move.player);
+        assertTrue(GameManager.evaluate(state, move.cell, Colour.BLUE).legal);
+    }
+
+    @Test
+    public void testPredictedReplyIsAnsweredFromPondering() throws InterruptedException {
+        state = new GameState(2); // small enough to ponder deep within the test
+        computer.startPondering(state);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (computer.predictedReply() == GameManager.PASS && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(500); // let pondering get deep on the predicted reply
+
+        int reply = computer.predictedReply();
+        GameManager.apply(state, GameManager.evaluate(state, reply, Colour.RED));
+        MoveResult move = respond();
+
+        assertNotNull(move);
+        assertEquals(1, computer.ponderHits());
+        assertTrue(GameManager.evaluate(state, move.cell, Colour.BLUE).legal);
+    }
+
+    @Test
+    public void testRestartDropsTheCancelledResponse() throws InterruptedException {
+        BlockingQueue<Runnable> callbacks = new LinkedBlockingQueue<>();
+        computer.shutdown();
+        computer = new ComputerPlayer(Colour.RED, 200, callbacks::add);
+        state = new GameState(2);
+        assertEquals(0, state.key()); // the opening position has the key 0
+
+        AtomicReference<MoveResult> cancelled = new AtomicReference<>();
+        AtomicReference<MoveResult> chosen = new AtomicReference<>();
+        computer.respond(state, cancelled::set);
+        computer.stopPondering(); // the game restarts in the same position
+        computer.respond(state, chosen::set);
+
+        Runnable stale = callbacks.poll(10, TimeUnit.SECONDS);
+        assertNotNull(stale);
+        stale.run();
+        assertNull(cancelled.get());
+        computer.respond(state, cancelled::set); // still responding, so not searched again
+
+        Runnable current = callbacks.poll(10, TimeUnit.SECONDS);
+        assertNotNull(current);
+        current.run();
+        assertNotNull(chosen.get());
+        assertNull(cancelled.get());
+        assertNull(callbacks.poll(500, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testStaleMoveIsDropped() throws InterruptedException {
+        GameManager.apply(state, GameManager.evaluate(state, state.cellIndex(state.hexAt(0, 0, 0)), Colour.RED));
+        CountDownLatch searched = new CountDownLatch(1);
+        AtomicReference<MoveResult> chosen = new AtomicReference<>();
+        computer.shutdown();
+        computer = new ComputerPlayer(Colour.BLUE, 200, task -> {
+            state.reset(); // the game moves on before the move is handed back
+            task.run();
+            searched.countDown();
+        });
+        computer.respond(state, chosen::set);
+
+        assertTrue(searched.await(10, TimeUnit.SECONDS));
+        assertNull(chosen.get());
+    }
+}
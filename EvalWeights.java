@@ -0,0 +1,131 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+/**
+ * Weights of the heuristic position score used by Search: each is multiplied by the difference between the
+ * player to move and the opponent in one feature of the position. The features are the stones on the board,
+ * the size of the largest group, the legal moves that capture, and all legal moves.
+ * Weights are stored as a small properties file, so a set tuned by Tuner can be loaded at startup.
+ */
+public final class EvalWeights {
+    public static final int FEATURES = 4;
+    static final String[] NAMES = {"stones", "largestGroup", "captureThreats", "mobility"};
+
+    /** The hand-picked weights the engine used before tuning. */
+    public static final EvalWeights DEFAULT = new EvalWeights(100, 0, 0, 2);
+
+    private final int[] weights;
+
+    public EvalWeights(int stones, int largestGroup, int captureThreats, int mobility) {
+        this.weights = new int[] {stones, largestGroup, captureThreats, mobility};
+    }
+
+    /**
+     * @return the weight of a feature, indexed like NAMES
+     */
+    public int weight(int feature) {
+        return weights[feature];
+    }
+
+    /**
+     * Scores a position for the player to move.
+     *
+     * @param state the position
+     * @return the score, positive when the player to move is ahead
+     */
+    public int score(GameState state) {
+        int player = state.playerTurn;
+        int opponent = player == Colour.RED ? Colour.BLUE : Colour.RED;
+        int score = weights[0] * (state.stoneCount(player) - state.stoneCount(opponent));
+        if (weights[1] != 0) score += weights[1] * (largestGroup(state, player) - largestGroup(state, opponent));
+        Bitboard own = GameManager.legalMoves(state, player);
+        Bitboard theirs = GameManager.legalMoves(state, opponent);
+        if (weights[2] != 0) score += weights[2] * (captures(state, own, player) - captures(state, theirs, opponent));
+        return score + weights[3] * (own.cardinality() - theirs.cardinality());
+    }
+
+    /**
+     * Works out the feature differences of a position from one player's side.
+     *
+     * @param state the position
+     * @param player the player the differences favour when positive
+     * @param features receives FEATURES values, indexed like NAMES
+     */
+    static void features(GameState state, int player, int[] features) {
+        int opponent = player == Colour.RED ? Colour.BLUE : Colour.RED;
+        Bitboard own = GameManager.legalMoves(state, player);
+        Bitboard theirs = GameManager.legalMoves(state, opponent);
+        features[0] = state.stoneCount(player) - state.stoneCount(opponent);
+        features[1] = largestGroup(state, player) - largestGroup(state, opponent);
+        features[2] = captures(state, own, player) - captures(state, theirs, opponent);
+        features[3] = own.cardinality() - theirs.cardinality();
+    }
+
+    private static int largestGroup(GameState state, int colour) {
+        Bitboard stones = state.stonesOf(colour);
+        int largest = 0;
+        for (int cell = stones.nextSetBit(0); cell != -1; cell = stones.nextSetBit(cell + 1)) {
+            largest = Math.max(largest, state.groups.size(cell));
+        }
+        return largest;
+    }
+
+    // A legal move next to the player's own stones is always a capture
+    private static int captures(GameState state, Bitboard legal, int colour) {
+        Bitboard stones = state.stonesOf(colour);
+        int count = 0;
+        for (int cell = legal.nextSetBit(0); cell != -1; cell = legal.nextSetBit(cell + 1)) {
+            if (state.topology.touches(cell, stones)) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Reads weights from a properties file. Missing weights keep their default value.
+     *
+     * @param path the file written by save
+     * @return the weights
+     */
+    public static EvalWeights load(Path path) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path)) {
+            properties.load(reader);
+        }
+        int[] values = new int[FEATURES];
+        for (int f = 0; f < FEATURES; f++) {
+            String value = properties.getProperty(NAMES[f]);
+            values[f] = value == null ? DEFAULT.weights[f] : Integer.parseInt(value.trim());
+        }
+        return new EvalWeights(values[0], values[1], values[2], values[3]);
+    }
+
+    /**
+     * Writes the weights as a properties file.
+     *
+     * @param path the file to write
+     * @param comment a line describing where the weights came from
+     */
+    public void save(Path path, String comment) throws IOException {
+        Properties properties = new Properties();
+        for (int f = 0; f < FEATURES; f++) {
+            properties.setProperty(NAMES[f], Integer.toString(weights[f]));
+        }
+        try (Writer writer = Files.newBufferedWriter(path)) {
+            properties.store(writer, comment);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (int f = 0; f < FEATURES; f++) {
+            if (f > 0) text.append(' ');
+            text.append(NAMES[f]).append('=').append(weights[f]);
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,112 @@
+import java.util.Arrays;
+
+/**
+ * Iterative flood fill over a board's stones using reusable scratch buffers.
+ * Groups are appended to a shared cell buffer and handed back as index ranges, and visited cells are tracked with
+ * a generation stamp, so a fill allocates nothing once the buffers exist. An instance belongs to a single thread;
+ * use {@link BoardTopology#floodFill()} to get the calling thread's one.
+ */
+public final class FloodFill {
+    private final BoardTopology topology;
+    private final int[] stack;
+    private final int[] cells;
+    private final int[] visited;
+    private int generation = 0;
+    private int length = 0;
+
+    FloodFill(BoardTopology topology) {
+        this.topology = topology;
+        this.stack = new int[topology.cellCount];
+        this.cells = new int[topology.cellCount];
+        this.visited = new int[topology.cellCount];
+    }
+
+    /**
+     * Empties the cell buffer and forgets every visited cell.
+     */
+    public void reset() {
+        length = 0;
+        if (++generation == Integer.MAX_VALUE) {
+            Arrays.fill(visited, 0);
+            generation = 1;
+        }
+    }
+
+    /**
+     * Appends the group of connected stones containing the given cell to the cell buffer.
+     * The start cell is always part of the group, so a stone that is about to be placed can be tested without
+     * writing it into the board first. Cells already visited since the last reset are skipped, which lets a
+     * caller label every group on the board with one reset and repeated appends.
+     *
+     * @param cell the cell the group grows from
+     * @param stones the stones of one colour
+     * @return the start of the group's range in {@link #cells()}; the range ends at {@link #length()}
+     */
+    public int append(int cell, Bitboard stones) {
+        int start = length;
+        if (visited[cell] == generation) return start;
+
+        int top = 0;
+        visited[cell] = generation;
+        stack[top++] = cell;
+        while (top > 0) {
+            int current = stack[--top];
+            cells[length++] = current;
+            for (int n : topology.neighbours(current)) {
+                if (visited[n] != generation && stones.get(n)) {
+                    visited[n] = generation;
+                    stack[top++] = n;
+                }
+            }
+        }
+        return start;
+    }
+
+    /**
+     * Resets the buffer and fills the single group containing the given cell.
+     *
+     * @param cell the cell the group grows from
+     * @param stones the stones of one colour
+     * @return the number of cells in the group, which occupy the start of {@link #cells()}
+     */
+    public int fill(int cell, Bitboard stones) {
+        reset();
+        append(cell, stones);
+        return length;
+    }
+
+    /**
+     * Marks a single cell as visited without filling from it, so callers can count things once per reset.
+     *
+     * @param cell the cell to mark
+     * @return true if the cell had not been visited or marked since the last reset
+     */
+    public boolean mark(int cell) {
+        if (visited[cell] == generation) return false;
+        visited[cell] = generation;
+        return true;
+    }
+
+    /**
+     * @return true if the cell was reached by a fill since the last reset
+     */
+    public boolean visited(int cell) {
+        return visited[cell] == generation;
+    }
+
+    /**
+     * Returns the cell buffer. It is reused by the next fill and must not be kept.
+     *
+     * @return the cells of every group appended since the last reset
+     */
+    public int[] cells() {
+        return cells;
+    }
+
+    /**
+     * @return the number of cells appended since the last reset
+     */
+    public int length() {
+        return length;
+    }
+}
@@ -0,0 +1,68 @@
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FloodFillTest {
+    private BoardTopology topology;
+    private Bitboard stones;
+
+    @Before
+    public void setup() {
+        topology = BoardTopology.forRadius(6);
+        stones = new Bitboard(topology.cellCount);
+    }
+
+    @Test
+    public void testFillFollowsConnectedStones() {
+        stones.set(topology.index(1, 0));
+        stones.set(topology.index(2, 0));
+        stones.set(topology.index(4, 0));
+
+        FloodFill fill = topology.floodFill();
+        int size = fill.fill(topology.index(0, 0), stones);
+
+        assertEquals(3, size);
+        assertTrue(fill.visited(topology.index(2, 0)));
+        assertFalse(fill.visited(topology.index(4, 0)));
+    }
+
+    @Test
+    public void testAppendReturnsRangesPerGroup() {
+        stones.set(topology.index(0, 0));
+        stones.set(topology.index(1, 0));
+        stones.set(topology.index(-3, 0));
+
+        FloodFill fill = topology.floodFill();
+        fill.reset();
+        int first = fill.append(topology.index(0, 0), stones);
+        int second = fill.append(topology.index(-3, 0), stones);
+        int repeat = fill.append(topology.index(1, 0), stones);
+
+        assertEquals(0, first);
+        assertEquals(2, second);
+        assertEquals(3, fill.length());
+        assertEquals(fill.length(), repeat);
+        assertEquals(topology.index(-3, 0), fill.cells()[second]);
+    }
+
+    @Test
+    public void testFillCoversWholeLargeBoard() {
+        BoardTopology large = BoardTopology.forRadius(40);
+        Bitboard full = new Bitboard(large.cellCount);
+        for (int i = 0; i < large.cellCount; i++) full.set(i);
+
+        assertEquals(large.cellCount, large.floodFill().fill(0, full));
+    }
+
+    @Test
+    public void testEachThreadGetsItsOwnBuffers() throws InterruptedException {
+        FloodFill[] other = new FloodFill[1];
+        Thread thread = new Thread(() -> other[0] = topology.floodFill());
+        thread.start();
+        thread.join();
+
+        assertSame(topology.floodFill(), topology.floodFill());
+        assertNotSame(topology.floodFill(), other[0]);
+    }
+}
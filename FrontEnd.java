@@ -13,7 +13,6 @@ import javafx.scene.text.Text;
 import javafx.stage.Stage;
 import javafx.util.Duration;
 import java.util.ArrayList;
-import java.util.HashMap;
 
 /**
  * Handles all user interface rendering and interaction logic for the HexOust game.
@@ -21,6 +20,13 @@ import java.util.HashMap;
  */
 
 public class FrontEnd {
+    static GameState game; // the game shown in the window, bound by GameManager.startGame
+    static ComputerPlayer computer; // plays one colour when set, otherwise two humans share the board
+    static MoveJournal journal; // records every game played in the window when set
+    private static long journalGame; // the journal's number for the game on the board
+    static GameRecording replay; // when set the window shows this recording instead of a game being played
+    private static int replayMove; // the number of moves of the recording shown on the board
+    private static javafx.scene.control.Slider replaySlider;
     private static Text invalidMoveText;
     public static Sphere sphere; // Store sphere as instance variable
 
@@ -33,12 +39,43 @@ public class FrontEnd {
     public static void updateGameUI(Group root, Scene scene) {
         clearUI(root);
         Layout layout = setupLayout(scene);
-        HashMap<String, HexCube> hexMap = buildHexMap();//store all hexagons and make them easily findable
-        renderHexGrid(root, layout, hexMap);
+        renderHexGrid(root, layout);
         updateScene(scene, root);
+        letComputerPlay();
+    }
+
+    /**
+     * Hands the turn to the computer player if it is its move, or lets it ponder while the human thinks.
+     * Both return at once; the computer's move comes back later on the JavaFX thread.
+     */
+    public static void letComputerPlay() {
+        if (computer == null || replay != null || game.isGameOver) return;
+        if (game.playerTurn == computer.colour) {
+            computer.respond(game, FrontEnd::playComputerMove);
+        } else {
+            computer.startPondering(game);
+        }
+    }
+
+    /**
+     * Starts a new game in the journal, if there is one, for the game just put on the board.
+     * The journal syncs on its own thread, so this never waits for the disk.
+     */
+    public static void journalNewGame() {
+        if (journal != null && replay == null) journalGame = journal.startGame(game.topology.radius);
+    }
 
-        if (GameManager.move == 2) {
-            GameManager.isStartOfGame = false;
+    /**
+     * Plays the move the computer player chose and refreshes the board.
+     *
+     * @param result the computer's move, or null if it had none
+     */
+    private static void playComputerMove(MoveResult result) {
+        if (result != null && result.legal && !game.isGameOver && sphere != null && sphere.getParent() != null) {
+            GameManager.apply(game, result);
+            if (journal != null) journal.move(journalGame, result);
+            updateGameUI((Group) sphere.getParent(), sphere.getScene());
+            checkGameOverAndUpdateUI();
         }
     }
 
@@ -47,7 +84,10 @@ public class FrontEnd {
      * If a winner is found, it prints the result to the console and updates the UI accordingly.
      */
     public static void checkGameOverAndUpdateUI() {
-        String winner = GameManager.checkAndDeclareWinner();
+        String winner = GameManager.checkAndDeclareWinner(game);
+        if (winner != null && journal != null) {
+            journal.result(journalGame, winner.equals("RED") ? Colour.RED : Colour.BLUE);
+        }
         if (winner != null && sphere != null && sphere.getParent() != null) {
             System.out.println(winner + " WINS!");
             updateGameUI((Group) sphere.getParent(), sphere.getScene());
@@ -64,21 +104,18 @@ public class FrontEnd {
      * @param root the root group node where all UI elements are added or cleared
      */
     public static void processAndUpdateMoveOnBoard(HexCube hex, Polygon hexagon, Group root) {
-        if (GameManager.validateMove(hex, false) == 1) {
-            GameManager.noMoreValidMove = false;
-        }
-        GameManager.isCapture = false;
+        int cell = game.cellIndex(hex);
 
         hexagon.setOnMouseClicked(event -> {
-            if (GameManager.validateMove(hex, true) == 1) {
-                if (GameManager.playerTurn == 1) {
-                    hex.colour = Colour.RED;
-                } else {
-                    hex.colour = Colour.BLUE;
-                }
-                GameManager.playerTurnDecider(GameManager.playerTurn, false);
-                GameManager.isCapture = false;
+            if (replay != null) return; // the board only follows the recording
+            if (computer != null && game.playerTurn == computer.colour) return; // the computer is thinking
+            MoveResult result = GameManager.cachedEvaluate(game, cell, game.playerTurn);
+            if (result.legal) {
+                GameManager.apply(game, result);
+                if (journal != null) journal.move(journalGame, result);
                 updateGameUI((Group) sphere.getParent(), sphere.getScene());
+            } else if (!game.isGameOver) {
+                showInvalidMove();
             }
             FrontEnd.checkGameOverAndUpdateUI();
         });
@@ -123,15 +160,16 @@ public class FrontEnd {
      * Creates a hexagon shape for the given hex and applies fill color based on its state.
      *
      * @param hex the stone that will be placed
+     * @param colour the colour of the stone on the hexagon
      * @param layout the layout used to calculate the hexagon's corner positions
      * @return the formatted Polygon representing the hexagon with appropriate styling
      */
 
-    public static Polygon createAndFormatHexagon(HexCube hex, Layout layout) {
+    public static Polygon createAndFormatHexagon(HexCube hex, int colour, Layout layout) {
         ArrayList<Point> corners = layout.polygonCorners(hex);
         Polygon hexagon = createHexagon(corners);
 
-        switch (hex.colour) {
+        switch (colour) {
             case Colour.RED:
                 hexagon.setFill(Color.RED);
                 break;
@@ -155,10 +193,9 @@ public class FrontEnd {
      */
     public static void addHoverOverEffect(Polygon hexagon, HexCube hex){
         hexagon.setOnMouseEntered(event -> {
-            if (hex.colour == Colour.WHITE) {
-                if (GameManager.validateMove(hex, false) == 1) {
-                    GameManager.isCapture = false;
-                    if (GameManager.playerTurn == 1) {
+            if (replay == null && game.colourOf(hex) == Colour.WHITE) {
+                if (GameManager.cachedEvaluate(game, game.cellIndex(hex), game.playerTurn).legal) {
+                    if (game.playerTurn == 1) {
                         hexagon.setFill(Color.color(1, 0, 0, 0.3));
                     } else {
                         hexagon.setFill(Color.color(0, 0, 1, 0.3));
@@ -167,7 +204,7 @@ public class FrontEnd {
             }
         });
         hexagon.setOnMouseExited(event -> {
-            if (hex.colour == Colour.WHITE) { // Only reset color if it's uncolored
+            if (game.colourOf(hex) == Colour.WHITE) { // Only reset color if it's uncolored
                 hexagon.setFill(Color.WHITE);
             }
         });
@@ -212,11 +249,11 @@ public class FrontEnd {
      * @param root the root group node where all UI elements are added or cleared
      */
     public static void InstructionsText(Scene scene, Group root){
-        Text text = GameManager.gameStatus();
+        Text text = GameManager.gameStatus(game);
         text.setFill(javafx.scene.paint.Color.BLACK);
         text.setFont(Font.font("Arial", 20));
         text.setTranslateX(scene.getWidth() / 6 - 30); // Adjust dynamically
-        if (GameManager.isGameOver) {
+        if (game.isGameOver) {
             text.setTranslateX(scene.getWidth() / 2.5 - 30);
         }
         text.setTranslateY(scene.getHeight() - 40);
@@ -258,14 +295,74 @@ public class FrontEnd {
         restart.setTranslateY(10);
         restart.setOnAction(event -> {
             System.out.println("Restarting HexOust");
-            GameManager.resetBackEnd();
+            if (computer != null) computer.stopPondering();
+            GameManager.resetBackEnd(game);
             Stage stage = (Stage) restart.getScene().getWindow();
             stage.close();
-            GameManager.startGame(new Stage());
+            GameManager.startGame(new Stage(), game);
         });
         root.getChildren().add(restart);
     }
 
+    /**
+     * Shows the move of the recording being replayed, after the given number of moves.
+     * Seeking goes from the recording's nearest keyframe, so any move shows at once however long the game is.
+     *
+     * @param move the number of moves played, clamped to the recording
+     * @param scene the scene that contains the game view, used for layout calculations
+     * @param root the root group node where all UI elements are added or cleared
+     */
+    public static void showReplayMove(int move, Scene scene, Group root) {
+        replayMove = Math.max(0, Math.min(move, replay.moves));
+        replay.seek(replayMove, game);
+        updateGameUI(root, scene);
+    }
+
+    /**
+     * Creates the replay controls along the top of the screen: buttons stepping one move back and forward,
+     * a slider to scrub through the whole game and the number of the move shown.
+     *
+     * @param scene the scene that contains the game view, used for layout calculations
+     * @param root the root group node where all UI elements are added or cleared
+     */
+    public static void ReplayControls(Scene scene, Group root) {
+        javafx.scene.control.Button back = new javafx.scene.control.Button("<");
+        back.setPrefSize(30, 30);
+        back.setTranslateX(20);
+        back.setTranslateY(10);
+        back.setOnAction(event -> showReplayMove(replayMove - 1, scene, root));
+
+        javafx.scene.control.Button forward = new javafx.scene.control.Button(">");
+        forward.setPrefSize(30, 30);
+        forward.setTranslateX(55);
+        forward.setTranslateY(10);
+        forward.setOnAction(event -> showReplayMove(replayMove + 1, scene, root));
+
+        if (replaySlider == null) {
+            // kept across redraws, so a drag carries on while every position it passes is drawn
+            replaySlider = new javafx.scene.control.Slider(0, replay.moves, replayMove);
+            replaySlider.setBlockIncrement(1);
+            replaySlider.setMajorTickUnit(Math.max(1, replay.interval));
+            replaySlider.setMinorTickCount(0);
+            replaySlider.setPrefWidth(scene.getWidth() / 3);
+            replaySlider.setTranslateX(20);
+            replaySlider.setTranslateY(50);
+            replaySlider.valueProperty().addListener((observable, before, after) -> {
+                int move = (int) Math.round(after.doubleValue());
+                if (move != replayMove) showReplayMove(move, scene, root);
+            });
+        }
+        replaySlider.setValue(replayMove);
+
+        Text position = new Text("Move " + replayMove + " / " + replay.moves);
+        position.setFill(Color.BLACK);
+        position.setFont(Font.font("Arial", 16));
+        position.setTranslateX(95);
+        position.setTranslateY(30);
+
+        root.getChildren().addAll(back, forward, replaySlider, position);
+    }
+
     /**
      * Displays a scoreboard showing the number of wins for each player.
      * The scoreboard is styled with headers and placed in the bottom-right corner of the screen.
@@ -274,8 +371,10 @@ public class FrontEnd {
      * @param root the root group node where all UI elements are added or cleared
      * @param redWins the number of games won by the red player
      * @param blueWins the number of games won by the blue player
+     * @param redStones the number of red stones on the board
+     * @param blueStones the number of blue stones on the board
      */
-    public static void ScoreBoard(Scene scene, Group root, int redWins, int blueWins) {
+    public static void ScoreBoard(Scene scene, Group root, int redWins, int blueWins, int redStones, int blueStones) {
         GridPane scoreboard = new GridPane();
         scoreboard.setGridLinesVisible(true);
 
@@ -297,15 +396,26 @@ public class FrontEnd {
         blueScore.setFill(Color.BLACK);
         blueScore.setFont(Font.font("Arial", 16));
 
+        // Stones currently on the board
+        Text redCount = new Text("Stones " + redStones);
+        redCount.setFill(Color.BLACK);
+        redCount.setFont(Font.font("Arial", 16));
+
+        Text blueCount = new Text("Stones " + blueStones);
+        blueCount.setFill(Color.BLACK);
+        blueCount.setFont(Font.font("Arial", 16));
+
         // Add to GridPane (col, row)
         scoreboard.add(redHeader, 0, 0);
         scoreboard.add(blueHeader, 1, 0);
         scoreboard.add(redScore, 0, 1);
         scoreboard.add(blueScore, 1, 1);
+        scoreboard.add(redCount, 0, 2);
+        scoreboard.add(blueCount, 1, 2);
 
         // Position the scoreboard at bottom right
         scoreboard.setLayoutX(scene.getWidth() / 1.5 + 40);
-        scoreboard.setLayoutY(scene.getHeight() - 70);
+        scoreboard.setLayoutY(scene.getHeight() - 90);
 
         root.getChildren().add(scoreboard);
     }
@@ -322,14 +432,14 @@ public class FrontEnd {
         sphere = new Sphere(13);
         PhongMaterial material;
         material = new PhongMaterial();
-        if (GameManager.playerTurn == 1) {
+        if (game.playerTurn == 1) {
             material.setDiffuseColor(Color.RED);
         } else {
             material.setDiffuseColor(Color.BLUE);
         }
         sphere.setMaterial(material);
         sphere.setTranslateX(scene.getWidth() * 0.1);
-        if (GameManager.isGameOver) {
+        if (game.isGameOver) {
             sphere.setTranslateX(scene.getWidth() * 0.325);
         }
         sphere.setTranslateY(scene.getHeight() - 50);
@@ -349,8 +459,12 @@ public class FrontEnd {
         Sphere(scene, root);
         invalidMove(scene,root);
         Exit(scene, root);
-        RestartGame(scene, root);
-        ScoreBoard(scene, root, GameManager.redScore, GameManager.blueScore);
+        if (replay == null) {
+            RestartGame(scene, root);
+        } else {
+            ReplayControls(scene, root);
+        }
+        ScoreBoard(scene, root, game.redScore, game.blueScore, game.stoneCount(Colour.RED), game.stoneCount(Colour.BLUE));
     }
 
     /**
@@ -364,62 +478,44 @@ public class FrontEnd {
 
     /**
      * Creates and returns a new layout configuration for the hexagonal grid,
-     * centered within the scene.
+     * centered within the scene. Hexagons shrink below their usual size when the board would not fit otherwise.
      *
      * @param scene the scene that contains the game view, used for layout calculations
      * @return a Layout object defining the hex grid orientation, size, and origin
      */
     private static Layout setupLayout(Scene scene) {
-        double size = 25;
+        int radius = game.topology.radius;
+        double fitWidth = scene.getWidth() / (3 * radius + 2);
+        double fitHeight = scene.getHeight() / (Math.sqrt(3) * (2 * radius + 1));
+        double size = Math.min(25, 0.9 * Math.min(fitWidth, fitHeight));
         double originX = scene.getWidth() / 2;
         double originY = scene.getHeight() / 2;
         return new Layout(Layout.flat, new Point(size, size), new Point(originX, originY));
     }
 
-    /**
-     * Builds and returns a hash map of all hexes for quick lookup using their cube coordinates.
-     * Each key is a string in the format "q,r,s" representing a hex's position.
-     *
-     * @return a HashMap mapping coordinate strings to their corresponding HexCube objects
-     */
-    private static HashMap<String, HexCube> buildHexMap() {
-        HashMap<String, HexCube> hexMap = new HashMap<>();
-        for (HexCube hex : GameManager.hexs) {
-            String key = hex.q + "," + hex.r + "," + hex.s;
-            hexMap.put(key, hex);
-        }
-        return hexMap;
-    }
-
     /**
      * Renders the hexagonal game grid by creating and formatting hexagons based on cube coordinates.
      *
      * @param root the root group node where all UI elements are added or cleared
      * @param layout the layout used to calculate hexagon positioning and orientation
-     * @param hexMap a map of coordinate keys to their corresponding HexCube objects
      */
 
-    private static void renderHexGrid(Group root, Layout layout, HashMap<String, HexCube> hexMap) {
-        int baseN = 6;
+    private static void renderHexGrid(Group root, Layout layout) {
+        int baseN = game.topology.radius;
 
         for (int q = -baseN; q <= baseN; q++) {
             for (int r = -baseN; r <= baseN; r++) {
                 int s = -q - r;
                 if (Math.abs(s) > baseN) continue;
 
-                String key = q + "," + r + "," + s;
-                HexCube hex = hexMap.getOrDefault(key, new HexCube(q, r, s, Colour.WHITE, 0));
-
-                if (!hexMap.containsKey(key)) {
-                    GameManager.hexs.add(hex);
-                }
+                HexCube hex = game.hexAt(q, r, s);
 
-                Polygon hexagon = createAndFormatHexagon(hex, layout);
+                Polygon hexagon = createAndFormatHexagon(hex, game.colourOf(hex), layout);
                 addHoverOverEffect(hexagon, hex);
                 processAndUpdateMoveOnBoard(hex, hexagon, root);
             }
         }
-        GameManager.playerTurnDecider(GameManager.playerTurn, true);
+        GameManager.playerTurnDecider(game, game.playerTurn, true);
     }
 
 }
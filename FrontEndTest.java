@@ -37,16 +37,16 @@ public class FrontEndTest {
     public void testCreateAndFormatHexagonColors() {
         Layout layout = new Layout(Layout.flat, new Point(25, 25), new Point(100, 100));
 
-        HexCube redHex = new HexCube(0, 0, 0, Colour.RED, 0);
-        Polygon redPoly = FrontEnd.createAndFormatHexagon(redHex, layout);
+        HexCube redHex = HexCube.of(0, 0, 0);
+        Polygon redPoly = FrontEnd.createAndFormatHexagon(redHex, Colour.RED, layout);
         assertEquals(Color.RED, redPoly.getFill());
 
-        HexCube blueHex = new HexCube(0, 0, 0, Colour.BLUE, 0);
-        Polygon bluePoly = FrontEnd.createAndFormatHexagon(blueHex, layout);
+        HexCube blueHex = HexCube.of(0, 0, 0);
+        Polygon bluePoly = FrontEnd.createAndFormatHexagon(blueHex, Colour.BLUE, layout);
         assertEquals(Color.BLUE, bluePoly.getFill());
 
-        HexCube whiteHex = new HexCube(0, 0, 0, Colour.WHITE, 0);
-        Polygon whitePoly = FrontEnd.createAndFormatHexagon(whiteHex, layout);
+        HexCube whiteHex = HexCube.of(0, 0, 0);
+        Polygon whitePoly = FrontEnd.createAndFormatHexagon(whiteHex, Colour.WHITE, layout);
         assertEquals(Color.WHITE, whitePoly.getFill());
     }
 
@@ -6,47 +6,53 @@ import java.util.ArrayList;
 
 /**
  * Represents the main game logic for HexOust.
- * Manages the game state, player turns, and win conditions.
+ * Applies the rules, player turns, and win conditions to the GameState it is given.
  */
 public class GameManager {
-    static ArrayList<HexCube> hexs = new ArrayList<>(); //Stores the state of each Hexagon
-    static int playerTurn = 1;
-    static int move = 0;
-    static boolean isStartOfGame = true;
-    static boolean isGameOver = false;
-    static boolean isCapture = false;
-    static boolean noMoreValidMove = true;
-    static int redScore = 0;
-    static int blueScore = 0;
+    /** Stands for a pass where a cell is expected: the player to move has no legal move and the turn goes over. */
+    static final int PASS = -1;
 
     /**
      * Resets the color of all stones to white
+     *
+     * @param state the game to clear
      */
-    public static void resetStones() {
-        for(HexCube hex: hexs) {
-            hex.colour = 0;
-        }
+    public static void resetStones(GameState state) {
+        state.clearBoard();
+    }
+
+    /**
+     * places a stone of the given colour on the board
+     *
+     * @param state the game the stone is placed in
+     * @param hex the hexagon the stone is placed on
+     * @param colour the colour of the stone
+     */
+    public static void placeStone(GameState state, HexCube hex, int colour) {
+        int cell = state.cellIndex(hex);
+        state.setStone(cell, colour);
+        state.groups.add(cell, state.stonesOf(colour));
     }
 
     /**
      * Resets the game state variables to start a new game session.
+     *
+     * @param state the game to reset
      */
-    public static void resetBackEnd() {
-        resetStones();
-        playerTurn = 1;
-        move = 0;
-        isStartOfGame = true;
-        isGameOver = false;
-        isCapture = false;
-        noMoreValidMove = true;
+    public static void resetBackEnd(GameState state) {
+        state.reset();
     }
 
     /**
      * Sets up the game window, UI components, and initializes the board layout.
      *
      * @param stage the primary window (JavaFX Stage) where the game scene is displayed
+     * @param state the game shown in the window
      */
-    public static void startGame(Stage stage) {
+    public static void startGame(Stage stage, GameState state) {
+        FrontEnd.game = state;
+        FrontEnd.journalNewGame();
+
         Group root = new Group();
         Scene scene = new Scene(root, 700, 700, javafx.scene.paint.Color.WHITE);
         stage.setTitle("HexOust");
@@ -66,75 +72,219 @@ public class GameManager {
         Layout layout = new Layout(Layout.flat, new Point(size, size), new Point(originX, originY));
     }
 
+    /**
+     * Works out what placing a stone on a cell would do, without changing the game.
+     * Only reads the state, so any number of threads can evaluate moves on a position nobody is changing.
+     *
+     * @param state the game the move would be made in
+     * @param cell the cell the stone would be placed on
+     * @param player the colour of the player placing the stone
+     * @return whether the move is legal, what it captures and whether the player moves again
+     */
+    public static MoveResult evaluate(GameState state, int cell, int player) {
+        if (state.isGameOver) {
+            return MoveResult.illegal(cell, player);
+        }
+        return evaluateBoard(state, cell, player);
+    }
+
+    /**
+     * Looks up what placing a stone on a cell would do in the game's cached move table.
+     * Cheaper than evaluate when many cells of the same position are checked, but only for the thread that owns the game.
+     *
+     * @param state the game the move would be made in
+     * @param cell the cell the stone would be placed on
+     * @param player the colour of the player placing the stone
+     * @return whether the move is legal, what it captures and whether the player moves again
+     */
+    public static MoveResult cachedEvaluate(GameState state, int cell, int player) {
+        if (state.isGameOver || cell < 0 || cell >= state.topology.cellCount) {
+            return MoveResult.illegal(cell, player);
+        }
+        return state.legalMoves().result(cell, player);
+    }
+
+    /**
+     * Returns every cell the player may place on in the current position, from the game's cached move table.
+     *
+     * @param state the game to look at
+     * @param player the colour of the player to move
+     * @return the legal cells, shared and not to be modified
+     */
+    public static Bitboard legalMoves(GameState state, int player) {
+        if (state.isGameOver) {
+            return new Bitboard(state.topology.cellCount);
+        }
+        return state.legalMoves().legal(player);
+    }
+
+    /**
+     * @return true if the player has at least one legal move in the current position
+     */
+    public static boolean hasLegalMove(GameState state, int player) {
+        return !legalMoves(state, player).isEmpty();
+    }
+
+    /**
+     * Checks whether the player may place on a cell without building a MoveResult, for callers that test many
+     * cells and play few of them, such as random playouts. Only reads the state.
+     *
+     * @return true if the move is legal on the board, ignoring whether the game is already over
+     */
+    public static boolean isLegal(GameState state, int cell, int player) {
+        if (cell < 0 || cell >= state.topology.cellCount || state.colourAt(cell) != Colour.WHITE) {
+            return false;
+        }
+        Bitboard own = state.stonesOf(player);
+        if (!state.topology.touches(cell, own)) {
+            return true;
+        }
+        Bitboard opponent = state.stonesOf(player == Colour.RED ? Colour.BLUE : Colour.RED);
+        return state.groups.findCaptures(cell, own, opponent, null) > 0;
+    }
+
+    /**
+     * Evaluates a move on the board alone, ignoring whether the game is already over.
+     */
+    static MoveResult evaluateBoard(GameState state, int cell, int player) {
+        if (cell < 0 || cell >= state.topology.cellCount || state.colourAt(cell) != Colour.WHITE) {
+            return MoveResult.illegal(cell, player);
+        }
+
+        Bitboard own = state.stonesOf(player);
+        Bitboard opponent = state.stonesOf(player == Colour.RED ? Colour.BLUE : Colour.RED);
+        StoneGroups groups = state.groups;
+
+        int captures = groups.findCaptures(cell, own, opponent, null);
+        if (captures == 0) {
+            if (state.topology.touches(cell, own)) {
+                return MoveResult.illegal(cell, player); // touching its own group without capturing
+            }
+            return MoveResult.placement(cell, player);
+        }
+
+        int[] roots = new int[captures];
+        groups.findCaptures(cell, own, opponent, roots);
+        int[] groupStarts = new int[captures + 1];
+        for (int g = 0; g < captures; g++) {
+            groupStarts[g + 1] = groupStarts[g] + groups.size(roots[g]);
+        }
+        int[] stones = new int[groupStarts[captures]];
+        int count = 0;
+        for (int root : roots) {
+            int stone = root;
+            do {
+                stones[count++] = stone;
+                stone = groups.next(stone);
+            } while (stone != root);
+        }
+        return MoveResult.capture(cell, player, stones, groupStarts);
+    }
+
+    /**
+     * Plays an evaluated move: removes the captured groups, places the stone and hands the turn on,
+     * unless the move captured, in which case the same player moves again.
+     *
+     * @param state the game the move was evaluated in, unchanged since
+     * @param result the legal move to play
+     */
+    public static void apply(GameState state, MoveResult result) {
+        if (!result.legal) {
+            throw new IllegalArgumentException("cannot apply an illegal move: " + result);
+        }
+        for (int g = 0; g < result.capturedGroupCount(); g++) {
+            removeGroup(state, result.capturedStones[result.groupStarts[g]]);
+        }
+
+        state.setStone(result.cell, result.player);
+        state.groups.add(result.cell, state.stonesOf(result.player));
+
+        state.move++;
+        if (state.move >= 2) {
+            state.isStartOfGame = false;
+        }
+        if (result.movesAgain) {
+            setPlayerTurn(state, result.player);
+        } else {
+            setPlayerTurn(state, result.player == Colour.RED ? Colour.BLUE : Colour.RED);
+        }
+    }
+
     /**
      * checks whether a move is valid and also removes stones if possible
      *
+     * @param state the game the move is made in
      * @param hex the stone that will be placed
      * @param makeMove true if it's making a move, false for when checking for noMoreValidMove
      * @return 1 if the move is valid
      */
-    public static int validateMove(HexCube hex, boolean makeMove) {
-        if (isGameOver) {
+    public static int validateMove(GameState state, HexCube hex, boolean makeMove) {
+        if (state.isGameOver) {
             return 0;
         }
 
-        if (hex.colour != Colour.WHITE) {
-            if (makeMove) FrontEnd.showInvalidMove();
-            return 0;
-        }
-
-        GameManager.removeStonesIfAny(hex,makeMove);
-
-        if (GameManager.isTouchingOwnGroup(hex) && !isCapture) {
+        int cell = state.cellIndex(hex);
+        if (cell == -1 || !evaluate(state, cell, state.playerTurn).legal) {
             if (makeMove) FrontEnd.showInvalidMove();
             return 0;
         }
 
         if (makeMove) {
-            move++;
+            GameManager.removeStonesIfAny(state, hex, true);
+            state.move++;
         }
         return 1;
     }
 
     /**
-     * checks the number of stones of each player and if one reaches zero the opponent is declared winner
+     * checks the number of stones of each player and if one reaches zero the opponent is declared winner.
+     * Reads the live stone counts, so it costs the same on any board size.
      *
+     * @param state the game to check
      * @return a string that represents the winner if there's one
      */
-    public static String checkAndDeclareWinner() {
-        if (!isStartOfGame && !isGameOver) {
-            boolean noRedStones = hexs.stream().noneMatch(h -> h.colour == Colour.RED);
-            boolean noBlueStones = hexs.stream().noneMatch(h -> h.colour == Colour.BLUE);
+    public static String checkAndDeclareWinner(GameState state) {
+        if (!state.isStartOfGame && !state.isGameOver) {
+            boolean noRedStones = state.stoneCount(Colour.RED) == 0;
+            boolean noBlueStones = state.stoneCount(Colour.BLUE) == 0;
 
             if (noBlueStones) {
-                isGameOver = true;
-                redScore++;
+                state.isGameOver = true;
+                state.redScore++;
                 return "RED";
             } else if (noRedStones) {
-                isGameOver = true;
-                blueScore++;
+                state.isGameOver = true;
+                state.blueScore++;
                 return "BLUE";
             }
         }
         return null;
     }
 
+    /**
+     * Works out whether a position is decided: after the opening, a player with no stones left has lost.
+     * Unlike checkAndDeclareWinner it changes nothing, so searches and replays can ask about any position.
+     *
+     * @param state the game to check
+     * @return the winner if the game is over, or -1 while it goes on
+     */
+    public static int winner(GameState state) {
+        if (!state.isStartOfGame) {
+            if (state.stoneCount(Colour.BLUE) == 0) return Colour.RED;
+            if (state.stoneCount(Colour.RED) == 0) return Colour.BLUE;
+        }
+        return -1;
+    }
+
     /**
      * checks if hex is touching its own group
      *
+     * @param state the game the stone is placed in
      * @param hex the stone that will be placed
      * @return true if hex is touching own group
      */
-    public static boolean isTouchingOwnGroup(HexCube hex){
-        boolean TouchingOwnGroup = false;
-        for (HexCube neighbour : hex.getNeighbours(hexs)) {
-            if (neighbour.colour == hex.colour) {
-                TouchingOwnGroup = true;
-                break;
-            }
-        }
-        hex.colour=0;
-        return TouchingOwnGroup;
+    public static boolean isTouchingOwnGroup(GameState state, HexCube hex){
+        return state.topology.touches(state.cellIndex(hex), state.stonesOf(state.playerTurn));
     }
 
     /**
@@ -142,91 +292,69 @@ public class GameManager {
      * then compares the player's group size with the size of each of the opponent groups,
      * removing the opponent group's stones if player's group size is greater
      *
+     * @param state the game the stone is placed in
      * @param hex the stone that will be placed
-     * @param makeMove true if it's making a move, false for when checking for noMoreValidMove
+     * @param makeMove true to remove the captured stones, false to only check for them
      */
-    public static void removeStonesIfAny(HexCube hex, boolean makeMove){
-        ArrayList<ArrayList<HexCube>> opponentGroups = new ArrayList<>();
-
-        hex.colour = playerTurn;
-        ArrayList<HexCube> playerGroup = GameManager.getGroup(hex, hexs);
-
-        for (HexCube playerStone: playerGroup) {
-            for (HexCube neighbour : playerStone.getNeighbours(hexs)) {
-                if (neighbour.colour != Colour.WHITE && neighbour.colour != hex.colour) {
-                    ArrayList<HexCube> group = GameManager.getGroup(neighbour, hexs);
-                    if (!opponentGroups.contains(group)) {
-                        opponentGroups.add(group);
-                    }
-                }
-            }
-        }
+    public static void removeStonesIfAny(GameState state, HexCube hex, boolean makeMove){
+        MoveResult result = evaluate(state, state.cellIndex(hex), state.playerTurn);
 
-        for (ArrayList<HexCube> opponentGroup : opponentGroups) {
-            if (playerGroup.size() > opponentGroup.size()) {
-                isCapture = true;
-                if (makeMove) {
-                    for (HexCube stone : opponentGroup) {
-                        GameManager.removeStone(stone);
-                    }
-                }
+        if (result.movesAgain && makeMove) {
+            state.isCapture = true;
+            for (int g = 0; g < result.capturedGroupCount(); g++) {
+                removeGroup(state, result.capturedStones[result.groupStarts[g]]);
             }
         }
     }
 
     /**
-     * Finds all connected hexes of the same color starting from the given hex.
+     * takes a whole group off the board
      *
-     * @param hex the stone that will be placed
-     * @param hexList the list of all hexagons
-     * @return the group of hexs
+     * @param state the game the group is in
+     * @param cell any stone of the group
      */
-    public static ArrayList<HexCube> getGroup(HexCube hex, ArrayList<HexCube> hexList) {
-        ArrayList<HexCube> group = new ArrayList<>();
-
-        if (hex == null || hex.colour == Colour.WHITE) return group; // Ignore uncolored hexagons
-
-        boolean[] visited = new boolean[hexList.size()]; // Track visited hexagons
-        getGroupUtil(hex, hexList, visited, group);
-        return group;
+    private static void removeGroup(GameState state, int cell) {
+        int stone = cell;
+        do {
+            state.clearStone(stone);
+            stone = state.groups.next(stone);
+        } while (stone != cell);
+        state.groups.removeGroup(cell);
     }
 
     /**
-     * Determines the group of connected hexagons by recursively checking unvisited neighbors of the same color.
+     * Finds all connected hexes of the same color starting from the given hex.
      *
-     * @param hex the stone that will be placed
-     * @param hexList the list of all hexagons
-     * @param visited used to track visited hexagons
-     * @param group the group of hexagons the hex belongs to
-     * @return an int indicating the hex's group size
+     * @param state the game the stone is in
+     * @param hex the stone whose group is wanted
+     * @return the group of hexs
      */
-    private static int getGroupUtil(HexCube hex, ArrayList<HexCube> hexList, boolean[] visited, ArrayList<HexCube> group) {
-        int index = hexList.indexOf(hex);
-        if (index == -1 || visited[index]) return 0; // Prevent revisiting
-
-        visited[index] = true;
-        group.add(hex);
+    public static ArrayList<HexCube> getGroup(GameState state, HexCube hex) {
+        ArrayList<HexCube> group = new ArrayList<>();
 
-        int groupSize = 1;
+        int cell = hex == null ? -1 : state.cellIndex(hex);
+        if (cell == -1 || state.colourAt(cell) == Colour.WHITE) return group; // Ignore uncolored hexagons
 
-        for (HexCube neighbor : hex.getNeighbours(hexList)) {
-            if (neighbor.colour == hex.colour && !visited[hexList.indexOf(neighbor)]) {
-                groupSize += getGroupUtil(neighbor, hexList, visited, group);
-            }
-        }
-        return groupSize;
+        ArrayList<HexCube> hexs = state.hexs();
+        int stone = cell;
+        do {
+            group.add(hexs.get(stone));
+            stone = state.groups.next(stone);
+        } while (stone != cell);
+        return group;
     }
 
 
     /**
      * Decides what the current game status is
      *
+     * @param state the game to describe
      * @return a text description of the current game state.
      */
-    public static Text gameStatus(){
-        if (isGameOver && playerTurn == 1) {
+    public static Text gameStatus(GameState state){
+        if (state.isGameOver && state.playerTurn == 1) {
             return new Text("Game Over! Red Wins!");
-        } else if (isGameOver && playerTurn == 2) {
+        } else if (state.isGameOver && state.playerTurn == 2) {
             return new Text("Game Over! Blue Wins!");
         }
         return new Text("To make a Move");
@@ -235,42 +363,55 @@ public class GameManager {
     /**
      * Decides which player plays after a move
      *
+     * @param state the game the move was made in
      * @param playerTurn used to decide whose turn it is
      * @param isCheckForNoMoreValidMove used when checking for if there's noMoreValidMove for a player, and if so turn automatically goes to the opponent
      */
-    public static void playerTurnDecider(int playerTurn, boolean isCheckForNoMoreValidMove) {
+    public static void playerTurnDecider(GameState state, int playerTurn, boolean isCheckForNoMoreValidMove) {
         if(isCheckForNoMoreValidMove) {
-            if (noMoreValidMove && !isGameOver) {
+            state.noMoreValidMove = !hasLegalMove(state, playerTurn);
+            if (state.noMoreValidMove && !state.isGameOver) {
                 if (playerTurn == 1) {
-                    setPlayerTurn(2);
+                    setPlayerTurn(state, 2);
                 } else {
-                    setPlayerTurn(1);
+                    setPlayerTurn(state, 1);
                 }
-                noMoreValidMove = true;
+                state.noMoreValidMove = true;
             }
         } else {
-            if (!isCapture) {
+            if (!state.isCapture) {
                 if (playerTurn == 1) {
-                    setPlayerTurn(2);
+                    setPlayerTurn(state, 2);
                 } else {
-                    setPlayerTurn(1);
+                    setPlayerTurn(state, 1);
                 }
-                isCapture = false;
+                state.isCapture = false;
             }
         }
     }
 
     /**
      * removes stone by making its color white
+     *
+     * @param state the game the stone is in
+     * @param hex the stone to remove
      */
-    public static void removeStone(HexCube hex) {
-        hex.colour = Colour.WHITE;
+    public static void removeStone(GameState state, HexCube hex) {
+        int cell = state.cellIndex(hex);
+        if (cell != -1 && state.colourAt(cell) != Colour.WHITE) {
+            int colour = state.colourAt(cell);
+            state.clearStone(cell);
+            state.groups.remove(cell, state.stonesOf(colour));
+        }
     }
 
     /**
      * set player turn to be a specific player's
+     *
+     * @param state the game to update
+     * @param player the player whose turn it is
      */
-    public static void setPlayerTurn(int player) {
-        playerTurn = player;
+    public static void setPlayerTurn(GameState state, int player) {
+        state.playerTurn = player;
     }
 }
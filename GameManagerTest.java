@@ -7,133 +7,317 @@ import java.util.ArrayList;
 import static org.junit.jupiter.api.Assertions.*;
 
 public class GameManagerTest {
+    private GameState state;
 
     @Before
     public void setup() {
-        GameManager.hexs.clear();
-        GameManager.isGameOver = false;
-        GameManager.isStartOfGame = true;
-        GameManager.move = 0;
-        GameManager.playerTurn = 1;
-        GameManager.noMoreValidMove = true;
+        state = new GameState();
     }
 
     @Test
     public void testValidateMoveFailsOnGameOver() {
-        GameManager.isGameOver = true;
-        HexCube hex = new HexCube(0, 0, 0, Colour.WHITE, 0);
-        assertEquals(0, GameManager.validateMove(hex, false));
+        state.isGameOver = true;
+        HexCube hex = HexCube.of(0, 0, 0);
+        assertEquals(0, GameManager.validateMove(state, hex, false));
     }
 
     @Test
     public void testValidateMoveRejectsColoredHex() {
-        HexCube hex = new HexCube(0, 0, 0, Colour.RED, 0);
-        assertEquals(0, GameManager.validateMove(hex, true));
+        HexCube hex = state.hexAt(0, 0, 0);
+        GameManager.placeStone(state, hex, Colour.RED);
+        assertEquals(0, GameManager.validateMove(state, hex, true));
     }
 
     @Test
     public void testValidateMoveAcceptsUncoloredHex() {
-        HexCube hex = new HexCube(0, 0, 0, Colour.WHITE, 0);
-        GameManager.hexs.add(hex);
-        assertEquals(1, GameManager.validateMove(hex, true));
-        assertEquals(1, GameManager.move);
+        HexCube hex = state.hexAt(0, 0, 0);
+        assertEquals(1, GameManager.validateMove(state, hex, true));
+        assertEquals(1, state.move);
     }
 
     @Test
     public void testGroupLogic() {
-        HexCube a = new HexCube(0, 0, 0, Colour.RED, 0);
-        HexCube b = a.neighbor(0);
-        b.colour = Colour.RED;
+        HexCube a = state.hexAt(0, 0, 0);
+        HexCube b = state.hexAt(1, 0, -1);
+        GameManager.placeStone(state, a, Colour.RED);
+        GameManager.placeStone(state, b, Colour.RED);
 
-        ArrayList<HexCube> hexList = new ArrayList<>();
-        hexList.add(a);
-        hexList.add(b);
-
-        ArrayList<HexCube> group = GameManager.getGroup(a, hexList);
+        ArrayList<HexCube> group = GameManager.getGroup(state, a);
         assertEquals(2, group.size());
     }
 
     @Test
     public void testRemoveStone() {
-        HexCube stone = new HexCube(0, 0, 0, Colour.BLUE, 0);
-        GameManager.removeStone(stone);
-        assertEquals(Colour.WHITE, stone.colour);
+        HexCube stone = state.hexAt(0, 0, 0);
+        GameManager.placeStone(state, stone, Colour.BLUE);
+        GameManager.removeStone(state, stone);
+        assertEquals(Colour.WHITE, state.colourOf(stone));
     }
 
     @Test
     public void testCaptureLogic() {
-        GameManager.hexs.clear();
-        GameManager.isGameOver = false;
-        GameManager.playerTurn = Colour.RED;
+        GameManager.resetStones(state);
+        state.isGameOver = false;
+        state.playerTurn = Colour.RED;
+
 
+        HexCube blue = state.hexAt(0, 0, 0);
 
-        HexCube blue = new HexCube(0, 0, 0, Colour.BLUE, 0);
+        GameManager.placeStone(state, blue, Colour.BLUE);
+        GameManager.placeStone(state, state.hexAt(1, -1, 0), Colour.RED);
+        GameManager.placeStone(state, state.hexAt(1, 0, -1), Colour.RED);
 
-        GameManager.hexs.add(blue);
-        GameManager.hexs.add(new HexCube(1, -1, 0, Colour.RED, 0));
-        GameManager.hexs.add(new HexCube(1, 0, -1, Colour.RED, 0));
 
+        HexCube redMove = state.hexAt(0, -1, 1);
 
-        HexCube redMove = new HexCube(0, -1, 1, Colour.WHITE, 0);
-        GameManager.hexs.add(redMove);
+        GameManager.removeStonesIfAny(state, redMove, true);
 
-        GameManager.removeStonesIfAny(redMove, true);
+        assertEquals(Colour.WHITE, state.colourOf(blue));
+    }
+
+    @Test
+    public void testValidateMoveRejectsTouchingOwnGroupWithoutCapture() {
+        state.playerTurn = Colour.RED;
+        GameManager.placeStone(state, state.hexAt(0, 0, 0), Colour.RED);
+        GameManager.placeStone(state, state.hexAt(2, -1, -1), Colour.BLUE);
+        GameManager.placeStone(state, state.hexAt(2, 0, -2), Colour.BLUE);
 
-        assertEquals(Colour.WHITE, blue.colour);
+        assertEquals(0, GameManager.validateMove(state, state.hexAt(1, 0, -1), false));
+        assertEquals(1, GameManager.validateMove(state, state.hexAt(-3, 0, 3), false));
+    }
+
+    @Test
+    public void testEvaluateDoesNotChangeState() {
+        GameManager.placeStone(state, state.hexAt(0, 0, 0), Colour.BLUE);
+        GameManager.placeStone(state, state.hexAt(1, -1, 0), Colour.RED);
+        GameManager.placeStone(state, state.hexAt(1, 0, -1), Colour.RED);
+        int cell = state.cellIndex(state.hexAt(0, -1, 1));
+
+        MoveResult result = GameManager.evaluate(state, cell, Colour.RED);
+
+        assertTrue(result.legal);
+        assertTrue(result.movesAgain);
+        assertEquals(1, result.capturedGroupCount());
+        assertEquals(state.cellIndex(state.hexAt(0, 0, 0)), result.capturedStone(0));
+        assertEquals(Colour.BLUE, state.colourOf(state.hexAt(0, 0, 0)));
+        assertEquals(Colour.WHITE, state.colourOf(state.hexAt(0, -1, 1)));
+        assertFalse(state.isCapture);
+    }
+
+    @Test
+    public void testApplyCaptureKeepsTurn() {
+        GameManager.placeStone(state, state.hexAt(0, 0, 0), Colour.BLUE);
+        GameManager.placeStone(state, state.hexAt(1, -1, 0), Colour.RED);
+        GameManager.placeStone(state, state.hexAt(1, 0, -1), Colour.RED);
+        int cell = state.cellIndex(state.hexAt(0, -1, 1));
+
+        GameManager.apply(state, GameManager.evaluate(state, cell, Colour.RED));
+
+        assertEquals(Colour.WHITE, state.colourOf(state.hexAt(0, 0, 0)));
+        assertEquals(Colour.RED, state.colourOf(state.hexAt(0, -1, 1)));
+        assertEquals(1, state.playerTurn);
+        assertEquals(1, state.move);
+    }
+
+    @Test
+    public void testApplyPlacementPassesTurn() {
+        int cell = state.cellIndex(state.hexAt(0, 0, 0));
+        GameManager.apply(state, GameManager.evaluate(state, cell, Colour.RED));
+
+        assertEquals(Colour.RED, state.colourOf(state.hexAt(0, 0, 0)));
+        assertEquals(2, state.playerTurn);
+        assertFalse(GameManager.evaluate(state, cell, Colour.BLUE).legal);
+    }
+
+    @Test
+    public void testLegalMovesFollowTheBoard() {
+        assertEquals(127, GameManager.legalMoves(state, Colour.RED).cardinality());
+
+        GameManager.placeStone(state, state.hexAt(0, 0, 0), Colour.RED);
+        Bitboard legal = GameManager.legalMoves(state, Colour.RED);
+
+        assertEquals(120, legal.cardinality());
+        assertFalse(legal.get(state.cellIndex(state.hexAt(1, 0, -1))));
+        assertTrue(GameManager.legalMoves(state, Colour.BLUE).get(state.cellIndex(state.hexAt(1, 0, -1))));
+    }
+
+    @Test
+    public void testCachedEvaluateSeesCaptures() {
+        GameManager.placeStone(state, state.hexAt(1, -1, 0), Colour.RED);
+        int cell = state.cellIndex(state.hexAt(0, -1, 1));
+        assertFalse(GameManager.cachedEvaluate(state, cell, Colour.RED).legal);
+
+        GameManager.placeStone(state, state.hexAt(0, 0, 0), Colour.BLUE);
+        MoveResult result = GameManager.cachedEvaluate(state, cell, Colour.RED);
+
+        assertTrue(result.legal);
+        assertEquals(1, result.capturedStoneCount());
+    }
+
+    @Test
+    public void testLegalMovesSeeCapturesAwayFromTheCell() {
+        GameManager.placeStone(state, state.hexAt(0, 0, 0), Colour.RED);
+        GameManager.placeStone(state, state.hexAt(1, -1, 0), Colour.BLUE);
+        int cell = state.cellIndex(state.hexAt(-1, 0, 1)); // touches the red stone but not the blue one
+        assertTrue(GameManager.legalMoves(state, Colour.RED).get(cell));
+
+        MoveResult result = GameManager.cachedEvaluate(state, cell, Colour.RED);
+        assertTrue(result.movesAgain);
+        assertEquals(state.cellIndex(state.hexAt(1, -1, 0)), result.capturedStone(0));
+
+        GameManager.placeStone(state, state.hexAt(2, -2, 0), Colour.BLUE);
+        assertFalse(GameManager.legalMoves(state, Colour.RED).get(cell));
+    }
+
+    @Test
+    public void testLargeBoard() {
+        GameState large = new GameState(20);
+        assertEquals(1261, large.hexs().size());
+        assertNotNull(large.hexAt(20, -20, 0));
+        assertNull(large.hexAt(21, -20, -1));
+
+        GameManager.placeStone(large, large.hexAt(20, -20, 0), Colour.BLUE);
+        GameManager.placeStone(large, large.hexAt(19, -20, 1), Colour.RED);
+        int cell = large.cellIndex(large.hexAt(19, -19, 0));
+        GameManager.apply(large, GameManager.cachedEvaluate(large, cell, Colour.RED));
+
+        assertEquals(Colour.WHITE, large.colourOf(large.hexAt(20, -20, 0)));
+        assertEquals(1, large.playerTurn);
+    }
+
+    @Test
+    public void testPlayerTurnDeciderPassesWithoutLegalMoves() {
+        state.isGameOver = false;
+        for (HexCube hex : state.hexs()) {
+            GameManager.placeStone(state, hex, Colour.BLUE);
+        }
+        GameManager.playerTurnDecider(state, 1, true);
+
+        assertTrue(state.noMoreValidMove);
+        assertEquals(2, state.playerTurn);
+    }
+
+    @Test
+    public void testKeyDependsOnPositionNotHistory() {
+        GameState direct = new GameState();
+        GameManager.placeStone(direct, direct.hexAt(1, -1, 0), Colour.RED);
+        GameManager.placeStone(direct, direct.hexAt(1, 0, -1), Colour.RED);
+        GameManager.placeStone(direct, direct.hexAt(0, -1, 1), Colour.RED);
+        GameManager.placeStone(direct, direct.hexAt(0, 0, 0), Colour.BLUE);
+
+        // Red captures the blue stone on (0, 0, 0), then blue refills it
+        GameManager.placeStone(state, state.hexAt(0, 0, 0), Colour.BLUE);
+        GameManager.placeStone(state, state.hexAt(1, -1, 0), Colour.RED);
+        GameManager.placeStone(state, state.hexAt(1, 0, -1), Colour.RED);
+        GameManager.apply(state, GameManager.evaluate(state, state.cellIndex(state.hexAt(0, -1, 1)), Colour.RED));
+        assertNotEquals(direct.key(), state.key());
+        GameManager.placeStone(state, state.hexAt(0, 0, 0), Colour.BLUE);
+
+        assertEquals(direct.key(), state.key());
+    }
+
+    @Test
+    public void testKeyIncludesSideToMove() {
+        long redToMove = state.key();
+        GameManager.setPlayerTurn(state, 2);
+        assertNotEquals(redToMove, state.key());
+        GameManager.setPlayerTurn(state, 1);
+        assertEquals(redToMove, state.key());
+    }
+
+    @Test
+    public void testStoneCountsFollowCapturesAndRemovals() {
+        GameManager.placeStone(state, state.hexAt(0, 0, 0), Colour.BLUE);
+        GameManager.placeStone(state, state.hexAt(1, -1, 0), Colour.RED);
+        GameManager.placeStone(state, state.hexAt(1, 0, -1), Colour.RED);
+        assertEquals(2, state.stoneCount(Colour.RED));
+        assertEquals(1, state.stoneCount(Colour.BLUE));
+
+        GameManager.apply(state, GameManager.evaluate(state, state.cellIndex(state.hexAt(0, -1, 1)), Colour.RED));
+        assertEquals(3, state.stoneCount(Colour.RED));
+        assertEquals(0, state.stoneCount(Colour.BLUE));
+
+        GameManager.removeStone(state, state.hexAt(1, -1, 0));
+        GameManager.removeStone(state, state.hexAt(1, -1, 0));
+        assertEquals(2, state.stoneCount(Colour.RED));
+
+        state.reset();
+        assertEquals(0, state.stoneCount(Colour.RED));
     }
 
     @Test
     public void testRedWinsLogic() {
-        GameManager.hexs.clear();
-        GameManager.isStartOfGame = false;
-        GameManager.isGameOver = false;
-        GameManager.playerTurn = Colour.RED;
+        GameManager.resetStones(state);
+        state.isStartOfGame = false;
+        state.isGameOver = false;
+        state.playerTurn = Colour.RED;
 
-        HexCube red = new HexCube(0, 0, 0, Colour.RED, 0);
-        GameManager.hexs.add(red);
+        GameManager.placeStone(state, state.hexAt(0, 0, 0), Colour.RED);
 
-        String result = GameManager.checkAndDeclareWinner();
+        String result = GameManager.checkAndDeclareWinner(state);
         assertEquals("RED", result);
-        assertTrue(GameManager.isGameOver);
+        assertTrue(state.isGameOver);
     }
 
 
     @Test
     public void testBlueWinsLogic() {
-        GameManager.hexs.clear();
-        GameManager.isGameOver = false;
-        GameManager.isStartOfGame = false;
-        GameManager.playerTurn = Colour.BLUE;
+        GameManager.resetStones(state);
+        state.isGameOver = false;
+        state.isStartOfGame = false;
+        state.playerTurn = Colour.BLUE;
 
-        HexCube blue = new HexCube(1, -1, 0, Colour.BLUE, 0);
-        GameManager.hexs.add(blue);
+        GameManager.placeStone(state, state.hexAt(1, -1, 0), Colour.BLUE);
 
-        String result = GameManager.checkAndDeclareWinner();
+        String result = GameManager.checkAndDeclareWinner(state);
         assertEquals("BLUE", result);
-        assertTrue(GameManager.isGameOver);
+        assertTrue(state.isGameOver);
+    }
+
+    @Test
+    public void testGamesAreIndependent() {
+        GameState other = new GameState();
+        GameManager.placeStone(state, state.hexAt(0, 0, 0), Colour.RED);
+        GameManager.setPlayerTurn(state, 2);
+
+        assertEquals(Colour.WHITE, other.colourOf(other.hexAt(0, 0, 0)));
+        assertEquals(1, other.playerTurn);
+        assertEquals(1, GameManager.validateMove(other, other.hexAt(0, 0, 0), false));
+    }
+
+    @Test
+    public void testResetKeepsScores() {
+        state.isStartOfGame = false;
+        GameManager.placeStone(state, state.hexAt(0, 0, 0), Colour.RED);
+        GameManager.checkAndDeclareWinner(state);
+        GameManager.resetBackEnd(state);
+
+        assertEquals(1, state.redScore);
+        assertFalse(state.isGameOver);
+        assertEquals(Colour.WHITE, state.colourOf(state.hexAt(0, 0, 0)));
     }
 
     @Test
     public void testGameStatus_GameOverRed() {
-        GameManager.isGameOver = true;
-        GameManager.playerTurn = 1;
-        Text result = GameManager.gameStatus();
+        state.isGameOver = true;
+        state.playerTurn = 1;
+        Text result = GameManager.gameStatus(state);
         assertEquals("Game Over! Red Wins!", result.getText());
     }
 
     @Test
     public void testGameStatus_GameOverBlue() {
-        GameManager.isGameOver = true;
-        GameManager.playerTurn = 2;
-        Text result = GameManager.gameStatus();
+        state.isGameOver = true;
+        state.playerTurn = 2;
+        Text result = GameManager.gameStatus(state);
         assertEquals("Game Over! Blue Wins!", result.getText());
     }
 
     @Test
     public void testGameStatus_InProgress() {
-        GameManager.isGameOver = false;
-        GameManager.playerTurn = 1;
-        Text result = GameManager.gameStatus();
+        state.isGameOver = false;
+        state.playerTurn = 1;
+        Text result = GameManager.gameStatus(state);
         assertEquals("To make a Move", result.getText());
     }
 
@@ -0,0 +1,305 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read-only recording of one finished game that can show the board after any move straight away.
+ * Every few moves the recording holds a keyframe of the whole board, and between keyframes the per-move deltas:
+ * the placed stone, the captured stones and the player to move next. An index gives the file offset of every
+ * keyframe, so seeking to a move loads the keyframe before it and applies fewer than interval deltas, whatever the
+ * length of the game or the number of captures. Nothing goes through the rules while seeking; the moves were checked
+ * when the recording was made. The file is memory-mapped, like OpeningBook.
+ *
+ * File layout, big-endian: a 32-byte header (magic, version, radius, move count, keyframe interval, keyframe count),
+ * the index of 8-byte keyframe offsets, then for each keyframe the position after keyframe * interval moves as
+ * next player (1 byte) and the red then blue bitboard words, followed by the deltas of the moves up to the next
+ * keyframe as cell (2), player (1), next player (1), captured count (2) and captured cells (2 each).
+ * The next player is Colour.WHITE once the game is over.
+ *
+ * Recordings are made from a MoveJournal: java GameRecording --journal=FILE --game=N --out=FILE [--interval=K]
+ */
+public final class GameRecording implements AutoCloseable {
+    static final int MAGIC = 0x48585250; // "HXRP"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 32;
+    static final int DEFAULT_INTERVAL = 16;
+
+    public final int radius;
+    public final int moves;
+    public final int interval;
+    private final int keyframes;
+    private final int words;
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+
+    private GameRecording(Path path) throws IOException {
+        file = new RandomAccessFile(path.toFile(), "r");
+        try {
+            FileChannel channel = file.getChannel();
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.limit() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException(path + " is not a HexOust recording");
+            }
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+        radius = buffer.getInt(8);
+        moves = buffer.getInt(12);
+        interval = buffer.getInt(16);
+        keyframes = buffer.getInt(20);
+        words = BoardTopology.forRadius(radius).words;
+    }
+
+    /**
+     * Maps a recording into memory.
+     *
+     * @param path a file written by write
+     * @return the opened recording
+     */
+    public static GameRecording open(Path path) throws IOException {
+        return new GameRecording(path);
+    }
+
+    public static void main(String[] args) throws IOException {
+        String journal = null;
+        String out = null;
+        long game = 1;
+        int interval = DEFAULT_INTERVAL;
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            if (option.length != 2) throw new IllegalArgumentException("expected --name=value: " + arg);
+            switch (option[0]) {
+                case "--journal": journal = option[1]; break;
+                case "--out": out = option[1]; break;
+                case "--game": game = Long.parseLong(option[1]); break;
+                case "--interval": interval = Integer.parseInt(option[1]); break;
+                default: throw new IllegalArgumentException("unknown option " + option[0]);
+            }
+        }
+        if (journal == null || out == null) {
+            throw new IllegalArgumentException("--journal=FILE and --out=FILE are required");
+        }
+        int recorded = fromJournal(Paths.get(journal), game, Paths.get(out), interval);
+        System.out.printf("recorded %d moves of game %d%n", recorded, game);
+    }
+
+    /**
+     * Sets a game to the position after a number of moves, from the nearest keyframe at or before it.
+     *
+     * @param move the number of moves played, from 0 to moves
+     * @param state a game on a board of the recording's radius, overwritten
+     */
+    public void seek(int move, GameState state) {
+        if (move < 0 || move > moves) throw new IllegalArgumentException("no move " + move + " in " + moves);
+        if (state.topology.radius != radius) throw new IllegalArgumentException("wrong board radius");
+        int keyframe = Math.min(move / interval, keyframes - 1);
+        int at = (int) buffer.getLong(HEADER_BYTES + 8 * keyframe);
+
+        state.clearBoard();
+        int next = buffer.get(at++);
+        for (int colour : new int[] {Colour.RED, Colour.BLUE}) {
+            for (int w = 0; w < words; w++, at += 8) {
+                for (long bits = buffer.getLong(at); bits != 0; bits &= bits - 1) {
+                    state.setStone((w << 6) + Long.numberOfTrailingZeros(bits), colour);
+                }
+            }
+        }
+        for (int m = keyframe * interval; m < move; m++) {
+            int cell = Short.toUnsignedInt(buffer.getShort(at));
+            int player = buffer.get(at + 2);
+            next = buffer.get(at + 3);
+            int captured = Short.toUnsignedInt(buffer.getShort(at + 4));
+            at += 6;
+            for (int i = 0; i < captured; i++, at += 2) state.clearStone(Short.toUnsignedInt(buffer.getShort(at)));
+            state.setStone(cell, player);
+        }
+        state.groups.rebuild(state.redStones, state.blueStones);
+
+        state.move = move;
+        state.isStartOfGame = move < 2;
+        state.isCapture = false;
+        state.isGameOver = next == Colour.WHITE;
+        state.playerTurn = state.isGameOver ? leader(state) : next;
+    }
+
+    // The winner once the game is over, which is who the status line names; a game cut off by the move limit goes
+    // to the player with more stones, and WHITE stands for a draw
+    private static int leader(GameState state) {
+        int winner = GameManager.winner(state);
+        if (winner != -1) return winner;
+        int stones = state.stoneCount(Colour.RED) - state.stoneCount(Colour.BLUE);
+        return stones > 0 ? Colour.RED : stones < 0 ? Colour.BLUE : Colour.WHITE;
+    }
+
+    /**
+     * @return the cell the given move placed a stone on, counting moves from 0
+     */
+    public int cell(int move) {
+        return Short.toUnsignedInt(buffer.getShort(deltaOffset(move)));
+    }
+
+    /**
+     * @return the number of stones the given move captured, counting moves from 0
+     */
+    public int capturedCount(int move) {
+        return Short.toUnsignedInt(buffer.getShort(deltaOffset(move) + 4));
+    }
+
+    // Walks from the move's keyframe to its delta; deltas vary in length with their captures
+    private int deltaOffset(int move) {
+        if (move < 0 || move >= moves) throw new IllegalArgumentException("no move " + move + " in " + moves);
+        int keyframe = move / interval;
+        int at = (int) buffer.getLong(HEADER_BYTES + 8 * keyframe) + 1 + 16 * words;
+        for (int m = keyframe * interval; m < move; m++) at += 6 + 2 * Short.toUnsignedInt(buffer.getShort(at + 4));
+        return at;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    /**
+     * Builds a recording move by move, replaying each move through the rules once to check it and to take keyframes.
+     */
+    static final class Recorder {
+        private final GameState state;
+        private final int interval;
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream body = new DataOutputStream(bytes);
+        private final List<Long> offsets = new ArrayList<>();
+        private final List<MoveResult> played = new ArrayList<>();
+        private boolean ended;
+
+        Recorder(int radius, int interval) {
+            if (interval < 1) throw new IllegalArgumentException("keyframe interval must be positive");
+            this.state = new GameState(radius);
+            this.interval = interval;
+        }
+
+        /**
+         * Plays the next move of the game, after passing the turn to its player if the other player had no move.
+         *
+         * @return the move as the rules worked it out
+         * @throws IllegalArgumentException if the move is not legal there
+         */
+        MoveResult play(int cell, int player) {
+            if (state.playerTurn != player) GameManager.setPlayerTurn(state, player);
+            MoveResult result = GameManager.evaluate(state, cell, player);
+            if (!result.legal) throw new IllegalArgumentException("move " + played.size() + " is illegal: " + result);
+            GameManager.apply(state, result);
+            played.add(result);
+            return result;
+        }
+
+        /**
+         * Marks the game as over after its last move, for games that ended without a capture winning them.
+         */
+        void end() {
+            ended = true;
+        }
+
+        /**
+         * Writes the recording of the moves played so far.
+         */
+        void write(Path path) throws IOException {
+            GameState replay = new GameState(state.topology.radius);
+            for (int m = 0; m <= played.size(); m++) {
+                if (m % interval == 0) keyframe(replay, m == 0 ? Colour.RED : next(m - 1));
+                if (m == played.size()) break;
+                MoveResult result = played.get(m);
+                body.writeShort(result.cell);
+                body.writeByte(result.player);
+                body.writeByte(next(m));
+                body.writeShort(result.capturedStoneCount());
+                for (int i = 0; i < result.capturedStoneCount(); i++) body.writeShort(result.capturedStone(i));
+                GameManager.apply(replay, result);
+            }
+
+            int index = 8 * offsets.size();
+            long length = HEADER_BYTES + index + bytes.size();
+            if (length > Integer.MAX_VALUE) throw new IOException("game too long for one recording");
+            try (RandomAccessFile out = new RandomAccessFile(path.toFile(), "rw");
+                 FileChannel channel = out.getChannel()) {
+                out.setLength(length);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+                buffer.putInt(8, state.topology.radius);
+                buffer.putInt(12, played.size());
+                buffer.putInt(16, interval);
+                buffer.putInt(20, offsets.size());
+                for (int k = 0; k < offsets.size(); k++) {
+                    buffer.putLong(HEADER_BYTES + 8 * k, HEADER_BYTES + index + offsets.get(k));
+                }
+                buffer.position(HEADER_BYTES + index);
+                buffer.put(bytes.toByteArray());
+                buffer.force();
+            }
+        }
+
+        // The player to move after move m: the next move's player, or after the last move WHITE if the game is over
+        private int next(int m) {
+            if (m + 1 < played.size()) return played.get(m + 1).player;
+            return ended || GameManager.winner(state) != -1 ? Colour.WHITE : state.playerTurn;
+        }
+
+        private void keyframe(GameState position, int next) throws IOException {
+            offsets.add((long) bytes.size());
+            body.writeByte(next);
+            for (long word : position.redStones.words) body.writeLong(word);
+            for (long word : position.blueStones.words) body.writeLong(word);
+        }
+    }
+
+    /**
+     * Writes the recording of one game in a journal.
+     *
+     * @param journal the journal file
+     * @param game the game's number in the journal
+     * @param path the recording to write
+     * @param interval the number of moves between keyframes
+     * @return the number of moves recorded
+     * @throws IOException if the journal has no such game or its moves do not replay
+     */
+    public static int fromJournal(Path journal, long game, Path path, int interval) throws IOException {
+        Recorder[] recorder = new Recorder[1];
+        RuntimeException[] mismatch = new RuntimeException[1];
+        MoveJournal.read(journal, new MoveJournal.Visitor() {
+            @Override
+            public void game(long id, int radius) {
+                if (id == game) recorder[0] = new Recorder(radius, interval);
+            }
+
+            @Override
+            public void move(long id, int cell, int player, int[] captured) {
+                if (id != game || recorder[0] == null || mismatch[0] != null) return;
+                try {
+                    MoveResult result = recorder[0].play(cell, player);
+                    if (result.capturedStoneCount() != captured.length) {
+                        throw new IllegalArgumentException("move " + cell + " captures differently on replay");
+                    }
+                } catch (IllegalArgumentException e) {
+                    mismatch[0] = e;
+                }
+            }
+
+            @Override
+            public void result(long id, int winner) {
+                if (id == game && recorder[0] != null) recorder[0].end();
+            }
+        });
+        if (recorder[0] == null) throw new IOException("no game " + game + " in " + journal);
+        if (mismatch[0] != null) throw new IOException("game " + game + " does not replay", mismatch[0]);
+        recorder[0].write(path);
+        return recorder[0].played.size();
+    }
+}
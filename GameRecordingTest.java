@@ -0,0 +1,148 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameRecordingTest {
+    private Path file;
+    private final List<GameState> positions = new ArrayList<>(); // the game after each number of moves
+
+    @Before
+    public void setUp() throws IOException {
+        file = Files.createTempFile("hexoust", ".replay");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    // Plays random legal moves into a recorder until the game ends or reaches the move limit, keeping every position
+    private GameRecording.Recorder playRandomGame(int radius, int interval, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        GameRecording.Recorder recorder = new GameRecording.Recorder(radius, interval);
+        GameState state = new GameState(radius);
+        positions.add(RandomGames.copy(state));
+        int limit = 4 * state.topology.cellCount;
+        for (MoveResult result; state.move < limit && (result = RandomGames.play(state, random)) != null; ) {
+            assertEquals(result.capturedStoneCount(), recorder.play(result.cell, result.player).capturedStoneCount());
+            positions.add(RandomGames.copy(state));
+        }
+        if (GameManager.winner(state) == -1) recorder.end();
+        return recorder;
+    }
+
+    private static void assertSamePosition(GameState expected, GameState actual) {
+        assertEquals(expected.key(), actual.key());
+        assertEquals(expected.move, actual.move);
+        assertEquals(expected.stoneCount(Colour.RED), actual.stoneCount(Colour.RED));
+        assertEquals(expected.stoneCount(Colour.BLUE), actual.stoneCount(Colour.BLUE));
+        for (int cell = 0; cell < expected.topology.cellCount; cell++) {
+            assertEquals(expected.colourAt(cell), actual.colourAt(cell));
+        }
+    }
+
+    @Test
+    public void testSeeksToEveryMoveInAnyOrder() throws IOException {
+        playRandomGame(4, 8, 1).write(file);
+        int captures = 0;
+        try (GameRecording recording = GameRecording.open(file)) {
+            assertEquals(positions.size() - 1, recording.moves);
+            GameState state = new GameState(4);
+            for (int move = recording.moves; move >= 0; move--) {
+                recording.seek(move, state);
+                assertSamePosition(positions.get(move), state);
+            }
+            SplittableRandom random = new SplittableRandom(2);
+            for (int i = 0; i < 200; i++) {
+                int move = random.nextInt(recording.moves + 1);
+                recording.seek(move, state);
+                assertSamePosition(positions.get(move), state);
+                if (move < recording.moves) {
+                    assertEquals(positions.get(move + 1).move, move + 1);
+                    captures += recording.capturedCount(move);
+                }
+            }
+            recording.seek(recording.moves, state);
+            assertTrue(state.isGameOver);
+            recording.seek(0, state);
+            assertFalse(state.isGameOver);
+            assertEquals(Colour.RED, state.playerTurn);
+        }
+        assertTrue(captures > 0);
+    }
+
+    @Test
+    public void testSeekedPositionPlaysOnLikeTheGame() throws IOException {
+        playRandomGame(3, 5, 7).write(file);
+        try (GameRecording recording = GameRecording.open(file)) {
+            GameState state = new GameState(3);
+            for (int move = 0; move < recording.moves; move++) {
+                recording.seek(move, state);
+                int cell = recording.cell(move);
+                GameState expected = positions.get(move + 1);
+                MoveResult result = GameManager.evaluate(state, cell, state.playerTurn);
+                assertTrue(result.legal);
+                GameManager.apply(state, result);
+                assertEquals(expected.key(), state.key());
+            }
+        }
+    }
+
+    @Test
+    public void testRecordsAGameFromTheJournal() throws Exception {
+        Path journalFile = Files.createTempFile("hexoust", ".journal");
+        try {
+            GameState state = new GameState(3);
+            long game;
+            try (MoveJournal journal = MoveJournal.open(journalFile)) {
+                journal.startGame(2); // another game in the journal, which is skipped
+                game = journal.startGame(3);
+                SplittableRandom random = new SplittableRandom(9);
+                for (MoveResult result; (result = RandomGames.play(state, random)) != null; ) {
+                    journal.move(game, result);
+                }
+                journal.result(game, GameManager.winner(state)).get();
+            }
+
+            assertEquals(state.move, GameRecording.fromJournal(journalFile, game, file, 4));
+            try (GameRecording recording = GameRecording.open(file)) {
+                GameState replayed = new GameState(3);
+                recording.seek(recording.moves, replayed);
+                assertEquals(state.key(), replayed.key());
+                assertTrue(replayed.isGameOver);
+                assertEquals(GameManager.winner(state), replayed.playerTurn);
+            }
+            assertThrows(IOException.class, () -> GameRecording.fromJournal(journalFile, game + 1, file, 4));
+        } finally {
+            Files.delete(journalFile);
+        }
+    }
+
+    @Test
+    public void testRejectsOtherFilesAndMoves() throws IOException {
+        Files.write(file, new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+        assertThrows(IOException.class, () -> GameRecording.open(file));
+
+        GameRecording.Recorder recorder = new GameRecording.Recorder(2, 4);
+        recorder.play(0, Colour.RED);
+        assertThrows(IllegalArgumentException.class, () -> recorder.play(0, Colour.BLUE));
+        recorder.write(file);
+        try (GameRecording recording = GameRecording.open(file)) {
+            assertThrows(IllegalArgumentException.class, () -> recording.seek(2, new GameState(2)));
+            assertThrows(IllegalArgumentException.class, () -> recording.seek(1, new GameState(3)));
+            GameState state = new GameState(2);
+            recording.seek(1, state);
+            assertFalse(state.isGameOver);
+            assertEquals(Colour.BLUE, state.playerTurn);
+        }
+    }
+}
@@ -0,0 +1,293 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Holds everything about one game of HexOust: the board, whose turn it is, the move count and the game flags.
+ * Each game owns its own instance, so a single process can run many independent games side by side.
+ * Construction and reset only touch a few primitive arrays. HexCubes are bare coordinates; the colour on a hexagon
+ * is always read from the bitboards through colourOf.
+ */
+public class GameState {
+    final BoardTopology topology;
+    final Bitboard redStones;
+    final Bitboard blueStones;
+    final StoneGroups groups;
+    private ArrayList<HexCube> hexs; //Coordinates of each Hexagon for FrontEnd, indexed like the bitboards
+    private LegalMoves legalMoves;
+    private final long[] boardKeys = new long[Symmetry.COUNT]; // Zobrist key of the stones under each symmetry
+    private int redCount = 0;
+    private int blueCount = 0;
+
+    int playerTurn = 1;
+    int move = 0;
+    boolean isStartOfGame = true;
+    boolean isGameOver = false;
+    boolean isCapture = false;
+    boolean noMoreValidMove = true;
+    int redScore = 0;
+    int blueScore = 0;
+
+    public static final int DEFAULT_RADIUS = 6;
+
+    /**
+     * Creates an empty game on the standard radius-6 board.
+     */
+    public GameState() {
+        this(DEFAULT_RADIUS);
+    }
+
+    /**
+     * Creates an empty game on a board of the given radius.
+     *
+     * @param radius the number of rings around the centre cell
+     */
+    public GameState(int radius) {
+        this.topology = BoardTopology.forRadius(radius);
+        this.redStones = new Bitboard(topology.cellCount);
+        this.blueStones = new Bitboard(topology.cellCount);
+        this.groups = new StoneGroups(topology);
+    }
+
+    /**
+     * Clears the board and the game flags for a new game. The win counters are kept.
+     */
+    public void reset() {
+        clearBoard();
+        playerTurn = 1;
+        move = 0;
+        isStartOfGame = true;
+        isGameOver = false;
+        isCapture = false;
+        noMoreValidMove = true;
+    }
+
+    /**
+     * Turns this game into an exact copy of another game on a board of the same radius, including its cached
+     * legal moves, so a search can copy a position and play on from it without rebuilding anything.
+     * The win counters are copied too.
+     *
+     * @param other the game to copy
+     */
+    public void copyFrom(GameState other) {
+        if (other.topology != topology) {
+            throw new IllegalArgumentException("cannot copy a radius " + other.topology.radius
+                    + " game into a radius " + topology.radius + " game");
+        }
+        redStones.copyFrom(other.redStones);
+        blueStones.copyFrom(other.blueStones);
+        groups.copyFrom(other.groups);
+        System.arraycopy(other.boardKeys, 0, boardKeys, 0, Symmetry.COUNT);
+        redCount = other.redCount;
+        blueCount = other.blueCount;
+        if (other.legalMoves != null) {
+            legalMoves().copyFrom(other.legalMoves);
+        } else if (legalMoves != null) {
+            legalMoves.invalidateAll();
+        }
+
+        playerTurn = other.playerTurn;
+        move = other.move;
+        isStartOfGame = other.isStartOfGame;
+        isGameOver = other.isGameOver;
+        isCapture = other.isCapture;
+        noMoreValidMove = other.noMoreValidMove;
+        redScore = other.redScore;
+        blueScore = other.blueScore;
+    }
+
+    /**
+     * Removes every stone from the board.
+     */
+    public void clearBoard() {
+        redStones.clear();
+        blueStones.clear();
+        groups.clear();
+        Arrays.fill(boardKeys, 0);
+        redCount = 0;
+        blueCount = 0;
+        if (legalMoves != null) {
+            legalMoves.invalidateAll();
+        }
+    }
+
+    /**
+     * Returns the hexagons FrontEnd renders, creating them on first use.
+     *
+     * @return one HexCube per cell, indexed like the bitboards
+     */
+    public ArrayList<HexCube> hexs() {
+        if (hexs == null) {
+            hexs = new ArrayList<>(topology.cellCount);
+            for (int i = 0; i < topology.cellCount; i++) {
+                hexs.add(HexCube.of(topology.q(i), topology.r(i), topology.s(i)));
+            }
+        }
+        return hexs;
+    }
+
+    /**
+     * Finds the board hexagon at the given cube coordinates.
+     *
+     * @return the hexagon, or null if the coordinates are off the board
+     */
+    public HexCube hexAt(int q, int r, int s) {
+        int cell = topology.index(q, r);
+        if (cell == -1 || q + r + s != 0) return null;
+        return hexs().get(cell);
+    }
+
+    /**
+     * @return the bitboard index of the hex, or -1 if it is off the board
+     */
+    int cellIndex(HexCube hex) {
+        return topology.index(hex.q, hex.r);
+    }
+
+    /**
+     * @return the colour of the stone on the hexagon, or white if it is empty or off the board
+     */
+    public int colourOf(HexCube hex) {
+        int cell = cellIndex(hex);
+        return cell == -1 ? Colour.WHITE : colourAt(cell);
+    }
+
+    /**
+     * Returns how many stones of a colour are on the board, kept up to date on every placement and capture.
+     *
+     * @param colour red or blue
+     * @return the number of stones of that colour
+     */
+    public int stoneCount(int colour) {
+        return colour == Colour.RED ? redCount : blueCount;
+    }
+
+    /**
+     * @return the stones of the given colour
+     */
+    Bitboard stonesOf(int colour) {
+        return colour == Colour.RED ? redStones : blueStones;
+    }
+
+    /**
+     * @return the colour of the stone on the given cell, or white if it is empty
+     */
+    public int colourAt(int cell) {
+        if (redStones.get(cell)) return Colour.RED;
+        if (blueStones.get(cell)) return Colour.BLUE;
+        return Colour.WHITE;
+    }
+
+    /**
+     * Returns the cached move table for this position, creating it on first use.
+     *
+     * @return the legal move table
+     */
+    LegalMoves legalMoves() {
+        if (legalMoves == null) {
+            legalMoves = new LegalMoves(this);
+        }
+        return legalMoves;
+    }
+
+    /**
+     * Returns the Zobrist key of the position: the stones on the board and the side to move.
+     * Equal positions get equal keys however they were reached, including through captures.
+     *
+     * @return the 64-bit position key
+     */
+    public long key() {
+        return symmetricKey(Symmetry.IDENTITY);
+    }
+
+    /**
+     * Returns the key the position would have after a symmetry of the board, without moving any stones.
+     * The keys of all twelve symmetries are kept up to date with every stone, so this is a single lookup.
+     *
+     * @param transform the symmetry, from 0 to Symmetry.COUNT - 1
+     * @return the 64-bit key of the transformed position
+     */
+    public long symmetricKey(int transform) {
+        long key = boardKeys[transform];
+        return playerTurn == Colour.BLUE ? key ^ topology.zobrist.blueToMove : key;
+    }
+
+    /**
+     * Returns the symmetry that turns this position into its canonical form: the one whose stones get the smallest
+     * key, preferring the lowest transform on a tie. Equivalent positions share the canonical key, so tables keyed by it
+     * store each of them once; a move stored in the canonical frame comes back through Symmetry.unmap.
+     *
+     * @return the canonicalising transform
+     */
+    public int canonicalTransform() {
+        int best = Symmetry.IDENTITY;
+        for (int t = 1; t < Symmetry.COUNT; t++) {
+            if (boardKeys[t] < boardKeys[best]) best = t;
+        }
+        return best;
+    }
+
+    /**
+     * @return the key shared by this position and every position equivalent to it under a board symmetry
+     */
+    public long canonicalKey() {
+        return symmetricKey(canonicalTransform());
+    }
+
+    /**
+     * Puts a stone on an empty cell, keeping the position key, the stone counts and the cached views in step.
+     * Groups are left to the caller.
+     */
+    void setStone(int cell, int colour) {
+        stonesOf(colour).set(cell);
+        updateKeys(cell, colour);
+        if (colour == Colour.RED) redCount++; else blueCount++;
+        cellChanged(cell);
+    }
+
+    /**
+     * Takes the stone off a cell, keeping the position key, the stone counts and the cached views in step.
+     * Groups are left to the caller.
+     */
+    void clearStone(int cell) {
+        int colour = colourAt(cell);
+        if (colour == Colour.WHITE) return;
+        stonesOf(colour).clear(cell);
+        updateKeys(cell, colour);
+        if (colour == Colour.RED) redCount--; else blueCount--;
+        cellChanged(cell);
+    }
+
+    /**
+     * Sets the move count and isStartOfGame of a position set up from its stones and player to move alone.
+     * Only the first two moves of a game can leave a player without stones while the game goes on, so those are
+     * recognised from the board; any other position counts as past the opening, at move 2.
+     */
+    void inferOpening() {
+        if (redCount + blueCount == 0) {
+            move = 0;
+        } else if (redCount == 1 && blueCount == 0 && playerTurn == Colour.BLUE) {
+            move = 1;
+        } else {
+            move = 2;
+            isStartOfGame = false;
+        }
+    }
+
+    // Adds or removes a stone in the key of every symmetric image of the position
+    private void updateKeys(int cell, int colour) {
+        Symmetry symmetry = topology.symmetry;
+        Zobrist zobrist = topology.zobrist;
+        for (int t = 0; t < Symmetry.COUNT; t++) {
+            boardKeys[t] ^= zobrist.stone(symmetry.map(t, cell), colour);
+        }
+    }
+
+    /**
+     * Called whenever a cell gains or loses a stone, to keep the move table in line with the board.
+     */
+    void cellChanged(int cell) {
+        if (legalMoves != null) {
+            legalMoves.cellChanged(cell);
+        }
+    }
+}
@@ -20,16 +20,17 @@ class Point
 /**
  * Represents a hexagonal tile using cube coordinates (q, r, s).
  * Used for grid positioning and movement logic in the game.
+ * A HexCube is only a position and never changes; what is on the tile lives in GameState. Coordinates near the
+ * origin are interned by {@link #of}, and the static routines work on coordinates packed into one int, so
+ * neighbour and distance arithmetic in the rules allocates nothing.
  */
-public class HexCube
+public final class HexCube
 {
-    public HexCube(int q, int r, int s, int colour, int status)
+    public HexCube(int q, int r, int s)
     {
         this.q = q;
         this.r = r;
         this.s = s;
-        this.colour = colour;
-        this.visited = status;
         if (q + r + s != 0)
             throw new IllegalArgumentException("q + r + s must be 0");
     }
@@ -37,48 +38,124 @@ public class HexCube
     public final int q;
     public final int r;
     public final int s;
-    public int colour;
-    public int visited;
+
+    // Same order as the original direction list: (1, 0, -1), (1, -1, 0), (0, -1, 1), (-1, 0, 1), (-1, 1, 0), (0, 1, -1)
+    static final int[] DIRECTION_Q = {1, 1, 0, -1, -1, 0};
+    static final int[] DIRECTION_R = {0, -1, -1, 0, 1, 1};
+    static final int[] DIRECTION_PACKED = new int[6];
+
+    private static final int CACHE_RADIUS = 64;
+    private static final int CACHE_SPAN = 2 * CACHE_RADIUS + 1;
+    private static final HexCube[] interned = new HexCube[CACHE_SPAN * CACHE_SPAN];
+
+    static
+    {
+        for (int d = 0; d < 6; d++)
+        {
+            DIRECTION_PACKED[d] = pack(DIRECTION_Q[d], DIRECTION_R[d]);
+        }
+    }
+
+    /**
+     * Returns the shared instance for a coordinate, creating it on first use.
+     * Coordinates further than 64 from the origin on an axis are not interned and get a new instance.
+     *
+     * @return the hexagon at (q, r, s)
+     */
+    public static HexCube of(int q, int r, int s)
+    {
+        if (q + r + s != 0)
+            throw new IllegalArgumentException("q + r + s must be 0");
+        if (Math.abs(q) > CACHE_RADIUS || Math.abs(r) > CACHE_RADIUS)
+            return new HexCube(q, r, s);
+        int slot = (q + CACHE_RADIUS) * CACHE_SPAN + (r + CACHE_RADIUS);
+        HexCube hex = interned[slot];
+        if (hex == null)
+        {
+            // Racing threads may each build one; all fields are final, so whichever is kept is safely published
+            hex = new HexCube(q, r, s);
+            interned[slot] = hex;
+        }
+        return hex;
+    }
+
+    /**
+     * Packs an axial coordinate into one int as q * 65536 + r. The packing is linear, so adding two packed
+     * coordinates adds the coordinates, as long as each stays within a short.
+     */
+    public static int pack(int q, int r)
+    {
+        return (q << 16) + r;
+    }
+
+    public static int packedR(int packed)
+    {
+        return (short) packed;
+    }
+
+    public static int packedQ(int packed)
+    {
+        return (packed - (short) packed) >> 16;
+    }
+
+    public static int packedNeighbor(int packed, int direction)
+    {
+        return packed + DIRECTION_PACKED[direction];
+    }
+
+    /**
+     * @return the number of steps between two packed coordinates
+     */
+    public static int packedDistance(int a, int b)
+    {
+        int dq = packedQ(a) - packedQ(b);
+        int dr = packedR(a) - packedR(b);
+        return (Math.abs(dq) + Math.abs(dr) + Math.abs(dq + dr)) / 2;
+    }
+
+    public int packed()
+    {
+        return pack(q, r);
+    }
 
     public HexCube add(HexCube b)
     {
-        return new HexCube(q + b.q, r + b.r, s + b.s,b.colour, b.visited);
+        return of(q + b.q, r + b.r, s + b.s);
     }
 
     public HexCube subtract(HexCube b)
     {
-        return new HexCube(q - b.q, r - b.r, s - b.s,b.colour, b.visited);
+        return of(q - b.q, r - b.r, s - b.s);
     }
 
-    static public ArrayList<HexCube> directions = new ArrayList<HexCube>(){{add(new HexCube(1, 0, -1,Colour.WHITE, 0)); add(new HexCube(1, -1, 0,Colour.WHITE, 0)); add(new HexCube(0, -1, 1,Colour.WHITE, 0)); add(new HexCube(-1, 0, 1,Colour.WHITE, 0)); add(new HexCube(-1, 1, 0,Colour.WHITE, 0)); add(new HexCube(0, 1, -1,Colour.WHITE, 0));}};
-
     static public HexCube direction(int direction)
     {
-        return HexCube.directions.get(direction);
+        return of(DIRECTION_Q[direction], DIRECTION_R[direction], -DIRECTION_Q[direction] - DIRECTION_R[direction]);
     }
 
     public HexCube neighbor(int direction)
     {
-        return add(HexCube.direction(direction));
+        return of(q + DIRECTION_Q[direction], r + DIRECTION_R[direction], s - DIRECTION_Q[direction] - DIRECTION_R[direction]);
     }
 
     public int length()
     {
-        return (int)((Math.abs(q) + Math.abs(r) + Math.abs(s)) / 2);
+        return (Math.abs(q) + Math.abs(r) + Math.abs(s)) / 2;
     }
 
     public int distance(HexCube b)
     {
-        return subtract(b).length();
+        return (Math.abs(q - b.q) + Math.abs(r - b.r) + Math.abs(s - b.s)) / 2;
     }
 
     //Returns all neighboring hexes from the provided list that are adjacent to this hex.
     public ArrayList<HexCube> getNeighbours(ArrayList<HexCube> hexList) {
         ArrayList<HexCube> neighbours = new ArrayList<>();
         for (int i = 0; i < 6; i++) {
-            HexCube neighbor = this.neighbor(i);
+            int nq = q + DIRECTION_Q[i];
+            int nr = r + DIRECTION_R[i];
             for (HexCube hex : hexList) {
-                if (hex.q == neighbor.q && hex.r == neighbor.r && hex.s == neighbor.s) {
+                if (hex.q == nq && hex.r == nr) {
                     neighbours.add(hex);
                     break;
                 }
@@ -87,6 +164,27 @@ public class HexCube
         return neighbours;
     }
 
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o) return true;
+        if (!(o instanceof HexCube)) return false;
+        HexCube other = (HexCube) o;
+        return q == other.q && r == other.r;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return pack(q, r);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "HexCube(" + q + ", " + r + ", " + s + ")";
+    }
+
 }
 
 class FractionalHexCube
@@ -125,7 +223,7 @@ class FractionalHexCube
         {
             si = -qi - ri;
         }
-        return new HexCube(qi, ri, si,Colour.WHITE, 0);
+        return HexCube.of(qi, ri, si);
     }
 }
 
@@ -8,8 +8,8 @@ public class HexCubeTest {
 
     @Test
     public void testAdd() {
-        HexCube a = new HexCube(1, -1, 0, Colour.RED, 0);
-        HexCube b = new HexCube(0, 1, -1, Colour.BLUE, 0);
+        HexCube a = new HexCube(1, -1, 0);
+        HexCube b = new HexCube(0, 1, -1);
         HexCube sum = a.add(b);
 
         assertEquals(1, sum.q);
@@ -20,8 +20,8 @@ public class HexCubeTest {
 
     @Test
     public void testSubtract() {
-        HexCube a = new HexCube(1, -1, 0, Colour.RED, 0);
-        HexCube b = new HexCube(0, 1, -1, Colour.BLUE, 0);
+        HexCube a = new HexCube(1, -1, 0);
+        HexCube b = new HexCube(0, 1, -1);
         HexCube diff = a.subtract(b);
 
         assertEquals(1, diff.q);
@@ -44,7 +44,7 @@ public class HexCubeTest {
 
     @Test
     public void testNeighbor() {
-        HexCube center = new HexCube(0, 0, 0, Colour.WHITE, 0);
+        HexCube center = new HexCube(0, 0, 0);
         HexCube neighbor0 = center.neighbor(0);
         assertEquals(1, neighbor0.q);
         assertEquals(0, neighbor0.r);
@@ -58,20 +58,20 @@ public class HexCubeTest {
 
     @Test
     public void testLength() {
-        HexCube a = new HexCube(2, -1, -1, Colour.BLUE, 0);
+        HexCube a = new HexCube(2, -1, -1);
         assertEquals(2, a.length());
     }
 
     @Test
     public void testDistance() {
-        HexCube a = new HexCube(0, 0, 0, Colour.WHITE, 0);
-        HexCube b = new HexCube(2, -1, -1, Colour.BLUE, 0);
+        HexCube a = new HexCube(0, 0, 0);
+        HexCube b = new HexCube(2, -1, -1);
         assertEquals(2, a.distance(b));
     }
 
     @Test
     public void testGetNeighboursReturnsSix() {
-        HexCube center = new HexCube(0, 0, 0, Colour.WHITE, 0);
+        HexCube center = new HexCube(0, 0, 0);
         ArrayList<HexCube> board = new ArrayList<HexCube>();
 
         for (int i = 0; i < 6; i++) {
@@ -87,7 +87,7 @@ public class HexCubeTest {
     @Test
     public void testInvalidHexCubeThrows() {
         try {
-            HexCube invalid = new HexCube(1, 1, 1, Colour.WHITE, 0);
+            HexCube invalid = new HexCube(1, 1, 1);
             fail("Expected IllegalArgumentException was not thrown");
         } catch (IllegalArgumentException e) {
             assertTrue(e.getMessage().contains("q + r + s must be 0"));
@@ -97,7 +97,7 @@ public class HexCubeTest {
     @Test
     public void testPolygonCornersReturnsSixPoints() {
         Layout layout = new Layout(Layout.flat, new Point(10, 10), new Point(100, 100));
-        HexCube hex = new HexCube(0, 0, 0, Colour.WHITE, 0);
+        HexCube hex = new HexCube(0, 0, 0);
 
         ArrayList<Point> corners = layout.polygonCorners(hex);
         assertEquals(6, corners.size(), "A hexagon must have 6 corners");
@@ -131,4 +131,25 @@ public class HexCubeTest {
             assertTrue(e.getMessage().contains("q + r + s must be 0"));
         }
     }
+
+    @Test
+    public void testCoordinatesAreInterned() {
+        assertSame(HexCube.of(2, -1, -1), HexCube.of(2, -1, -1));
+        assertSame(HexCube.of(0, 0, 0).neighbor(1), HexCube.of(1, -1, 0));
+        assertEquals(HexCube.of(100, -100, 0), new HexCube(100, -100, 0));
+    }
+
+    @Test
+    public void testPackedArithmetic() {
+        int packed = HexCube.pack(-3, 5);
+        assertEquals(-3, HexCube.packedQ(packed));
+        assertEquals(5, HexCube.packedR(packed));
+
+        for (int d = 0; d < 6; d++) {
+            HexCube neighbor = HexCube.of(-3, 5, -2).neighbor(d);
+            assertEquals(neighbor.packed(), HexCube.packedNeighbor(packed, d));
+            assertEquals(1, HexCube.packedDistance(packed, neighbor.packed()));
+        }
+        assertEquals(2, HexCube.packedDistance(HexCube.pack(0, 0), HexCube.pack(2, -1)));
+    }
 }
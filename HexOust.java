@@ -1,9 +1,19 @@
 /**
  * Entry point of the HexOust application. Initializes the game through JavaFX.
+ * The board radius can be given as --radius=N and defaults to 6.
+ * --computer=red or --computer=blue lets the computer play that colour, thinking for --think=MILLIS (default 2000),
+ * --tablebase=FILE gives it a table written by Solver for the board, --book=FILE an opening book and
+ * --weights=FILE evaluation weights written by Tuner.
+ * --journal=FILE records every game in a MoveJournal, and the win counters carry on from the games already in it.
+ * --replay=FILE opens a GameRecording instead of a new game, to step and scrub through it.
  */
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.stage.Stage;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+
 public class HexOust extends Application {
 
     public static void main(String[] args) {
@@ -11,8 +21,46 @@ public class HexOust extends Application {
     }
 
     @Override
-    public void start(Stage stage) {
-        GameManager.startGame(stage);
+    public void start(Stage stage) throws IOException {
+        String radius = getParameters().getNamed().get("radius");
+        int baseN = radius == null ? GameState.DEFAULT_RADIUS : Integer.parseInt(radius);
+        String computer = getParameters().getNamed().get("computer");
+        if (computer != null) {
+            String think = getParameters().getNamed().get("think");
+            int colour = computer.equalsIgnoreCase("red") ? Colour.RED : Colour.BLUE;
+            FrontEnd.computer = new ComputerPlayer(colour, think == null ? 2000 : Long.parseLong(think), Platform::runLater);
+            String tablebase = getParameters().getNamed().get("tablebase");
+            if (tablebase != null) {
+                FrontEnd.computer.useTablebase(Tablebase.open(Paths.get(tablebase)));
+            }
+            String book = getParameters().getNamed().get("book");
+            if (book != null) {
+                FrontEnd.computer.useBook(OpeningBook.open(Paths.get(book)));
+            }
+            String weights = getParameters().getNamed().get("weights");
+            if (weights != null) {
+                FrontEnd.computer.useWeights(EvalWeights.load(Paths.get(weights)));
+            }
+        }
+        String replay = getParameters().getNamed().get("replay");
+        if (replay != null) {
+            FrontEnd.replay = GameRecording.open(Paths.get(replay));
+            baseN = FrontEnd.replay.radius;
+        }
+        GameState game = new GameState(baseN);
+        String journal = getParameters().getNamed().get("journal");
+        if (journal != null) {
+            FrontEnd.journal = MoveJournal.open(Paths.get(journal));
+            game.redScore = FrontEnd.journal.redWins;
+            game.blueScore = FrontEnd.journal.blueWins;
+        }
+        GameManager.startGame(stage, game);
+    }
+
+    @Override
+    public void stop() throws IOException {
+        if (FrontEnd.journal != null) FrontEnd.journal.close();
+        if (FrontEnd.replay != null) FrontEnd.replay.close();
     }
 
 }
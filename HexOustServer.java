@@ -0,0 +1,572 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Headless server hosting many matches at once over the binary TCP protocol in Protocol, with no JavaFX involved.
+ * One I/O thread runs a selector over every connection: it accepts, reads and splits frames, pairs players who
+ * join with the same radius, and writes whatever the matches queued. The rules run on a separate pool of worker
+ * threads. Each match is an actor: its messages are queued and drained by one worker at a time, so a match's
+ * GameState is only ever touched by one thread and needs no locks, while different matches run in parallel.
+ * Every move is checked and played through GameManager; passes, wins and the move limit follow Tournament.
+ * A player who disconnects or sends a malformed frame forfeits. A connection that fails while being accepted is
+ * closed on its own; if accepting itself fails, for instance when the process runs out of file descriptors, the
+ * server stops accepting for a moment and carries on with the matches it has.
+ *
+ * Any connection may watch matches. Each move is encoded once into an immutable frame that every player and
+ * watcher shares, so fan-out costs a queue entry per watcher rather than a serialisation. Watchers get small socket
+ * send buffers so a slow one shows up as backlog here rather than in the kernel; once a watcher has more than the
+ * backlog limit queued it stops getting moves, and as soon as its queue drains it is sent a SYNC of the board and
+ * carries on from there. A slow watcher never holds up the game or the other watchers.
+ *
+ * With a MoveJournal every match's start, moves and result are journalled from the workers. The journal syncs in
+ * batches on its own thread and no move waits for it.
+ *
+ * Usage: java HexOustServer [--port=N] [--workers=N] [--journal=FILE], defaulting to 7070 and one worker per
+ * processor.
+ */
+public final class HexOustServer implements Closeable {
+    private static final int READ_BUFFER = 256;
+    private static final int MAX_RADIUS = 12; // keeps boards a server will host to a sensible size
+    private static final int WATCHER_SEND_BUFFER = 8 * 1024;
+    static final int DEFAULT_WATCHER_BACKLOG = 64 * 1024; // bytes queued for a watcher before it is resynced
+    private static final long ACCEPT_RETRY_MILLIS = 100;
+    private static final Logger LOG = Logger.getLogger(HexOustServer.class.getName());
+
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final SelectionKey acceptKey;
+    private final ExecutorService workers;
+    private final Thread ioThread;
+    private final Queue<Connection> pendingWrites = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean wakeupPending = new AtomicBoolean();
+    private final Map<Integer, Connection> waiting = new HashMap<>(); // radius -> player waiting, I/O thread only
+    private final Map<Integer, Match> matches = new ConcurrentHashMap<>(); // matches being played, by id
+    private final int watcherBacklog;
+    private volatile MoveJournal journal;
+    private final AtomicInteger nextMatch = new AtomicInteger();
+    private final AtomicInteger activeMatches = new AtomicInteger();
+    private final AtomicLong finishedMatches = new AtomicLong();
+    private final AtomicLong movesPlayed = new AtomicLong();
+    private final AtomicLong resyncs = new AtomicLong();
+    private final AtomicLong failedAccepts = new AtomicLong();
+    private boolean acceptPaused; // I/O thread only
+    private volatile boolean running = true;
+
+    // One client socket; the read side belongs to the I/O thread, the outbox is filled by workers
+    private final class Connection {
+        final SocketChannel channel;
+        final SelectionKey key;
+        final ByteBuffer in = ByteBuffer.allocate(READ_BUFFER);
+        final Queue<ByteBuffer> outbox = new ConcurrentLinkedQueue<>();
+        final AtomicLong queued = new AtomicLong(); // bytes in the outbox not yet handed to the socket
+        final List<Match> watching = new ArrayList<>(); // I/O thread only
+        Match match;
+        int colour;
+        boolean closed;
+
+        Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+
+        // Called by workers: queues a frame and asks the I/O thread to write it
+        void send(ByteBuffer frame) {
+            queued.addAndGet(frame.remaining());
+            outbox.add(frame.duplicate());
+            pendingWrites.add(this);
+            if (wakeupPending.compareAndSet(false, true)) selector.wakeup();
+        }
+    }
+
+    // A connection watching one match; lagging once it fell behind and is waiting to drain for a SYNC
+    private static final class Watcher {
+        final Connection connection;
+        boolean lagging;
+
+        Watcher(Connection connection) {
+            this.connection = connection;
+        }
+    }
+
+    // A game between two connections. Messages run in order on one worker at a time.
+    private final class Match implements Runnable {
+        final int id;
+        final Connection red;
+        final Connection blue;
+        final GameState state;
+        final int limit;
+        final Queue<Runnable> mailbox = new ConcurrentLinkedQueue<>();
+        final AtomicBoolean scheduled = new AtomicBoolean();
+        final List<Watcher> watchers = new ArrayList<>();
+        final MoveJournal journal = HexOustServer.this.journal; // the journal when the match began, if any
+        long journalGame;
+        int moves;
+        volatile boolean over;
+
+        Match(int id, int radius, Connection red, Connection blue) {
+            this.id = id;
+            this.red = red;
+            this.blue = blue;
+            this.state = new GameState(radius);
+            this.limit = 4 * state.topology.cellCount;
+        }
+
+        void post(Runnable message) {
+            mailbox.add(message);
+            if (scheduled.compareAndSet(false, true)) workers.execute(this);
+        }
+
+        @Override
+        public void run() {
+            for (Runnable message; (message = mailbox.poll()) != null; ) message.run();
+            scheduled.set(false);
+            if (!mailbox.isEmpty() && scheduled.compareAndSet(false, true)) workers.execute(this);
+        }
+
+        void start() {
+            if (journal != null) journalGame = journal.startGame(state.topology.radius);
+            red.send(Protocol.start(id, state.topology.radius, Colour.RED));
+            blue.send(Protocol.start(id, state.topology.radius, Colour.BLUE));
+        }
+
+        void move(Connection player, int cell) {
+            if (over) return;
+            if (player.colour != state.playerTurn) {
+                player.send(Protocol.illegal(cell));
+                return;
+            }
+            MoveResult result = GameManager.evaluate(state, cell, player.colour);
+            if (!result.legal) {
+                player.send(Protocol.illegal(cell));
+                return;
+            }
+            GameManager.apply(state, result);
+            moves++;
+            movesPlayed.incrementAndGet();
+            if (journal != null) journal.move(journalGame, result);
+
+            int winner = nextTurn();
+            int next = winner == -1 ? state.playerTurn : Colour.WHITE;
+            ByteBuffer frame = Protocol.moved(id, result, next);
+            red.send(frame);
+            blue.send(frame);
+            broadcast(frame, next);
+            if (winner != -1) finish(winner);
+        }
+
+        // Hands a move to every watcher keeping up, and a SYNC instead to lagging watchers whose queue has drained
+        void broadcast(ByteBuffer frame, int next) {
+            ByteBuffer sync = null;
+            for (Watcher watcher : watchers) {
+                long queued = watcher.connection.queued.get();
+                if (watcher.lagging) {
+                    if (queued > 0) continue;
+                    if (sync == null) sync = Protocol.sync(id, state, next);
+                    watcher.connection.send(sync);
+                    watcher.lagging = false;
+                } else if (queued > watcherBacklog) {
+                    watcher.lagging = true;
+                    resyncs.incrementAndGet();
+                } else {
+                    watcher.connection.send(frame);
+                }
+            }
+        }
+
+        void watch(Connection connection) {
+            if (over) {
+                connection.send(Protocol.unknown(id));
+                return;
+            }
+            watchers.add(new Watcher(connection));
+            connection.send(Protocol.sync(id, state, state.playerTurn));
+        }
+
+        void unwatch(Connection connection) {
+            watchers.removeIf(watcher -> watcher.connection == connection);
+        }
+
+        // Hands the turn on through any passes; returns the winner once the game is over, else -1
+        int nextTurn() {
+            int winner = GameManager.winner(state);
+            if (winner != -1) return winner;
+            int player = state.playerTurn;
+            int opponent = player == Colour.RED ? Colour.BLUE : Colour.RED;
+            if (moves < limit) {
+                if (GameManager.hasLegalMove(state, player)) return -1;
+                if (GameManager.hasLegalMove(state, opponent)) {
+                    GameManager.setPlayerTurn(state, opponent);
+                    return -1;
+                }
+            }
+            int difference = state.stoneCount(Colour.RED) - state.stoneCount(Colour.BLUE);
+            return difference > 0 ? Colour.RED : difference < 0 ? Colour.BLUE : Colour.WHITE;
+        }
+
+        void forfeit(Connection loser) {
+            if (over) return;
+            finish(loser.colour == Colour.RED ? Colour.BLUE : Colour.RED);
+        }
+
+        void finish(int winner) {
+            over = true;
+            state.isGameOver = true;
+            if (journal != null) journal.result(journalGame, winner);
+            matches.remove(id);
+            activeMatches.decrementAndGet();
+            finishedMatches.incrementAndGet();
+            ByteBuffer frame = Protocol.end(id, winner);
+            red.send(frame);
+            blue.send(frame);
+            ByteBuffer sync = Protocol.sync(id, state, Colour.WHITE);
+            for (Watcher watcher : watchers) {
+                if (watcher.lagging) watcher.connection.send(sync); // one last frame past the backlog
+                watcher.connection.send(frame);
+            }
+            watchers.clear();
+        }
+    }
+
+    /**
+     * Opens the listening socket. Nothing is served until start is called.
+     *
+     * @param address where to listen; port 0 picks a free port
+     * @param workerThreads the number of threads running the rules
+     */
+    public HexOustServer(InetSocketAddress address, int workerThreads) throws IOException {
+        this(address, workerThreads, DEFAULT_WATCHER_BACKLOG);
+    }
+
+    /**
+     * Opens the listening socket, with the number of bytes a watcher may fall behind before it is resynced.
+     */
+    HexOustServer(InetSocketAddress address, int workerThreads, int watcherBacklog) throws IOException {
+        this.watcherBacklog = watcherBacklog;
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(address, 1024);
+        server.configureBlocking(false);
+        acceptKey = server.register(selector, SelectionKey.OP_ACCEPT);
+        workers = Executors.newFixedThreadPool(workerThreads);
+        ioThread = new Thread(this::loop, "hexoust-io");
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = 7070;
+        int workers = Runtime.getRuntime().availableProcessors();
+        String journal = null;
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            if (option.length != 2) throw new IllegalArgumentException("expected --name=value: " + arg);
+            switch (option[0]) {
+                case "--port": port = Integer.parseInt(option[1]); break;
+                case "--workers": workers = Integer.parseInt(option[1]); break;
+                case "--journal": journal = option[1]; break;
+                default: throw new IllegalArgumentException("unknown option " + option[0]);
+            }
+        }
+        HexOustServer server = new HexOustServer(new InetSocketAddress(port), workers);
+        if (journal != null) {
+            MoveJournal opened = MoveJournal.open(Paths.get(journal));
+            System.out.printf("journal %s: %d bytes recovered, %d red wins, %d blue wins, %d draws%n", journal,
+                    opened.recoveredBytes, opened.redWins, opened.blueWins, opened.draws);
+            server.setJournal(opened);
+        }
+        server.start();
+        System.out.println("listening on " + server.address());
+    }
+
+    /**
+     * Journals every match started from now on. The journal stays open until the caller closes it.
+     *
+     * @param journal the journal, or null to stop journalling
+     */
+    public void setJournal(MoveJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Starts the I/O thread.
+     */
+    public void start() {
+        ioThread.start();
+    }
+
+    /**
+     * @return the address the server listens on, with the real port when it was bound to port 0
+     */
+    public InetSocketAddress address() throws IOException {
+        return (InetSocketAddress) server.getLocalAddress();
+    }
+
+    /**
+     * @return the number of matches being played
+     */
+    public int activeMatches() {
+        return activeMatches.get();
+    }
+
+    /**
+     * @return the number of matches that have ended
+     */
+    public long finishedMatches() {
+        return finishedMatches.get();
+    }
+
+    /**
+     * @return the number of legal moves played in every match so far
+     */
+    public long movesPlayed() {
+        return movesPlayed.get();
+    }
+
+    /**
+     * @return how many times a watcher fell too far behind and was switched to a SYNC
+     */
+    public long resyncs() {
+        return resyncs.get();
+    }
+
+    /**
+     * @return how many connections failed while being accepted and were closed
+     */
+    public long failedAccepts() {
+        return failedAccepts.get();
+    }
+
+    /**
+     * Stops accepting, closes every connection and waits briefly for the threads to end.
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        try {
+            ioThread.join(1000);
+            workers.shutdown();
+            workers.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void loop() {
+        try {
+            while (running) {
+                if (acceptPaused) {
+                    selector.select(ACCEPT_RETRY_MILLIS);
+                    acceptPaused = false;
+                    acceptKey.interestOps(SelectionKey.OP_ACCEPT);
+                } else {
+                    selector.select();
+                }
+                wakeupPending.set(false);
+                for (Connection connection; (connection = pendingWrites.poll()) != null; ) write(connection);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Connection connection = (Connection) key.attachment();
+                    if (key.isWritable()) write(connection);
+                    if (key.isValid() && key.isReadable()) read(connection);
+                }
+            }
+        } catch (IOException e) {
+            LOG.log(Level.SEVERE, "selector failed, closing every connection", e);
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                closeQuietly(key.channel());
+            }
+            closeQuietly(selector);
+        }
+    }
+
+    // Failures are kept to the connection being accepted; a failing accept pauses accepting rather than spinning
+    private void accept() {
+        while (true) {
+            SocketChannel channel;
+            try {
+                channel = server.accept();
+            } catch (IOException e) {
+                failedAccepts.incrementAndGet();
+                LOG.log(Level.WARNING, "accept failed, pausing for " + ACCEPT_RETRY_MILLIS + " ms", e);
+                acceptKey.interestOps(0);
+                acceptPaused = true;
+                return;
+            }
+            if (channel == null) return;
+            try {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                key.attach(new Connection(channel, key));
+            } catch (IOException e) {
+                failedAccepts.incrementAndGet();
+                LOG.log(Level.FINE, "could not set up an accepted connection", e); // usually a client that reset
+                closeQuietly(channel);
+            }
+        }
+    }
+
+    private void read(Connection connection) {
+        try {
+            if (connection.channel.read(connection.in) == -1) {
+                disconnect(connection);
+                return;
+            }
+        } catch (IOException e) {
+            disconnect(connection);
+            return;
+        }
+        ByteBuffer in = connection.in.flip();
+        while (in.remaining() >= Protocol.LENGTH_BYTES) {
+            int length = Short.toUnsignedInt(in.getShort(in.position()));
+            if (length == 0 || length > Protocol.MAX_CLIENT_FRAME) {
+                disconnect(connection);
+                return;
+            }
+            if (in.remaining() < Protocol.LENGTH_BYTES + length) break;
+            in.position(in.position() + Protocol.LENGTH_BYTES);
+            int end = in.position() + length;
+            if (!handle(connection, in, length)) {
+                disconnect(connection);
+                return;
+            }
+            in.position(end);
+        }
+        in.compact();
+    }
+
+    // Acts on one frame from a client; false if the frame breaks the protocol
+    private boolean handle(Connection connection, ByteBuffer in, int length) {
+        byte type = in.get();
+        Match match = connection.match;
+        switch (type) {
+            case Protocol.JOIN: {
+                if (length != 2 || match != null) return false;
+                int radius = Byte.toUnsignedInt(in.get());
+                if (radius < 1 || radius > MAX_RADIUS) return false;
+                join(connection, radius);
+                return true;
+            }
+            case Protocol.MOVE: {
+                if (length != 3 || match == null) return false;
+                int cell = Short.toUnsignedInt(in.getShort());
+                match.post(() -> match.move(connection, cell));
+                return true;
+            }
+            case Protocol.RESIGN: {
+                if (length != 1 || match == null) return false;
+                match.post(() -> match.forfeit(connection));
+                return true;
+            }
+            case Protocol.WATCH: {
+                if (length != 5) return false;
+                watch(connection, in.getInt());
+                return true;
+            }
+            default:
+                return false;
+        }
+    }
+
+    private void join(Connection connection, int radius) {
+        Connection opponent = waiting.remove(radius);
+        if (opponent == null) {
+            waiting.put(radius, connection);
+            return;
+        }
+        Match match = new Match(nextMatch.incrementAndGet(), radius, opponent, connection);
+        matches.put(match.id, match);
+        opponent.match = match;
+        opponent.colour = Colour.RED;
+        connection.match = match;
+        connection.colour = Colour.BLUE;
+        activeMatches.incrementAndGet();
+        match.post(match::start);
+    }
+
+    private void watch(Connection connection, int id) {
+        Match watched = matches.get(id);
+        if (watched == null) {
+            connection.send(Protocol.unknown(id));
+            return;
+        }
+        if (connection.watching.isEmpty()) {
+            try {
+                connection.channel.setOption(StandardSocketOptions.SO_SNDBUF, WATCHER_SEND_BUFFER);
+            } catch (IOException e) {
+                // keeps the default buffer; falling behind then just takes longer to notice
+            }
+        }
+        connection.watching.removeIf(match -> match.over); // a racy read only delays forgetting a finished match
+        connection.watching.add(watched);
+        watched.post(() -> watched.watch(connection));
+    }
+
+    private void write(Connection connection) {
+        if (connection.closed) return;
+        try {
+            for (ByteBuffer frame; (frame = connection.outbox.peek()) != null; ) {
+                connection.channel.write(frame);
+                if (frame.hasRemaining()) {
+                    connection.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+                connection.outbox.poll();
+                connection.queued.addAndGet(-frame.limit());
+            }
+            connection.key.interestOps(SelectionKey.OP_READ);
+        } catch (IOException e) {
+            disconnect(connection);
+        }
+    }
+
+    private void disconnect(Connection connection) {
+        if (connection.closed) return;
+        connection.closed = true;
+        connection.key.cancel();
+        closeQuietly(connection.channel);
+        waiting.values().remove(connection);
+        Match match = connection.match;
+        if (match != null) match.post(() -> match.forfeit(connection));
+        for (Match watched : connection.watching) watched.post(() -> watched.unwatch(connection));
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+            // already closing
+        }
+    }
+}
@@ -0,0 +1,338 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HexOustServerTest {
+    private HexOustServer server;
+    private int lastMatch; // the id of the match pair last started
+
+    // A blocking client reading whole frames, with a timeout so a broken server fails the test instead of hanging
+    private static final class TestClient implements AutoCloseable {
+        final Socket socket;
+        final DataInputStream in;
+
+        TestClient(InetSocketAddress address) throws IOException {
+            this(address, 0);
+        }
+
+        // A receive buffer of 0 keeps the default; a small one makes a client that stops reading fall behind sooner
+        TestClient(InetSocketAddress address, int receiveBuffer) throws IOException {
+            socket = new Socket();
+            if (receiveBuffer > 0) socket.setReceiveBufferSize(receiveBuffer);
+            socket.connect(address);
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(5000);
+            in = new DataInputStream(socket.getInputStream());
+        }
+
+        void send(ByteBuffer frame) throws IOException {
+            socket.getOutputStream().write(frame.array(), 0, frame.limit());
+        }
+
+        ByteBuffer receive() throws IOException {
+            byte[] frame = new byte[in.readUnsignedShort()];
+            in.readFully(frame);
+            return ByteBuffer.wrap(frame);
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        server = new HexOustServer(new InetSocketAddress("127.0.0.1", 0), 2);
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    // Joins two clients into one match and checks the START each of them gets; returns them red first
+    private TestClient[] pair(int radius) throws IOException {
+        TestClient first = new TestClient(server.address());
+        first.send(Protocol.join(radius));
+        TestClient second = new TestClient(server.address());
+        second.send(Protocol.join(radius));
+        ByteBuffer firstStart = first.receive();
+        ByteBuffer secondStart = second.receive();
+        assertEquals(Protocol.START, firstStart.get());
+        assertEquals(Protocol.START, secondStart.get());
+        lastMatch = firstStart.getInt();
+        assertEquals(lastMatch, secondStart.getInt());
+        assertEquals(radius, firstStart.get());
+        assertEquals(radius, secondStart.get());
+        int colour = firstStart.get();
+        assertEquals(Colour.RED + Colour.BLUE, colour + secondStart.get());
+        return colour == Colour.RED ? new TestClient[] {first, second} : new TestClient[] {second, first};
+    }
+
+    @Test
+    public void testPlaysAFullGameOverLoopback() throws IOException {
+        TestClient[] clients = pair(2);
+        GameState state = new GameState(2);
+        SplittableRandom random = new SplittableRandom(3);
+        int winner = -1;
+        while (winner == -1) {
+            int player = state.playerTurn;
+            Bitboard legal = GameManager.legalMoves(state, player);
+            int cell = legal.nthSetBit(random.nextInt(legal.cardinality()));
+            clients[player == Colour.RED ? 0 : 1].send(Protocol.move(cell));
+
+            MoveResult expected = GameManager.evaluate(state, cell, player);
+            GameManager.apply(state, expected);
+            for (TestClient client : clients) {
+                ByteBuffer moved = client.receive();
+                assertEquals(Protocol.MOVED, moved.get());
+                moved.getInt();
+                assertEquals(cell, Short.toUnsignedInt(moved.getShort()));
+                assertEquals(player, moved.get());
+                int next = moved.get();
+                assertEquals(expected.capturedStoneCount(), moved.getShort());
+                if (next != Colour.WHITE && next != state.playerTurn) GameManager.setPlayerTurn(state, next);
+                if (next == Colour.WHITE) {
+                    ByteBuffer end = client.receive();
+                    assertEquals(Protocol.END, end.get());
+                    end.getInt();
+                    winner = end.get();
+                }
+            }
+        }
+        int stones = state.stoneCount(Colour.RED) - state.stoneCount(Colour.BLUE);
+        int expected = GameManager.winner(state);
+        if (expected == -1) expected = stones > 0 ? Colour.RED : stones < 0 ? Colour.BLUE : Colour.WHITE;
+        assertEquals(expected, winner);
+        assertEquals(1, server.finishedMatches());
+        assertEquals(0, server.activeMatches());
+        for (TestClient client : clients) client.close();
+    }
+
+    @Test
+    public void testRejectsIllegalMoves() throws IOException {
+        TestClient[] clients = pair(3);
+        clients[1].send(Protocol.move(0)); // not blue's turn
+        ByteBuffer rejected = clients[1].receive();
+        assertEquals(Protocol.ILLEGAL, rejected.get());
+        assertEquals(0, rejected.getShort());
+
+        clients[0].send(Protocol.move(0));
+        assertEquals(Protocol.MOVED, clients[0].receive().get());
+        assertEquals(Protocol.MOVED, clients[1].receive().get());
+        clients[1].send(Protocol.move(0)); // occupied
+        assertEquals(Protocol.ILLEGAL, clients[1].receive().get());
+        assertEquals(1, server.movesPlayed());
+        for (TestClient client : clients) client.close();
+    }
+
+    @Test
+    public void testDisconnectForfeits() throws IOException {
+        TestClient[] clients = pair(3);
+        clients[0].close();
+        ByteBuffer end = clients[1].receive();
+        assertEquals(Protocol.END, end.get());
+        end.getInt();
+        assertEquals(Colour.BLUE, end.get());
+        clients[1].close();
+    }
+
+    @Test
+    public void testMalformedFrameClosesTheConnection() throws IOException {
+        try (TestClient client = new TestClient(server.address())) {
+            client.send(ByteBuffer.wrap(new byte[] {0, 1, 99}));
+            assertThrows(EOFException.class, client::receive);
+        }
+    }
+
+    @Test
+    public void testClientsThatResetOnConnectDoNotStopTheServer() throws IOException {
+        TestClient[] clients = pair(3);
+        for (int i = 0; i < 200; i++) {
+            try (Socket socket = new Socket()) {
+                socket.connect(server.address());
+                socket.setSoLinger(true, 0); // closing sends a reset
+            }
+        }
+        clients[0].send(Protocol.move(0));
+        assertEquals(Protocol.MOVED, clients[0].receive().get());
+        assertEquals(Protocol.MOVED, clients[1].receive().get());
+        TestClient[] more = pair(2);
+        assertEquals(2, server.activeMatches());
+        for (TestClient client : clients) client.close();
+        for (TestClient client : more) client.close();
+    }
+
+    // Plays random legal games in every match, a move at a time in turn, until all of them have ended
+    private static void playRandomGames(TestClient[][] pairs, GameState[] states, long seed) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        boolean[] over = new boolean[pairs.length];
+        for (int playing = pairs.length; playing > 0; ) {
+            for (int m = 0; m < pairs.length; m++) {
+                if (over[m]) continue;
+                GameState state = states[m];
+                Bitboard legal = GameManager.legalMoves(state, state.playerTurn);
+                int cell = legal.nthSetBit(random.nextInt(legal.cardinality()));
+                pairs[m][state.playerTurn == Colour.RED ? 0 : 1].send(Protocol.move(cell));
+                GameManager.apply(state, GameManager.evaluate(state, cell, state.playerTurn));
+                for (TestClient client : pairs[m]) {
+                    ByteBuffer moved = client.receive();
+                    int next = moved.get(8); // after the type, match, cell and player
+                    if (next == Colour.WHITE) {
+                        assertEquals(Protocol.END, client.receive().get());
+                        over[m] = true;
+                    } else {
+                        GameManager.setPlayerTurn(state, next);
+                    }
+                }
+                if (over[m]) playing--;
+            }
+        }
+    }
+
+    // Follows matches from a watcher's frames alone: SYNC sets a board, MOVED places and captures. Returns at the
+    // END of every match, with each board as colours by cell.
+    private static int[][] watch(TestClient watcher, int[] ids, int cells) throws IOException {
+        int[][] boards = new int[ids.length][];
+        int ended = 0;
+        while (ended < ids.length) {
+            ByteBuffer frame = watcher.receive();
+            byte type = frame.get();
+            int m = Arrays.binarySearch(ids, frame.getInt());
+            if (type == Protocol.SYNC) {
+                frame.get();
+                frame.get();
+                boards[m] = new int[cells];
+                for (int colour : new int[] {Colour.RED, Colour.BLUE}) {
+                    for (int i = frame.getShort(); i > 0; i--) boards[m][frame.getShort()] = colour;
+                }
+            } else if (type == Protocol.MOVED) {
+                int cell = frame.getShort();
+                int player = frame.get();
+                frame.get();
+                for (int i = frame.getShort(); i > 0; i--) boards[m][frame.getShort()] = Colour.WHITE;
+                boards[m][cell] = player;
+            } else {
+                assertEquals(Protocol.END, type);
+                ended++;
+            }
+        }
+        return boards;
+    }
+
+    private static void assertSameBoard(GameState state, int[] board) {
+        for (int cell = 0; cell < board.length; cell++) assertEquals(state.colourAt(cell), board[cell]);
+    }
+
+    @Test
+    public void testWatcherFollowsAGameFromDeltas() throws IOException {
+        TestClient[] players = pair(3);
+        players[0].send(Protocol.move(5));
+        players[0].receive();
+        players[1].receive();
+        int id = lastMatch;
+
+        try (TestClient watcher = new TestClient(server.address())) {
+            watcher.send(Protocol.watch(id));
+            GameState state = new GameState(3);
+            GameManager.apply(state, GameManager.evaluate(state, 5, Colour.RED));
+            playRandomGames(new TestClient[][] {players}, new GameState[] {state}, 11);
+
+            int[][] boards = watch(watcher, new int[] {id}, state.topology.cellCount);
+            assertSameBoard(state, boards[0]);
+            watcher.send(Protocol.watch(id));
+            ByteBuffer gone = watcher.receive();
+            assertEquals(Protocol.UNKNOWN, gone.get());
+            assertEquals(id, gone.getInt());
+        }
+        assertEquals(0, server.resyncs());
+        for (TestClient player : players) player.close();
+    }
+
+    @Test
+    public void testSlowWatcherIsResyncedWithoutStallingGames() throws IOException {
+        int count = 60;
+        try (HexOustServer small = new HexOustServer(new InetSocketAddress("127.0.0.1", 0), 2, 4096)) {
+            small.start();
+            server.close();
+            server = small;
+            TestClient[][] pairs = new TestClient[count][];
+            GameState[] states = new GameState[count];
+            int[] ids = new int[count];
+            for (int m = 0; m < count; m++) {
+                pairs[m] = pair(4);
+                states[m] = new GameState(4);
+                ids[m] = lastMatch;
+            }
+
+            try (TestClient watcher = new TestClient(server.address(), 4096)) {
+                for (int id : ids) watcher.send(Protocol.watch(id));
+                // the watcher reads nothing until every game is over
+                playRandomGames(pairs, states, 13);
+
+                int[][] boards = watch(watcher, ids, states[0].topology.cellCount);
+                for (int m = 0; m < count; m++) assertSameBoard(states[m], boards[m]);
+            }
+            assertTrue(server.resyncs() > 0);
+            assertEquals(count, server.finishedMatches());
+        }
+    }
+
+    @Test
+    public void testJournalsEveryMove() throws Exception {
+        Path file = Files.createTempFile("hexoust", ".journal");
+        try {
+            GameState state = new GameState(3);
+            try (MoveJournal journal = MoveJournal.open(file)) {
+                server.setJournal(journal);
+                TestClient[] players = pair(3);
+                playRandomGames(new TestClient[][] {players}, new GameState[] {state}, 17);
+                for (TestClient player : players) player.close();
+                journal.result(0, Colour.WHITE).get(); // queued after the match's records, so they are on disk too
+            }
+
+            int[] board = new int[state.topology.cellCount];
+            int[] results = new int[1];
+            MoveJournal.read(file, new MoveJournal.Visitor() {
+                @Override
+                public void move(long game, int cell, int player, int[] captured) {
+                    for (int stone : captured) board[stone] = Colour.WHITE;
+                    board[cell] = player;
+                }
+
+                @Override
+                public void result(long game, int winner) {
+                    if (game == 1) results[0]++;
+                }
+            });
+            assertSameBoard(state, board);
+            assertEquals(1, results[0]);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testHostsManyMatchesAtOnce() throws IOException {
+        ServerBenchmark.Report report = ServerBenchmark.drive(server.address(), 200, 3, 5);
+        assertEquals(200, report.finished);
+        assertEquals(0, report.illegal);
+        assertEquals(server.movesPlayed(), report.latency.length);
+        assertEquals(0, server.activeMatches());
+    }
+}
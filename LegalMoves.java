@@ -0,0 +1,213 @@
+/**
+ * Per-position table of every cell's MoveResult for both players, filled in one pass and kept up to date as
+ * stones come and go. Changes are collected as the board is edited and, on the next lookup, only the cells whose
+ * outcome can have changed are evaluated again: cells next to a changed cell or next to any group that touches
+ * one, or to a group adjacent to such a group. Those cells are only classified as legal or not, using each own
+ * group's smallest opponent neighbour worked out once per refresh; the stones a capture takes are listed the first
+ * time that move is looked up. The table belongs to its GameState and, like it, to one thread.
+ */
+public final class LegalMoves {
+    private final GameState state;
+    private final BoardTopology topology;
+    private final MoveResult[][] results = new MoveResult[3][];
+    private final MoveResult[][] placements = new MoveResult[3][]; // reused results for moves that capture nothing
+    private final MoveResult[][] illegals = new MoveResult[3][];
+    private final Bitboard[] legal = new Bitboard[3];
+    private final Bitboard[] dirty = new Bitboard[3];
+    private final Bitboard changed;
+    private final int[] roots;
+    private final int[] smallest; // per group root, the smallest adjacent opponent group in this refresh
+    private final int[] smallestStamp;
+    private final int[] ownRoots = new int[6];
+    private int generation = 0;
+
+    LegalMoves(GameState state) {
+        this.state = state;
+        this.topology = state.topology;
+        this.changed = new Bitboard(topology.cellCount);
+        this.roots = new int[topology.cellCount];
+        this.smallest = new int[topology.cellCount];
+        this.smallestStamp = new int[topology.cellCount];
+        for (int player = Colour.RED; player <= Colour.BLUE; player++) {
+            results[player] = new MoveResult[topology.cellCount];
+            placements[player] = new MoveResult[topology.cellCount];
+            illegals[player] = new MoveResult[topology.cellCount];
+            for (int cell = 0; cell < topology.cellCount; cell++) {
+                placements[player][cell] = MoveResult.placement(cell, player);
+                illegals[player][cell] = MoveResult.illegal(cell, player);
+            }
+            legal[player] = new Bitboard(topology.cellCount);
+            dirty[player] = new Bitboard(topology.cellCount);
+        }
+        invalidateAll();
+    }
+
+    /**
+     * Records that a cell gained or lost a stone.
+     *
+     * @param cell the cell that changed
+     */
+    void cellChanged(int cell) {
+        changed.set(cell);
+    }
+
+    /**
+     * Throws away every cached result, for when the whole board was replaced.
+     */
+    void invalidateAll() {
+        changed.clear();
+        for (int player = Colour.RED; player <= Colour.BLUE; player++) {
+            for (int cell = 0; cell < topology.cellCount; cell++) dirty[player].set(cell);
+        }
+    }
+
+    /**
+     * Takes over another table's results, pending changes and stale cells, for a state that was just copied from
+     * the other table's state. The copy then only has to catch up on what changes after this point.
+     *
+     * @param other the table of the copied state
+     */
+    void copyFrom(LegalMoves other) {
+        changed.copyFrom(other.changed);
+        for (int player = Colour.RED; player <= Colour.BLUE; player++) {
+            System.arraycopy(other.results[player], 0, results[player], 0, topology.cellCount);
+            legal[player].copyFrom(other.legal[player]);
+            dirty[player].copyFrom(other.dirty[player]);
+        }
+    }
+
+    /**
+     * @return the cells the player may place on, shared and not to be modified
+     */
+    Bitboard legal(int player) {
+        refresh(player);
+        return legal[player];
+    }
+
+    /**
+     * @return the cached outcome of the player placing on the cell
+     */
+    MoveResult result(int cell, int player) {
+        refresh(player);
+        MoveResult result = results[player][cell];
+        if (result == null) { // a capture not yet listed
+            result = GameManager.evaluateBoard(state, cell, player);
+            results[player][cell] = result;
+        }
+        return result;
+    }
+
+    private void refresh(int player) {
+        if (!changed.isEmpty()) {
+            markDirtyRegion();
+        }
+        Bitboard stale = dirty[player];
+        if (stale.isEmpty()) return;
+        if (++generation == Integer.MAX_VALUE) {
+            java.util.Arrays.fill(smallestStamp, 0);
+            generation = 1;
+        }
+
+        Bitboard own = state.stonesOf(player);
+        Bitboard opponent = state.stonesOf(player == Colour.RED ? Colour.BLUE : Colour.RED);
+        for (int cell = stale.nextSetBit(0); cell != -1; cell = stale.nextSetBit(cell + 1)) {
+            MoveResult result = classify(cell, own, opponent, player);
+            results[player][cell] = result;
+            if (result == null || result.legal) {
+                legal[player].set(cell);
+            } else {
+                legal[player].clear(cell);
+            }
+        }
+        stale.clear();
+    }
+
+    // The reused placement or illegal result for the cell, or null for a capture, without listing captured stones
+    private MoveResult classify(int cell, Bitboard own, Bitboard opponent, int player) {
+        if (state.colourAt(cell) != Colour.WHITE) return illegals[player][cell];
+
+        StoneGroups groups = state.groups;
+        int count = 0;
+        int mergedSize = 1;
+        for (int n : topology.neighbours(cell)) {
+            if (!own.get(n)) continue;
+            int root = groups.find(n);
+            boolean seen = false;
+            for (int k = 0; k < count; k++) seen |= ownRoots[k] == root;
+            if (!seen) {
+                ownRoots[count++] = root;
+                mergedSize += groups.size(root);
+            }
+        }
+        if (count == 0) return placements[player][cell]; // a lone stone is never larger than a group it touches
+
+        for (int n : topology.neighbours(cell)) {
+            if (opponent.get(n) && groups.size(n) < mergedSize) return null;
+        }
+        for (int k = 0; k < count; k++) {
+            int root = ownRoots[k];
+            if (smallestStamp[root] != generation) {
+                smallestStamp[root] = generation;
+                smallest[root] = groups.smallestAdjacent(root, opponent);
+            }
+            if (smallest[root] < mergedSize) return null;
+        }
+        return illegals[player][cell]; // touching its own group without capturing
+    }
+
+    // Marks for both players every cell whose outcome may differ since the last refresh
+    private void markDirtyRegion() {
+        StoneGroups groups = state.groups;
+        FloodFill marks = topology.floodFill();
+        marks.reset();
+
+        // Groups on or next to a changed cell, then the groups touching those
+        int count = 0;
+        for (int cell = changed.nextSetBit(0); cell != -1; cell = changed.nextSetBit(cell + 1)) {
+            count = addGroup(cell, count, groups, marks);
+            for (int n : topology.neighbours(cell)) {
+                count = addGroup(n, count, groups, marks);
+            }
+        }
+        int touched = count;
+        for (int g = 0; g < touched; g++) {
+            int stone = roots[g];
+            do {
+                for (int n : topology.neighbours(stone)) {
+                    count = addGroup(n, count, groups, marks);
+                }
+                stone = groups.next(stone);
+            } while (stone != roots[g]);
+        }
+
+        for (int cell = changed.nextSetBit(0); cell != -1; cell = changed.nextSetBit(cell + 1)) {
+            markAround(cell);
+        }
+        for (int g = 0; g < count; g++) {
+            int stone = roots[g];
+            do {
+                markAround(stone);
+                stone = groups.next(stone);
+            } while (stone != roots[g]);
+        }
+        changed.clear();
+    }
+
+    private int addGroup(int cell, int count, StoneGroups groups, FloodFill marks) {
+        if (state.colourAt(cell) == Colour.WHITE) return count;
+        int root = groups.find(cell);
+        if (marks.mark(root)) {
+            roots[count++] = root;
+        }
+        return count;
+    }
+
+    private void markAround(int cell) {
+        for (int player = Colour.RED; player <= Colour.BLUE; player++) {
+            dirty[player].set(cell);
+            for (int n : topology.neighbours(cell)) {
+                dirty[player].set(n);
+            }
+        }
+    }
+}
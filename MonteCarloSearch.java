@@ -0,0 +1,303 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Computer opponent that picks moves by Monte-Carlo tree search, with every worker of a ForkJoinPool growing one
+ * shared tree. Visit and win counts are updated with atomic adds and children are published with a single
+ * compare-and-set, so workers never lock. A worker walking down the tree adds a virtual loss to each node it passes,
+ * which steers the other workers onto different lines until its playout result is backed up.
+ * Playouts play uniformly random legal moves using GameManager's rules on a position private to the worker.
+ * The search runs until its playout budget or its time budget is spent, or until it is cancelled. As in Search, a
+ * cancel that arrives while no search is running stops the next one, and holds until clearCancel.
+ */
+public class MonteCarloSearch {
+    private static final int VIRTUAL_LOSS = 3;
+    private static final double EXPLORATION = 0.7;
+    private static final int PROBES = 8; // random cells tried before listing the legal moves
+    private static final long SEED = 0x4D435453L;
+
+    private final ForkJoinPool pool;
+    private final int workers;
+    private final AtomicLong playouts = new AtomicLong();
+    private volatile boolean cancelled;
+    private long elapsedNanos;
+    private Node root;
+
+    /**
+     * Creates a search using one worker per available processor.
+     */
+    public MonteCarloSearch() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a search with its own pool of the given number of workers.
+     *
+     * @param workers the number of threads to run playouts on
+     */
+    public MonteCarloSearch(int workers) {
+        this.workers = workers;
+        this.pool = new ForkJoinPool(workers);
+    }
+
+    /**
+     * Searches the position for the player to move until either budget runs out or the search is cancelled.
+     *
+     * @param position the game to search, left unchanged and not to be changed until the search returns
+     * @param maxPlayouts the most playouts to run, or Long.MAX_VALUE for no limit
+     * @param millis the time budget in milliseconds
+     * @return the most visited move, or null if the game is already won or the player to move has no legal move
+     */
+    public MoveResult search(GameState position, long maxPlayouts, long millis) {
+        long start = System.nanoTime();
+        long deadline = start + millis * 1_000_000L;
+        playouts.set(0);
+
+        GameState rootState = new GameState(position.topology.radius);
+        rootState.copyFrom(position);
+        rootState.isGameOver = false;
+        int player = rootState.playerTurn;
+        root = new Node(GameManager.PASS, player == Colour.RED ? Colour.BLUE : Colour.RED);
+        if (GameManager.winner(rootState) != -1 || !GameManager.hasLegalMove(rootState, player)) {
+            elapsedNanos = System.nanoTime() - start;
+            return null;
+        }
+        root.expand(rootState);
+
+        ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[workers];
+        for (int w = 0; w < workers; w++) {
+            long seed = SEED + w;
+            tasks[w] = pool.submit(() -> work(rootState, maxPlayouts, deadline, new SplittableRandom(seed)));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+        elapsedNanos = System.nanoTime() - start;
+
+        Node best = null;
+        for (Node child : root.children) {
+            if (child.cell != GameManager.PASS && (best == null || child.visits > best.visits)) best = child;
+        }
+        return GameManager.evaluate(rootState, best.cell, player);
+    }
+
+    /**
+     * Stops the running search as soon as possible, or the next one if none is running; search then returns the most
+     * visited move so far. The cancel holds until clearCancel.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Lets searches run again after a cancel. Call it before checking whether a search is still wanted, so a cancel
+     * that comes after the check stops the search instead of being cleared by it.
+     */
+    public void clearCancel() {
+        cancelled = false;
+    }
+
+    /**
+     * Stops the worker threads. The search cannot be used afterwards.
+     */
+    public void shutdown() {
+        pool.shutdown();
+        try {
+            pool.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return the number of playouts run by the last search
+     */
+    public long playouts() {
+        return playouts.get();
+    }
+
+    /**
+     * @return the speed of the last search in playouts per second
+     */
+    public long playoutsPerSecond() {
+        return elapsedNanos == 0 ? 0 : playouts.get() * 1_000_000_000L / elapsedNanos;
+    }
+
+    /**
+     * @return the share of playouts the player to move won after the most visited move, from 0 to 1
+     */
+    public double winRate() {
+        Node best = null;
+        for (Node child : root.children) {
+            if (best == null || child.visits > best.visits) best = child;
+        }
+        return best == null || best.visits == 0 ? 0 : best.wins / (2.0 * best.visits);
+    }
+
+    private void work(GameState rootState, long maxPlayouts, long deadline, SplittableRandom random) {
+        GameState state = new GameState(rootState.topology.radius);
+        Node[] path = new Node[4 * rootState.topology.cellCount + 2];
+        while (!cancelled && System.nanoTime() < deadline && playouts.getAndIncrement() < maxPlayouts) {
+            state.copyFrom(rootState);
+
+            // Selection, adding a virtual loss on the way down
+            int length = 0;
+            Node node = root;
+            path[length++] = node;
+            node.addVisits(VIRTUAL_LOSS);
+            while (node.children != null && node.children.length > 0 && length < path.length) {
+                node = node.select();
+                play(state, node);
+                path[length++] = node;
+                node.addVisits(VIRTUAL_LOSS);
+            }
+
+            // Expansion of a leaf that has been reached before, then one playout
+            if (node.children == null && node.visits > VIRTUAL_LOSS) {
+                node.expand(state);
+                if (node.children.length > 0) {
+                    node = node.select();
+                    play(state, node);
+                    path[length++] = node;
+                    node.addVisits(VIRTUAL_LOSS);
+                }
+            }
+            int winner = playout(state, random);
+
+            // Backup: take the virtual loss back and score each node for the player who moved into it
+            for (int i = 0; i < length; i++) {
+                Node n = path[i];
+                n.addVisits(1 - VIRTUAL_LOSS);
+                n.addWins(winner == 0 ? 1 : winner == n.mover ? 2 : 0);
+            }
+        }
+        playouts.accumulateAndGet(maxPlayouts, Math::min); // the failed increment that ended the loop
+    }
+
+    // Plays the move of a tree node; a pass only hands over the turn
+    private static void play(GameState state, Node node) {
+        if (node.cell == GameManager.PASS) {
+            GameManager.setPlayerTurn(state, state.playerTurn == Colour.RED ? Colour.BLUE : Colour.RED);
+        } else {
+            GameManager.apply(state, GameManager.evaluateBoard(state, node.cell, node.mover));
+        }
+    }
+
+    /**
+     * Plays random legal moves until the game ends and returns the winner.
+     * A game that goes on for too long is decided by the stones on the board.
+     *
+     * @return the winning colour, or white for a draw
+     */
+    static int playout(GameState state, SplittableRandom random) {
+        int limit = 4 * state.topology.cellCount;
+        for (int moves = 0; moves < limit; moves++) {
+            int winner = GameManager.winner(state);
+            if (winner != -1) return winner;
+            int player = state.playerTurn;
+            int cell = randomMove(state, player, random);
+            if (cell == GameManager.PASS) {
+                GameManager.setPlayerTurn(state, player == Colour.RED ? Colour.BLUE : Colour.RED);
+            } else {
+                GameManager.apply(state, GameManager.evaluateBoard(state, cell, player));
+            }
+        }
+        return byStones(state);
+    }
+
+    private static int byStones(GameState state) {
+        int difference = state.stoneCount(Colour.RED) - state.stoneCount(Colour.BLUE);
+        return difference > 0 ? Colour.RED : difference < 0 ? Colour.BLUE : Colour.WHITE;
+    }
+
+    // A few random probes find a legal cell quickly while most of the board is open; ranking the bits is the fallback
+    private static int randomMove(GameState state, int player, SplittableRandom random) {
+        int cellCount = state.topology.cellCount;
+        for (int i = 0; i < PROBES; i++) {
+            int cell = random.nextInt(cellCount);
+            if (GameManager.isLegal(state, cell, player)) return cell;
+        }
+        Bitboard legal = GameManager.legalMoves(state, player);
+        if (legal.isEmpty()) return GameManager.PASS;
+        return legal.nthSetBit(random.nextInt(legal.cardinality()));
+    }
+
+    /**
+     * A position in the shared tree, reached by one move. Children are created once, by whichever worker gets
+     * there first, and never change afterwards.
+     */
+    static final class Node {
+        private static final Node[] NONE = new Node[0];
+        private static final AtomicIntegerFieldUpdater<Node> VISITS =
+                AtomicIntegerFieldUpdater.newUpdater(Node.class, "visits");
+        private static final AtomicLongFieldUpdater<Node> WINS =
+                AtomicLongFieldUpdater.newUpdater(Node.class, "wins");
+        private static final AtomicReferenceFieldUpdater<Node, Node[]> CHILDREN =
+                AtomicReferenceFieldUpdater.newUpdater(Node.class, Node[].class, "children");
+
+        final int cell;
+        final int mover; // the colour that played the move leading here
+        volatile int visits;
+        volatile long wins; // half points for the mover: 2 per win, 1 per draw
+        volatile Node[] children; // null until expanded, empty when the game is over here
+
+        Node(int cell, int mover) {
+            this.cell = cell;
+            this.mover = mover;
+        }
+
+        void addVisits(int delta) {
+            VISITS.addAndGet(this, delta);
+        }
+
+        void addWins(long delta) {
+            WINS.addAndGet(this, delta);
+        }
+
+        // Lists the moves of the position this node stands for; a player without a move gets a single pass
+        void expand(GameState state) {
+            Node[] created;
+            int player = state.playerTurn;
+            int opponent = player == Colour.RED ? Colour.BLUE : Colour.RED;
+            Bitboard legal = GameManager.legalMoves(state, player);
+            if (GameManager.winner(state) != -1) {
+                created = NONE;
+            } else if (!legal.isEmpty()) {
+                created = new Node[legal.cardinality()];
+                int i = 0;
+                for (int cell = legal.nextSetBit(0); cell != -1; cell = legal.nextSetBit(cell + 1)) {
+                    created[i++] = new Node(cell, player);
+                }
+            } else if (GameManager.hasLegalMove(state, opponent)) {
+                created = new Node[] {new Node(GameManager.PASS, player)};
+            } else {
+                created = NONE;
+            }
+            CHILDREN.compareAndSet(this, null, created);
+        }
+
+        // Upper confidence bound selection; an unvisited child is always tried first
+        Node select() {
+            Node[] options = children;
+            double logVisits = Math.log(Math.max(1, visits));
+            Node best = null;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (Node child : options) {
+                int n = child.visits;
+                if (n == 0) return child;
+                double value = child.wins / (2.0 * n) + EXPLORATION * Math.sqrt(logVisits / n);
+                if (value > bestValue) {
+                    bestValue = value;
+                    best = child;
+                }
+            }
+            return best;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MonteCarloSearchTest {
+    private GameState state;
+    private MonteCarloSearch search;
+
+    @Before
+    public void setUp() {
+        state = new GameState();
+        search = new MonteCarloSearch(2);
+    }
+
+    @After
+    public void tearDown() {
+        search.shutdown();
+    }
+
+    @Test
+    public void testFindsWinningCapture() {
+        GameManager.placeStone(state, state.hexAt(0, 0, 0), Colour.BLUE);
+        GameManager.placeStone(state, state.hexAt(1, -1, 0), Colour.RED);
+        GameManager.placeStone(state, state.hexAt(1, 0, -1), Colour.RED);
+        state.move = 2;
+        state.isStartOfGame = false;
+
+        MoveResult move = search.search(state, 5000, 10_000);
+
+        assertNotNull(move);
+        assertTrue(move.movesAgain);
+        assertTrue(search.winRate() > 0.99);
+    }
+
+    @Test
+    public void testCancelBeforeSearchIsNotLost() {
+        search.cancel();
+        long start = System.nanoTime();
+        assertNotNull(search.search(state, Long.MAX_VALUE, 60_000));
+        assertTrue(System.nanoTime() - start < 10_000_000_000L);
+        assertEquals(0, search.playouts());
+
+        search.clearCancel();
+        search.search(state, 500, 60_000);
+        assertEquals(500, search.playouts());
+    }
+
+    @Test
+    public void testPlayoutBudgetIsRespected() {
+        long key = state.key();
+        MoveResult move = search.search(state, 500, 10_000);
+
+        assertNotNull(move);
+        assertTrue(GameManager.evaluate(state, move.cell, Colour.RED).legal);
+        assertEquals(500, search.playouts());
+        assertTrue(search.playoutsPerSecond() > 0);
+        assertEquals(key, state.key());
+    }
+
+    @Test
+    public void testNoMoveWhenNothingIsLegal() {
+        for (HexCube hex : state.hexs()) {
+            GameManager.placeStone(state, hex, Colour.BLUE);
+        }
+        assertNull(search.search(state, 100, 1000));
+    }
+
+    @Test
+    public void testNoMoveWhenTheGameIsAlreadyWon() {
+        GameState decided = new GameState(3);
+        GameManager.placeStone(decided, decided.hexAt(0, 0, 0), Colour.RED);
+        decided.move = 3;
+        decided.isStartOfGame = false;
+        decided.playerTurn = Colour.BLUE;
+        assertTrue(GameManager.hasLegalMove(decided, Colour.BLUE));
+
+        assertNull(search.search(decided, 100, 1000));
+    }
+
+    @Test
+    public void testPlayoutEndsWithAWinner() {
+        SplittableRandom random = new SplittableRandom(1);
+        for (int game = 0; game < 20; game++) {
+            state.reset();
+            int winner = MonteCarloSearch.playout(state, random);
+            int ended = GameManager.winner(state);
+            if (ended != -1) {
+                assertEquals(ended, winner);
+            } else {
+                assertTrue(winner == Colour.WHITE || winner == Colour.RED || winner == Colour.BLUE);
+            }
+        }
+    }
+}
@@ -0,0 +1,338 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only binary journal of games: every game start, every move with the stones it captured, and every result.
+ * Records are length-prefixed and checksummed:
+ * length(u32) crc32c(u32) then a body of type(u8) game(i64) and the payload, big-endian.
+ * GAME radius(u8) starts a game, MOVE cell(u16) player(u8) captured(u16) cell(u16)* plays a move and
+ * RESULT winner(u8) ends a game, WHITE meaning a draw.
+ *
+ * Appending only encodes the record and queues it, so it costs the caller no I/O. One writer thread takes
+ * everything queued since its last sync, writes it with one gathering write and forces it to disk with one fsync,
+ * then completes the futures of those records; whatever arrives during the fsync goes into the next batch. With
+ * many games writing at once the number of fsyncs stays near the disk's sync rate however many records there are.
+ * Callers that must know a record is durable wait on its future; the game paths do not wait.
+ *
+ * Opening a journal reads it from the start, keeps every record up to the first one that is torn or fails its
+ * checksum, and cuts the file back to there, so a crash mid-write loses at most the records not yet synced.
+ */
+public final class MoveJournal implements Closeable {
+    static final byte GAME = 1;
+    static final byte MOVE = 2;
+    static final byte RESULT = 3;
+
+    private static final int HEADER_BYTES = 8; // length and checksum
+    private static final int BODY_HEADER_BYTES = 9; // type and game
+    private static final int MAX_BODY = 1 << 20; // anything longer is a torn length, not a record
+
+    private final FileChannel channel;
+    private final Thread writer;
+    private final Object lock = new Object();
+    private List<ByteBuffer> pending = new ArrayList<>(); // guarded by lock
+    private List<CompletableFuture<Void>> waiting = new ArrayList<>(); // guarded by lock
+    private boolean closing; // guarded by lock
+    private IOException failure; // guarded by lock, set once a write fails
+    private final AtomicLong nextGame;
+    private final AtomicLong records = new AtomicLong();
+    private final AtomicLong syncs = new AtomicLong();
+
+    /** Wins and draws of every game with a RESULT in the journal when it was opened. */
+    public final int redWins;
+    public final int blueWins;
+    public final int draws;
+    /** The length of the journal that was kept when it was opened. */
+    public final long recoveredBytes;
+
+    /**
+     * Receives the records of a journal in order. Every method does nothing unless overridden.
+     */
+    public interface Visitor {
+        default void game(long game, int radius) {
+        }
+
+        /**
+         * @param captured the cells of the stones the move captured, empty for a plain placement
+         */
+        default void move(long game, int cell, int player, int[] captured) {
+        }
+
+        default void result(long game, int winner) {
+        }
+    }
+
+    // Tallies what a journal held, to carry the scores and game numbers on after a restart
+    private static final class Tally implements Visitor {
+        long lastGame;
+        int redWins;
+        int blueWins;
+        int draws;
+
+        @Override
+        public void game(long game, int radius) {
+            lastGame = Math.max(lastGame, game);
+        }
+
+        @Override
+        public void result(long game, int winner) {
+            if (winner == Colour.RED) redWins++;
+            else if (winner == Colour.BLUE) blueWins++;
+            else draws++;
+        }
+    }
+
+    private MoveJournal(FileChannel channel, Tally tally, long recoveredBytes) {
+        this.channel = channel;
+        this.nextGame = new AtomicLong(tally.lastGame + 1);
+        this.redWins = tally.redWins;
+        this.blueWins = tally.blueWins;
+        this.draws = tally.draws;
+        this.recoveredBytes = recoveredBytes;
+        this.writer = new Thread(this::writeLoop, "hexoust-journal");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Opens a journal for appending, creating it if needed, after recovering it up to its last valid record.
+     *
+     * @param path the journal file
+     * @return the open journal
+     */
+    public static MoveJournal open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            Tally tally = new Tally();
+            long valid = read(channel, tally);
+            if (valid < channel.size()) {
+                channel.truncate(valid);
+                channel.force(true);
+            }
+            channel.position(valid);
+            return new MoveJournal(channel, tally, valid);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads a journal without changing it, stopping at the first torn or corrupt record.
+     *
+     * @param path the journal file
+     * @param visitor receives every valid record in order
+     * @return the length of the valid part of the journal
+     */
+    public static long read(Path path, Visitor visitor) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return read(channel, visitor);
+        }
+    }
+
+    private static long read(FileChannel channel, Visitor visitor) throws IOException {
+        long size = channel.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        ByteBuffer body = ByteBuffer.allocate(256);
+        CRC32C crc = new CRC32C();
+        while (position + HEADER_BYTES <= size) {
+            header.clear();
+            readFully(channel, header, position);
+            int length = header.getInt(0);
+            if (length < BODY_HEADER_BYTES || length > MAX_BODY || position + HEADER_BYTES + length > size) break;
+            if (body.capacity() < length) body = ByteBuffer.allocate(Math.max(length, body.capacity() * 2));
+            body.clear().limit(length);
+            readFully(channel, body, position + HEADER_BYTES);
+            crc.reset();
+            crc.update(body.duplicate());
+            if ((int) crc.getValue() != header.getInt(4) || !visit(body, visitor)) break;
+            position += HEADER_BYTES + length;
+        }
+        return position;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) throw new IOException("journal shrank");
+        }
+        buffer.flip();
+    }
+
+    // Hands one checked record body to the visitor; false if it does not parse, which ends recovery there too
+    private static boolean visit(ByteBuffer body, Visitor visitor) {
+        byte type = body.get();
+        long game = body.getLong();
+        switch (type) {
+            case GAME:
+                if (body.remaining() != 1) return false;
+                visitor.game(game, Byte.toUnsignedInt(body.get()));
+                return true;
+            case MOVE: {
+                if (body.remaining() < 5) return false;
+                int cell = Short.toUnsignedInt(body.getShort());
+                int player = body.get();
+                int[] captured = new int[Short.toUnsignedInt(body.getShort())];
+                if (body.remaining() != 2 * captured.length) return false;
+                for (int i = 0; i < captured.length; i++) captured[i] = Short.toUnsignedInt(body.getShort());
+                visitor.move(game, cell, player, captured);
+                return true;
+            }
+            case RESULT:
+                if (body.remaining() != 1) return false;
+                visitor.result(game, body.get());
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Numbers a new game and records its start. Numbers carry on from the games already in the journal.
+     *
+     * @param radius the board radius of the game
+     * @return the game's number, used by its other records
+     */
+    public long startGame(int radius) {
+        long game = nextGame.getAndIncrement();
+        append(record(GAME, game, 1).put((byte) radius));
+        return game;
+    }
+
+    /**
+     * Records a move that was played, with every stone it captured.
+     *
+     * @return completes once the record is on disk
+     */
+    public CompletableFuture<Void> move(long game, MoveResult result) {
+        int captured = result.capturedStoneCount();
+        ByteBuffer record = record(MOVE, game, 5 + 2 * captured).putShort((short) result.cell)
+                .put((byte) result.player).putShort((short) captured);
+        for (int i = 0; i < captured; i++) record.putShort((short) result.capturedStone(i));
+        return append(record);
+    }
+
+    /**
+     * Records how a game ended.
+     *
+     * @param winner Colour.RED, Colour.BLUE or Colour.WHITE for a draw
+     * @return completes once the record is on disk
+     */
+    public CompletableFuture<Void> result(long game, int winner) {
+        return append(record(RESULT, game, 1).put((byte) winner));
+    }
+
+    /**
+     * @return the number of records appended since the journal was opened
+     */
+    public long records() {
+        return records.get();
+    }
+
+    /**
+     * @return the number of fsyncs made since the journal was opened
+     */
+    public long syncs() {
+        return syncs.get();
+    }
+
+    // A record with its header and body header filled in, ready for payload bytes
+    private static ByteBuffer record(byte type, long game, int payload) {
+        int length = BODY_HEADER_BYTES + payload;
+        return ByteBuffer.allocate(HEADER_BYTES + length).putInt(length).putInt(0).put(type).putLong(game);
+    }
+
+    // Seals a record with its checksum and queues it for the writer
+    private CompletableFuture<Void> append(ByteBuffer record) {
+        record.flip();
+        CRC32C crc = new CRC32C();
+        crc.update(record.duplicate().position(HEADER_BYTES));
+        record.putInt(4, (int) crc.getValue());
+
+        CompletableFuture<Void> durable = new CompletableFuture<>();
+        synchronized (lock) {
+            if (failure != null || closing) {
+                durable.completeExceptionally(failure != null ? failure : new IOException("journal closed"));
+                return durable;
+            }
+            pending.add(record);
+            waiting.add(durable);
+            if (pending.size() == 1) lock.notify();
+        }
+        records.incrementAndGet();
+        return durable;
+    }
+
+    private void writeLoop() {
+        List<ByteBuffer> batch = new ArrayList<>();
+        List<CompletableFuture<Void>> done = new ArrayList<>();
+        while (true) {
+            synchronized (lock) {
+                while (pending.isEmpty() && !closing) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pending.isEmpty()) return;
+                List<ByteBuffer> swapRecords = pending;
+                pending = batch;
+                batch = swapRecords;
+                List<CompletableFuture<Void>> swapFutures = waiting;
+                waiting = done;
+                done = swapFutures;
+            }
+
+            IOException error = null;
+            try {
+                ByteBuffer[] buffers = batch.toArray(new ByteBuffer[0]);
+                long remaining = 0;
+                for (ByteBuffer buffer : buffers) remaining += buffer.remaining();
+                while (remaining > 0) remaining -= channel.write(buffers);
+                channel.force(false);
+                syncs.incrementAndGet();
+            } catch (IOException e) {
+                error = e;
+                synchronized (lock) {
+                    failure = e;
+                }
+            }
+            for (CompletableFuture<Void> future : done) {
+                if (error == null) future.complete(null);
+                else future.completeExceptionally(error);
+            }
+            batch.clear();
+            done.clear();
+        }
+    }
+
+    /**
+     * Writes and syncs everything already appended, then closes the file. Later appends fail.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            closing = true;
+            lock.notify();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        synchronized (lock) {
+            if (failure != null) throw failure;
+        }
+    }
+}
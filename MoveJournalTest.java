@@ -0,0 +1,171 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MoveJournalTest {
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = Files.createTempFile("hexoust", ".journal");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    // Writes every record as one line of text, to compare journals simply
+    private static final class Transcript implements MoveJournal.Visitor {
+        final List<String> lines = new ArrayList<>();
+
+        @Override
+        public void game(long game, int radius) {
+            lines.add("game " + game + " radius " + radius);
+        }
+
+        @Override
+        public void move(long game, int cell, int player, int[] captured) {
+            lines.add("move " + game + " " + cell + " " + player + " " + Arrays.toString(captured));
+        }
+
+        @Override
+        public void result(long game, int winner) {
+            lines.add("result " + game + " " + winner);
+        }
+    }
+
+    // Plays one short game with a capture into the journal and returns its number
+    private static long playCapture(MoveJournal journal) {
+        GameState state = new GameState(2);
+        long game = journal.startGame(2);
+        int[] cells = {state.topology.index(0, 0), state.topology.index(1, 0), state.topology.index(-1, 0)};
+        int[] players = {Colour.RED, Colour.BLUE, Colour.RED};
+        for (int i = 0; i < cells.length; i++) {
+            MoveResult move = GameManager.evaluate(state, cells[i], players[i]);
+            GameManager.apply(state, move);
+            journal.move(game, move);
+        }
+        journal.result(game, Colour.RED);
+        return game;
+    }
+
+    @Test
+    public void testRecordsReadBackInOrder() throws Exception {
+        try (MoveJournal journal = MoveJournal.open(file)) {
+            assertEquals(1, playCapture(journal));
+            CompletableFuture<Void> last = journal.result(7, Colour.WHITE);
+            last.get();
+        }
+        Transcript transcript = new Transcript();
+        assertEquals(Files.size(file), MoveJournal.read(file, transcript));
+        assertEquals(6, transcript.lines.size());
+        assertEquals("game 1 radius 2", transcript.lines.get(0));
+        assertEquals("result 7 0", transcript.lines.get(5));
+    }
+
+    @Test
+    public void testReopeningCarriesScoresAndGameNumbersOn() throws IOException {
+        try (MoveJournal journal = MoveJournal.open(file)) {
+            playCapture(journal);
+            long game = journal.startGame(3);
+            journal.result(game, Colour.BLUE);
+        }
+        try (MoveJournal journal = MoveJournal.open(file)) {
+            assertEquals(1, journal.redWins);
+            assertEquals(1, journal.blueWins);
+            assertEquals(0, journal.draws);
+            assertEquals(Files.size(file), journal.recoveredBytes);
+            assertEquals(3, journal.startGame(2));
+        }
+    }
+
+    @Test
+    public void testRecoveryDropsATornTail() throws IOException {
+        try (MoveJournal journal = MoveJournal.open(file)) {
+            playCapture(journal);
+        }
+        long valid = Files.size(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[] {0, 0, 0, 20, 1, 2, 3})); // a record cut off mid-write
+        }
+
+        try (MoveJournal journal = MoveJournal.open(file)) {
+            assertEquals(valid, journal.recoveredBytes);
+            assertEquals(valid, Files.size(file));
+            journal.result(journal.startGame(2), Colour.BLUE);
+        }
+        Transcript transcript = new Transcript();
+        MoveJournal.read(file, transcript);
+        assertEquals(7, transcript.lines.size());
+        assertEquals("result 2 2", transcript.lines.get(6));
+    }
+
+    @Test
+    public void testRecoveryStopsAtACorruptRecord() throws IOException {
+        try (MoveJournal journal = MoveJournal.open(file)) {
+            playCapture(journal);
+        }
+        Transcript before = new Transcript();
+        MoveJournal.read(file, before);
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[8 + 10 + 8 + 9] ^= 1; // the first move's cell, past the GAME record and the move's headers
+        Files.write(file, bytes);
+
+        Transcript after = new Transcript();
+        long valid = MoveJournal.read(file, after);
+        assertEquals(1, after.lines.size());
+        assertEquals(before.lines.get(0), after.lines.get(0));
+        assertEquals(8 + 10, valid);
+    }
+
+    @Test
+    public void testConcurrentGamesShareFsyncs() throws Exception {
+        int threads = 8;
+        int moves = 300;
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        try (MoveJournal journal = MoveJournal.open(file)) {
+            List<Thread> writers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                writers.add(new Thread(() -> {
+                    long game = journal.startGame(1);
+                    MoveResult move = GameManager.evaluate(new GameState(1), 0, Colour.RED);
+                    List<CompletableFuture<Void>> mine = new ArrayList<>();
+                    for (int i = 0; i < moves; i++) mine.add(journal.move(game, move));
+                    mine.add(journal.result(game, Colour.RED));
+                    synchronized (futures) {
+                        futures.addAll(mine);
+                    }
+                }));
+            }
+            for (Thread writer : writers) writer.start();
+            for (Thread writer : writers) writer.join();
+            for (CompletableFuture<Void> future : futures) future.get();
+            assertEquals(threads * (moves + 2), journal.records());
+            assertTrue(journal.syncs() < journal.records());
+        }
+        Transcript transcript = new Transcript();
+        MoveJournal.read(file, transcript);
+        assertEquals(threads * (moves + 2), transcript.lines.size());
+    }
+
+    @Test
+    public void testAppendsAfterCloseFail() throws IOException {
+        MoveJournal journal = MoveJournal.open(file);
+        journal.close();
+        assertTrue(journal.result(1, Colour.RED).isCompletedExceptionally());
+    }
+}
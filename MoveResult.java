@@ -0,0 +1,71 @@
+/**
+ * The outcome of placing a stone on a cell, worked out by GameManager.evaluate without touching the game.
+ * Holds whether the move is legal, every stone it would capture grouped by opponent group, and whether the
+ * same player moves again. Instances never change, so they can be shared freely between threads.
+ */
+public final class MoveResult {
+    private static final int[] NONE = new int[0];
+
+    public final int cell;
+    public final int player;
+    public final boolean legal;
+    public final boolean movesAgain; // a capture lets the same player move again
+
+    final int[] capturedStones; // shared with GameManager.apply, never modified
+    final int[] groupStarts; // capturedStones[groupStarts[g] .. groupStarts[g + 1]) is captured group g
+
+    private MoveResult(int cell, int player, boolean legal, int[] capturedStones, int[] groupStarts) {
+        this.cell = cell;
+        this.player = player;
+        this.legal = legal;
+        this.capturedStones = capturedStones;
+        this.groupStarts = groupStarts;
+        this.movesAgain = capturedStones.length > 0;
+    }
+
+    static MoveResult illegal(int cell, int player) {
+        return new MoveResult(cell, player, false, NONE, NONE);
+    }
+
+    static MoveResult placement(int cell, int player) {
+        return new MoveResult(cell, player, true, NONE, NONE);
+    }
+
+    static MoveResult capture(int cell, int player, int[] capturedStones, int[] groupStarts) {
+        return new MoveResult(cell, player, true, capturedStones, groupStarts);
+    }
+
+    /**
+     * @return the number of opponent groups the move captures
+     */
+    public int capturedGroupCount() {
+        return groupStarts.length == 0 ? 0 : groupStarts.length - 1;
+    }
+
+    /**
+     * @return the cells of one captured group
+     */
+    public int[] capturedGroup(int group) {
+        return java.util.Arrays.copyOfRange(capturedStones, groupStarts[group], groupStarts[group + 1]);
+    }
+
+    /**
+     * @return the number of stones the move captures
+     */
+    public int capturedStoneCount() {
+        return capturedStones.length;
+    }
+
+    /**
+     * @return the cell of one captured stone, in group order
+     */
+    public int capturedStone(int index) {
+        return capturedStones[index];
+    }
+
+    @Override
+    public String toString() {
+        if (!legal) return "MoveResult{cell=" + cell + ", player=" + player + ", illegal}";
+        return "MoveResult{cell=" + cell + ", player=" + player + ", captured=" + capturedStones.length + "}";
+    }
+}
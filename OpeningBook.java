@@ -0,0 +1,165 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Read-only opening book: the move and score a deep search found for each position near the start of the game,
+ * keyed by the position's canonical key so that symmetric positions share one entry. The file is memory-mapped and
+ * its entries are sorted by key, so a lookup is a binary search over the mapped bytes with nothing read into objects
+ * first. Books are written by OpeningBookBuilder. Lookups only read the mapping, so one book can serve many threads.
+ *
+ * File layout: a 32-byte header (magic, version, radius, entry count) followed by 16-byte entries of
+ * canonical key (8 bytes), cell on the canonical board (2), search depth (2) and score (4), in ascending signed key
+ * order.
+ */
+public final class OpeningBook implements AutoCloseable {
+    static final int MAGIC = 0x48584F42; // "HXOB"
+    static final int VERSION = 2;
+    static final int HEADER_BYTES = 32;
+    static final int ENTRY_BYTES = 16;
+
+    public final int radius;
+    private final int size;
+    private final RandomAccessFile file;
+    private final MappedByteBuffer entries;
+
+    /**
+     * One book entry as held in memory while a book is being built.
+     */
+    static final class Entry {
+        final long key;
+        final int cell;
+        final int depth;
+        final int score;
+
+        Entry(long key, int cell, int depth, int score) {
+            this.key = key;
+            this.cell = cell;
+            this.depth = depth;
+            this.score = score;
+        }
+    }
+
+    private OpeningBook(Path path) throws IOException {
+        file = new RandomAccessFile(path.toFile(), "r");
+        FileChannel channel = file.getChannel();
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            file.close();
+            throw new IOException(path + " is not a HexOust opening book");
+        }
+        radius = header.getInt(8);
+        size = (int) header.getLong(16);
+        entries = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, (long) size * ENTRY_BYTES);
+    }
+
+    /**
+     * Maps a book file into memory.
+     *
+     * @param path the file written by OpeningBookBuilder
+     * @return the opened book
+     */
+    public static OpeningBook open(Path path) throws IOException {
+        return new OpeningBook(path);
+    }
+
+    /**
+     * @return the number of positions in the book
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Finds a position by binary search.
+     *
+     * @param key the position's canonical key
+     * @return the index of its entry, or -1 if the book does not have it
+     */
+    public int find(long key) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long found = key(middle);
+            if (found < key) {
+                low = middle + 1;
+            } else if (found > key) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Looks up the book move for a game.
+     *
+     * @param state the game, with the player to move about to move
+     * @return the book move, or null if the position is not in the book or its move is not legal there
+     */
+    public MoveResult probe(GameState state) {
+        if (state.topology.radius != radius) return null;
+        int transform = state.canonicalTransform();
+        int index = find(state.symmetricKey(transform));
+        if (index == -1) return null;
+        int cell = state.topology.symmetry.unmap(transform, cell(index));
+        MoveResult move = GameManager.evaluate(state, cell, state.playerTurn);
+        return move.legal ? move : null; // a key collision with a position the book never saw
+    }
+
+    long key(int index) {
+        return entries.getLong(index * ENTRY_BYTES);
+    }
+
+    int cell(int index) {
+        return entries.getShort(index * ENTRY_BYTES + 8);
+    }
+
+    int depth(int index) {
+        return entries.getShort(index * ENTRY_BYTES + 10);
+    }
+
+    int score(int index) {
+        return entries.getInt(index * ENTRY_BYTES + 12);
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    /**
+     * Writes entries as a book file.
+     *
+     * @param path the file to write
+     * @param radius the board the entries belong to
+     * @param sorted the entries in ascending key order, each key once
+     */
+    static void write(Path path, int radius, List<Entry> sorted) throws IOException {
+        long bytes = (long) sorted.size() * ENTRY_BYTES;
+        if (bytes > Integer.MAX_VALUE) throw new IOException("too many entries for one book: " + sorted.size());
+        try (RandomAccessFile out = new RandomAccessFile(path.toFile(), "rw");
+             FileChannel channel = out.getChannel()) {
+            out.setLength(HEADER_BYTES + bytes);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + bytes);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(8, radius);
+            buffer.putLong(16, sorted.size());
+            for (int i = 0; i < sorted.size(); i++) {
+                Entry entry = sorted.get(i);
+                int at = HEADER_BYTES + i * ENTRY_BYTES;
+                buffer.putLong(at, entry.key);
+                buffer.putShort(at + 8, (short) entry.cell);
+                buffer.putShort(at + 10, (short) entry.depth);
+                buffer.putInt(at + 12, entry.score);
+            }
+            buffer.force();
+        }
+    }
+}
@@ -0,0 +1,201 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Builds opening books offline. It lists every position up to a number of plies from the empty board, searches
+ * each one deeply on a pool of threads, each thread with its own Search, and writes the results sorted by key.
+ * Building is incremental: positions an existing book already has at the requested depth or deeper are not
+ * searched again, and the new results are merged into the existing entries in one pass over both sorted lists.
+ * The merged book is written to a temporary file and moved into place, so a reader never sees half a book.
+ *
+ * Usage: java OpeningBookBuilder --out=FILE [--radius=R] [--plies=N] [--depth=D] [--millis=MS] [--threads=N]
+ * An existing FILE is extended rather than replaced.
+ */
+public class OpeningBookBuilder {
+    public final int radius;
+    public final int plies;
+    public final int depth;
+    public final long millis;
+    public final int threads;
+
+    public OpeningBookBuilder(int radius, int plies, int depth, long millis, int threads) {
+        this.radius = radius;
+        this.plies = plies;
+        this.depth = depth;
+        this.millis = millis;
+        this.threads = threads;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int radius = GameState.DEFAULT_RADIUS;
+        int plies = 2;
+        int depth = 6;
+        long millis = 10_000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String out = null;
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            if (option.length != 2) throw new IllegalArgumentException("expected --name=value: " + arg);
+            switch (option[0]) {
+                case "--radius": radius = Integer.parseInt(option[1]); break;
+                case "--plies": plies = Integer.parseInt(option[1]); break;
+                case "--depth": depth = Integer.parseInt(option[1]); break;
+                case "--millis": millis = Long.parseLong(option[1]); break;
+                case "--threads": threads = Integer.parseInt(option[1]); break;
+                case "--out": out = option[1]; break;
+                default: throw new IllegalArgumentException("unknown option " + option[0]);
+            }
+        }
+        if (out == null) throw new IllegalArgumentException("--out=FILE is required");
+
+        OpeningBookBuilder builder = new OpeningBookBuilder(radius, plies, depth, millis, threads);
+        long start = System.nanoTime();
+        int searched = builder.extend(Paths.get(out));
+        try (OpeningBook book = OpeningBook.open(Paths.get(out))) {
+            System.out.printf("searched %d positions in %.1f s, book has %d%n",
+                    searched, (System.nanoTime() - start) / 1e9, book.size());
+        }
+    }
+
+    /**
+     * Adds every missing or shallower position to a book, creating the book if the file does not exist.
+     *
+     * @param path the book file
+     * @return the number of positions searched
+     */
+    public int extend(Path path) throws IOException, InterruptedException {
+        List<OpeningBook.Entry> existing = new ArrayList<>();
+        if (Files.exists(path)) {
+            try (OpeningBook book = OpeningBook.open(path)) {
+                if (book.radius != radius) {
+                    throw new IllegalArgumentException(path + " is a book for radius " + book.radius);
+                }
+                for (int i = 0; i < book.size(); i++) {
+                    existing.add(new OpeningBook.Entry(book.key(i), book.cell(i), book.depth(i), book.score(i)));
+                }
+            }
+        }
+
+        List<GameState> wanted = new ArrayList<>();
+        for (GameState position : positions()) {
+            OpeningBook.Entry known = find(existing, position.canonicalKey());
+            if (known == null || known.depth < depth) wanted.add(position);
+        }
+        List<OpeningBook.Entry> searched = search(wanted);
+        searched.sort((a, b) -> Long.compare(a.key, b.key));
+
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        OpeningBook.write(temporary, radius, merge(existing, searched));
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return searched.size();
+    }
+
+    /**
+     * Lists the positions reachable in at most plies moves in which the player to move has a move, one for each set
+     * of positions equal up to a board symmetry.
+     */
+    List<GameState> positions() {
+        List<GameState> found = new ArrayList<>();
+        HashSet<Long> seen = new HashSet<>();
+        List<GameState> level = new ArrayList<>();
+        level.add(new GameState(radius));
+        seen.add(level.get(0).canonicalKey());
+        for (int ply = 0; ply <= plies && !level.isEmpty(); ply++) {
+            List<GameState> next = new ArrayList<>();
+            for (GameState state : level) {
+                if (GameManager.winner(state) != -1) continue;
+                Bitboard legal = GameManager.legalMoves(state, state.playerTurn);
+                if (legal.isEmpty()) continue;
+                found.add(state);
+                if (ply == plies) continue;
+                for (int cell = legal.nextSetBit(0); cell != -1; cell = legal.nextSetBit(cell + 1)) {
+                    GameState child = new GameState(radius);
+                    child.copyFrom(state);
+                    GameManager.apply(child, GameManager.cachedEvaluate(child, cell, state.playerTurn));
+                    if (seen.add(child.canonicalKey())) next.add(child);
+                }
+            }
+            level = next;
+        }
+        return found;
+    }
+
+    private List<OpeningBook.Entry> search(List<GameState> positions) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        ThreadLocal<Search> searches = ThreadLocal.withInitial(Search::new);
+        List<Future<OpeningBook.Entry>> futures = new ArrayList<>();
+        for (GameState position : positions) {
+            futures.add(pool.submit(() -> {
+                Search search = searches.get();
+                MoveResult move = search.search(position, millis, depth);
+                int reached = search.completedDepth();
+                if (Math.abs(search.score()) >= Search.WIN - 2 * Search.MAX_DEPTH && reached > 0) {
+                    reached = Search.MAX_DEPTH; // forced result, deeper search will not change it
+                }
+                int transform = position.canonicalTransform();
+                int cell = position.topology.symmetry.map(transform, move.cell);
+                return new OpeningBook.Entry(position.symmetricKey(transform), cell, reached, search.score());
+            }));
+        }
+        List<OpeningBook.Entry> entries = new ArrayList<>();
+        try {
+            for (Future<OpeningBook.Entry> future : futures) entries.add(future.get());
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("book search failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return entries;
+    }
+
+    /**
+     * Merges two lists sorted by key; where both have a key, the deeper entry wins and the newer one on equal depth.
+     * A search that runs out of time records only the depth it completed, which can be shallower than the entry it
+     * was meant to improve on, so a newer entry is not always a better one.
+     */
+    static List<OpeningBook.Entry> merge(List<OpeningBook.Entry> older, List<OpeningBook.Entry> newer) {
+        List<OpeningBook.Entry> merged = new ArrayList<>(older.size() + newer.size());
+        int i = 0;
+        int j = 0;
+        while (i < older.size() || j < newer.size()) {
+            if (j == newer.size() || (i < older.size() && older.get(i).key < newer.get(j).key)) {
+                merged.add(older.get(i++));
+            } else {
+                OpeningBook.Entry entry = newer.get(j++);
+                if (i < older.size() && older.get(i).key == entry.key) {
+                    OpeningBook.Entry old = older.get(i++);
+                    if (old.depth > entry.depth) entry = old;
+                }
+                merged.add(entry);
+            }
+        }
+        return merged;
+    }
+
+    private static OpeningBook.Entry find(List<OpeningBook.Entry> sorted, long key) {
+        int low = 0;
+        int high = sorted.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long found = sorted.get(middle).key;
+            if (found < key) {
+                low = middle + 1;
+            } else if (found > key) {
+                high = middle - 1;
+            } else {
+                return sorted.get(middle);
+            }
+        }
+        return null;
+    }
+}
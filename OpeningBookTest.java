@@ -0,0 +1,135 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OpeningBookTest {
+    private Path directory;
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("hexoust-book");
+        file = directory.resolve("openings.book");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(directory);
+    }
+
+    @Test
+    public void testBuildsSortedBookOfEveryPosition() throws Exception {
+        OpeningBookBuilder builder = new OpeningBookBuilder(2, 1, 2, 1000, 2);
+        int searched = builder.extend(file);
+
+        List<GameState> positions = builder.positions();
+        assertEquals(1 + 4, positions.size()); // centre, inner ring, outer corners and outer edges
+        assertEquals(positions.size(), searched);
+        try (OpeningBook book = OpeningBook.open(file)) {
+            assertEquals(searched, book.size());
+            for (int i = 1; i < book.size(); i++) {
+                assertTrue(book.key(i - 1) < book.key(i));
+            }
+            for (GameState position : positions) {
+                MoveResult move = book.probe(position);
+                assertNotNull(move);
+                assertTrue(move.legal);
+                assertEquals(position.playerTurn, move.player);
+                assertTrue(book.depth(book.find(position.canonicalKey())) >= 2);
+            }
+        }
+    }
+
+    @Test
+    public void testMissingPositionsAreNotFound() throws Exception {
+        new OpeningBookBuilder(2, 0, 1, 1000, 1).extend(file);
+        try (OpeningBook book = OpeningBook.open(file)) {
+            GameState state = new GameState(2);
+            GameManager.apply(state, GameManager.evaluate(state, 0, Colour.RED));
+            assertEquals(-1, book.find(state.key()));
+            assertNull(book.probe(state));
+            assertNull(book.probe(new GameState(3)));
+            assertNotNull(book.probe(new GameState(2)));
+        }
+    }
+
+    @Test
+    public void testExtendSearchesOnlyNewOrShallowerPositions() throws Exception {
+        assertEquals(5, new OpeningBookBuilder(2, 1, 1, 1000, 1).extend(file));
+        assertEquals(0, new OpeningBookBuilder(2, 1, 1, 1000, 1).extend(file));
+
+        OpeningBookBuilder deeper = new OpeningBookBuilder(2, 2, 1, 1000, 2);
+        int total = deeper.positions().size();
+        assertEquals(total - 5, deeper.extend(file));
+        try (OpeningBook book = OpeningBook.open(file)) {
+            assertEquals(total, book.size());
+        }
+
+        assertEquals(5, new OpeningBookBuilder(2, 1, 2, 1000, 1).extend(file));
+        try (OpeningBook book = OpeningBook.open(file)) {
+            assertEquals(total, book.size());
+            assertTrue(book.depth(book.find(new GameState(2).canonicalKey())) >= 2);
+        }
+    }
+
+    @Test
+    public void testSymmetricPositionsShareAnEntry() throws Exception {
+        new OpeningBookBuilder(2, 1, 2, 1000, 1).extend(file);
+        try (OpeningBook book = OpeningBook.open(file)) {
+            Symmetry symmetry = BoardTopology.forRadius(2).symmetry;
+            GameState state = new GameState(2);
+            int first = state.topology.index(1, 0);
+            GameManager.apply(state, GameManager.evaluate(state, first, Colour.RED));
+            MoveResult reply = book.probe(state);
+            assertNotNull(reply);
+
+            for (int t = 0; t < Symmetry.COUNT; t++) {
+                GameState image = new GameState(2);
+                GameManager.apply(image, GameManager.evaluate(image, symmetry.map(t, first), Colour.RED));
+                MoveResult move = book.probe(image);
+                assertNotNull(move);
+                assertEquals(state.canonicalKey(), image.canonicalKey());
+                assertTrue(GameManager.evaluate(image, move.cell, Colour.BLUE).legal);
+            }
+        }
+    }
+
+    @Test
+    public void testMergeKeepsNewerEntries() {
+        List<OpeningBook.Entry> older = Arrays.asList(
+                new OpeningBook.Entry(-5, 1, 1, 0), new OpeningBook.Entry(3, 2, 1, 0), new OpeningBook.Entry(9, 3, 1, 0));
+        List<OpeningBook.Entry> newer = Arrays.asList(
+                new OpeningBook.Entry(3, 7, 4, 10), new OpeningBook.Entry(12, 8, 4, 0));
+
+        List<OpeningBook.Entry> merged = OpeningBookBuilder.merge(older, newer);
+
+        assertEquals(4, merged.size());
+        assertEquals(-5, merged.get(0).key);
+        assertEquals(7, merged.get(1).cell);
+        assertEquals(9, merged.get(2).key);
+        assertEquals(12, merged.get(3).key);
+    }
+
+    @Test
+    public void testMergeKeepsTheDeeperEntry() {
+        List<OpeningBook.Entry> older = Arrays.asList(
+                new OpeningBook.Entry(1, 3, 8, 40), new OpeningBook.Entry(2, 4, 5, 0));
+        List<OpeningBook.Entry> newer = Arrays.asList(
+                new OpeningBook.Entry(1, 6, 6, 10), new OpeningBook.Entry(2, 9, 5, 7));
+        List<OpeningBook.Entry> merged = OpeningBookBuilder.merge(older, newer);
+
+        assertEquals(2, merged.size());
+        assertEquals(3, merged.get(0).cell); // the older search went deeper than the one that ran out of time
+        assertEquals(8, merged.get(0).depth);
+        assertEquals(9, merged.get(1).cell); // equal depth, so the newer search wins
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * Packs a position into 2 bits per cell plus the side to move, for storing positions by the billion.
+ * Cell c is bits 2c and 2c + 1 of the packed longs, counting from the low bit of the first, holding its Colour:
+ * WHITE (0) for empty, RED (1) or BLUE (2). The slot after the last cell holds the player to move the same way.
+ * The 127 cells of the default board and the side to move fill exactly four longs. Positions are packed as they
+ * stand. Tablebase packs differently: it keeps blue to move as a single bit and packs the smallest of the twelve
+ * symmetric images, so symmetric positions share one entry.
+ *
+ * Encoding spreads each half of a bitboard word over a whole long, red on the even bits and blue on the odd ones,
+ * so a position takes a few shifts and masks per long rather than a pass over its cells.
+ */
+final class PositionCodec {
+    private static final long EVEN_BITS = 0x5555555555555555L;
+
+    private PositionCodec() {
+    }
+
+    /**
+     * @param cellCount the number of cells on the board
+     * @return the number of longs a packed position of that board takes
+     */
+    static int longs(int cellCount) {
+        return (2 * cellCount + 2 + 63) >>> 6;
+    }
+
+    /**
+     * Packs a position.
+     *
+     * @param state the position, unchanged
+     * @param into receives longs(cellCount) longs
+     * @param offset where in into they start
+     */
+    static void encode(GameState state, long[] into, int offset) {
+        long[] red = state.redStones.words;
+        long[] blue = state.blueStones.words;
+        int cells = state.topology.cellCount;
+        int longs = longs(cells);
+        for (int i = 0; i < longs; i++) {
+            int word = i >>> 1;
+            int shift = (i & 1) << 5;
+            int redHalf = word < red.length ? (int) (red[word] >>> shift) : 0;
+            int blueHalf = word < blue.length ? (int) (blue[word] >>> shift) : 0;
+            into[offset + i] = spread(redHalf) | spread(blueHalf) << 1;
+        }
+        into[offset + (cells >>> 5)] |= (long) state.playerTurn << (2 * (cells & 31));
+    }
+
+    /**
+     * Sets a game to a packed position, with its move count worked out by GameState.inferOpening. The win counters
+     * are kept.
+     *
+     * @param from the packed position
+     * @param offset where in from it starts
+     * @param state a game on the board the position was packed from, overwritten
+     */
+    static void decode(long[] from, int offset, GameState state) {
+        int cells = state.topology.cellCount;
+        int sideWord = cells >>> 5;
+        int sideShift = 2 * (cells & 31);
+        state.reset();
+        for (int i = 0; i < longs(cells); i++) {
+            long packed = from[offset + i];
+            if (i == sideWord) packed &= ~(3L << sideShift);
+            for (long bits = compact(packed & EVEN_BITS); bits != 0; bits &= bits - 1) {
+                state.setStone((i << 5) + Long.numberOfTrailingZeros(bits), Colour.RED);
+            }
+            for (long bits = compact(packed >>> 1 & EVEN_BITS); bits != 0; bits &= bits - 1) {
+                state.setStone((i << 5) + Long.numberOfTrailingZeros(bits), Colour.BLUE);
+            }
+        }
+        state.groups.rebuild(state.redStones, state.blueStones);
+        state.playerTurn = sideToMove(from, offset, cells);
+        state.inferOpening();
+    }
+
+    /**
+     * @return the colour of a cell of a packed position, without unpacking the rest
+     */
+    static int colourAt(long[] from, int offset, int cell) {
+        return (int) (from[offset + (cell >>> 5)] >>> (2 * (cell & 31))) & 3;
+    }
+
+    /**
+     * @return the player to move in a packed position of a board with the given number of cells
+     */
+    static int sideToMove(long[] from, int offset, int cellCount) {
+        return colourAt(from, offset, cellCount);
+    }
+
+    // Moves bit i of a 32-bit value to bit 2i
+    private static long spread(int half) {
+        long x = half & 0xFFFFFFFFL;
+        x = (x | x << 16) & 0x0000FFFF0000FFFFL;
+        x = (x | x << 8) & 0x00FF00FF00FF00FFL;
+        x = (x | x << 4) & 0x0F0F0F0F0F0F0F0FL;
+        x = (x | x << 2) & 0x3333333333333333L;
+        return (x | x << 1) & EVEN_BITS;
+    }
+
+    // Moves bit 2i to bit i, the inverse of spread for values with only even bits set
+    private static long compact(long x) {
+        x = (x | x >>> 1) & 0x3333333333333333L;
+        x = (x | x >>> 2) & 0x0F0F0F0F0F0F0F0FL;
+        x = (x | x >>> 4) & 0x00FF00FF00FF00FFL;
+        x = (x | x >>> 8) & 0x0000FFFF0000FFFFL;
+        return (x | x >>> 16) & 0x00000000FFFFFFFFL;
+    }
+}
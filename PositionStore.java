@@ -0,0 +1,236 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Memory-mapped file of positions packed by PositionCodec, each with the outcome of the game it came from, for
+ * training and analysis datasets too big for the heap. Positions are only appended, and read back by index or scanned
+ * in order straight from the mapping into a caller's buffer, so a scan allocates nothing per position and runs at the
+ * speed the page cache and disk deliver. A radius-6 position takes 33 bytes, so a billion of them fit in 33 GB.
+ *
+ * A mapping holds at most 2 GB, so the records are mapped in segments of whole records, about 1 GB each. A store
+ * being written grows a segment at a time, and its record count is only written to the header by flush and close,
+ * so a crashed writer loses the records since its last flush but never leaves a count past the records written.
+ * Closing cuts the file back to its records. Reading by index only reads the mappings, so any number of threads can
+ * read or scan parts of one store at once while nothing appends to it.
+ *
+ * File layout, big-endian: a 32-byte header (magic, version, radius, record count as 8 bytes) followed by records of
+ * the packed position's longs and the outcome byte: Colour.RED or Colour.BLUE for the winner, Colour.WHITE for a draw.
+ */
+public final class PositionStore implements AutoCloseable {
+    static final int MAGIC = 0x48585053; // "HXPS"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 32;
+    private static final long SEGMENT_BYTES = 1L << 30;
+
+    /**
+     * Receives the positions of a scan in order.
+     */
+    public interface Visitor {
+        /**
+         * @param index the position's index in the store
+         * @param position the packed position, only valid until this returns
+         * @param outcome the winner of its game, Colour.WHITE for a draw
+         */
+        void position(long index, long[] position, int outcome);
+    }
+
+    public final int radius;
+    private final int cellCount;
+    private final int longs;
+    private final int recordBytes;
+    private final int segmentRecords;
+    private final boolean writable;
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private final long[] packed; // the appender's scratch position
+    private long size;
+
+    private PositionStore(Path path, int radius, boolean writable, int segmentRecords) throws IOException {
+        this.writable = writable;
+        file = new RandomAccessFile(path.toFile(), writable ? "rw" : "r");
+        channel = file.getChannel();
+        try {
+            if (writable && channel.size() == 0) {
+                MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+                header.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, radius).putLong(16, 0);
+                header.force();
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(HEADER_BYTES,
+                    channel.size()));
+            if (header.limit() < HEADER_BYTES || header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                throw new IOException(path + " is not a HexOust position store");
+            }
+            if (radius >= 0 && header.getInt(8) != radius) {
+                throw new IOException(path + " holds positions of radius " + header.getInt(8) + ", not " + radius);
+            }
+            this.radius = header.getInt(8);
+            this.cellCount = BoardTopology.forRadius(this.radius).cellCount;
+            this.longs = PositionCodec.longs(cellCount);
+            this.recordBytes = 8 * longs + 1;
+            this.segmentRecords = segmentRecords > 0 ? segmentRecords : (int) (SEGMENT_BYTES / recordBytes);
+            this.packed = new long[longs];
+            this.size = header.getLong(16);
+            if (HEADER_BYTES + size * recordBytes > channel.size()) {
+                throw new IOException(path + " is shorter than its " + size + " positions");
+            }
+            for (long mapped = 0; mapped < size; mapped += this.segmentRecords) map(segments.size());
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a store for reading and scanning.
+     *
+     * @param path a file written by a store opened with create
+     * @return the opened store
+     */
+    public static PositionStore open(Path path) throws IOException {
+        return new PositionStore(path, -1, false, 0);
+    }
+
+    /**
+     * Opens a store for appending, creating it if needed. Appends go after the positions already in it.
+     *
+     * @param path the store file
+     * @param radius the board radius of every position in it
+     * @return the opened store
+     */
+    public static PositionStore create(Path path, int radius) throws IOException {
+        return create(path, radius, 0);
+    }
+
+    // A store in segments of the given number of records, so tests can cross segments without gigabytes
+    static PositionStore create(Path path, int radius, int segmentRecords) throws IOException {
+        return new PositionStore(path, radius, true, segmentRecords);
+    }
+
+    /**
+     * @return whether a file starts like a position store
+     */
+    public static boolean recognises(Path path) throws IOException {
+        if (!Files.isRegularFile(path) || Files.size(path) < HEADER_BYTES) return false;
+        try (RandomAccessFile in = new RandomAccessFile(path.toFile(), "r")) {
+            return in.readInt() == MAGIC;
+        }
+    }
+
+    // Maps one segment, writable ones whole so appends can fill it, read-only ones up to the end of the file
+    private MappedByteBuffer map(int segment) throws IOException {
+        long start = HEADER_BYTES + (long) segment * segmentRecords * recordBytes;
+        long length = (long) segmentRecords * recordBytes;
+        MappedByteBuffer mapping = writable
+                ? channel.map(FileChannel.MapMode.READ_WRITE, start, length)
+                : channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(length, channel.size() - start));
+        segments.add(mapping);
+        return mapping;
+    }
+
+    /**
+     * @return the number of positions in the store
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return the number of longs in each packed position
+     */
+    public int longs() {
+        return longs;
+    }
+
+    /**
+     * Appends a position with the outcome of its game.
+     *
+     * @param state the position, unchanged
+     * @param outcome the winner of its game, Colour.WHITE for a draw
+     */
+    public void append(GameState state, int outcome) throws IOException {
+        if (state.topology.radius != radius) throw new IllegalArgumentException("wrong board radius");
+        PositionCodec.encode(state, packed, 0);
+        append(packed, 0, outcome);
+    }
+
+    /**
+     * Appends a packed position with the outcome of its game.
+     *
+     * @param position the packed position, longs() longs from offset
+     * @param offset where in position it starts
+     * @param outcome the winner of its game, Colour.WHITE for a draw
+     */
+    public void append(long[] position, int offset, int outcome) throws IOException {
+        if (!writable) throw new IllegalStateException("position store opened for reading");
+        int segment = (int) (size / segmentRecords);
+        MappedByteBuffer mapping = segment < segments.size() ? segments.get(segment) : map(segment);
+        int at = (int) (size % segmentRecords) * recordBytes;
+        for (int i = 0; i < longs; i++, at += 8) mapping.putLong(at, position[offset + i]);
+        mapping.put(at, (byte) outcome);
+        size++;
+    }
+
+    /**
+     * Reads one position.
+     *
+     * @param index the position's index, below size()
+     * @param into receives the packed position, longs() longs from offset
+     * @param offset where in into it goes
+     * @return the outcome of its game
+     */
+    public int read(long index, long[] into, int offset) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("no position " + index + " in " + size);
+        MappedByteBuffer mapping = segments.get((int) (index / segmentRecords));
+        int at = (int) (index % segmentRecords) * recordBytes;
+        for (int i = 0; i < longs; i++, at += 8) into[offset + i] = mapping.getLong(at);
+        return mapping.get(at);
+    }
+
+    /**
+     * Scans a range of positions in order. Ranges of one store can be scanned on different threads at once.
+     *
+     * @param from the index of the first position
+     * @param to the index after the last position
+     * @param visitor receives every position in the range
+     */
+    public void scan(long from, long to, Visitor visitor) {
+        if (from < 0 || to > size || from > to) throw new IndexOutOfBoundsException(from + ".." + to + " of " + size);
+        long[] position = new long[longs];
+        for (long index = from; index < to; index++) {
+            visitor.position(index, position, read(index, position, 0));
+        }
+    }
+
+    /**
+     * Writes every appended position to disk, then the record count that makes them part of the store.
+     */
+    public void flush() throws IOException {
+        if (!writable) return;
+        for (MappedByteBuffer mapping : segments) mapping.force();
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        header.putLong(16, size);
+        header.force();
+    }
+
+    /**
+     * Flushes a store opened for appending and cuts its file back to its positions.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (writable) {
+                flush();
+                channel.truncate(HEADER_BYTES + size * recordBytes);
+            }
+        } finally {
+            file.close();
+        }
+    }
+}
@@ -0,0 +1,165 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PositionStoreTest {
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = Files.createTempFile("hexoust", ".positions");
+        Files.delete(file); // stores are created by create
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    private static void assertSamePosition(GameState expected, GameState actual) {
+        assertEquals(expected.key(), actual.key());
+        assertEquals(expected.playerTurn, actual.playerTurn);
+        for (int cell = 0; cell < expected.topology.cellCount; cell++) {
+            assertEquals(expected.colourAt(cell), actual.colourAt(cell));
+        }
+    }
+
+    @Test
+    public void testDefaultBoardPacksIntoFourLongs() {
+        assertEquals(127, new GameState().topology.cellCount);
+        assertEquals(4, PositionCodec.longs(127));
+        assertEquals(1, PositionCodec.longs(19));
+        assertEquals(3, PositionCodec.longs(64));
+    }
+
+    @Test
+    public void testCodecRoundTripsOnEveryBoard() {
+        for (int radius = 1; radius <= 7; radius++) {
+            GameState decoded = new GameState(radius);
+            long[] packed = new long[PositionCodec.longs(decoded.topology.cellCount) + 2];
+            for (GameState position : RandomGames.positions(radius, 3, radius)) {
+                PositionCodec.encode(position, packed, 1);
+                PositionCodec.decode(packed, 1, decoded);
+                assertSamePosition(position, decoded);
+                assertEquals(position.playerTurn, PositionCodec.sideToMove(packed, 1, position.topology.cellCount));
+                assertEquals(position.isStartOfGame, decoded.isStartOfGame);
+                assertArrayEquals(GameManager.legalMoves(position, position.playerTurn).words,
+                        GameManager.legalMoves(decoded, decoded.playerTurn).words);
+            }
+        }
+    }
+
+    @Test
+    public void testCodecKeepsTheSideToMoveAfterAPass() {
+        SplittableRandom random = new SplittableRandom(7);
+        GameState decoded = new GameState(7);
+        long[] packed = new long[PositionCodec.longs(decoded.topology.cellCount)];
+        int passes = 0;
+        for (int g = 0; g < 100; g++) {
+            GameState state = new GameState(7);
+            while (state.move < 4 * state.topology.cellCount) {
+                int player = state.playerTurn;
+                if (!RandomGames.passIfStuck(state)) break;
+                if (state.playerTurn != player) {
+                    passes++;
+                    PositionCodec.encode(state, packed, 0);
+                    PositionCodec.decode(packed, 0, decoded);
+                    assertSamePosition(state, decoded);
+                    assertArrayEquals(GameManager.legalMoves(state, state.playerTurn).words,
+                            GameManager.legalMoves(decoded, decoded.playerTurn).words);
+                }
+                RandomGames.play(state, random);
+            }
+        }
+        assertTrue(passes > 0);
+    }
+
+    @Test
+    public void testAppendsAcrossSegmentsAndScansInOrder() throws IOException {
+        List<GameState> positions = RandomGames.positions(6, 4, 11);
+        try (PositionStore store = PositionStore.create(file, 6, 7)) {
+            for (int i = 0; i < positions.size(); i++) store.append(positions.get(i), i % 3);
+            assertEquals(positions.size(), store.size());
+        }
+        assertEquals(PositionStore.HEADER_BYTES + 33L * positions.size(), Files.size(file));
+
+        try (PositionStore store = PositionStore.open(file)) {
+            assertEquals(6, store.radius);
+            assertEquals(positions.size(), store.size());
+            GameState state = new GameState(6);
+            int[] seen = new int[1];
+            store.scan(0, store.size(), (index, position, outcome) -> {
+                assertEquals(seen[0]++, index);
+                assertEquals(index % 3, outcome);
+                PositionCodec.decode(position, 0, state);
+                assertSamePosition(positions.get((int) index), state);
+            });
+            assertEquals(positions.size(), seen[0]);
+
+            long[] position = new long[store.longs()];
+            int last = positions.size() - 1;
+            assertEquals(last % 3, store.read(last, position, 0));
+            PositionCodec.decode(position, 0, state);
+            assertSamePosition(positions.get(last), state);
+            assertThrows(IndexOutOfBoundsException.class, () -> store.read(positions.size(), position, 0));
+            assertThrows(IllegalStateException.class, () -> store.append(state, Colour.RED));
+        }
+    }
+
+    @Test
+    public void testReopenedStoreAppendsAfterItsPositions() throws IOException {
+        List<GameState> positions = RandomGames.positions(3, 2, 5);
+        try (PositionStore store = PositionStore.create(file, 3, 4)) {
+            for (GameState position : positions) store.append(position, Colour.RED);
+        }
+        try (PositionStore store = PositionStore.create(file, 3, 4)) {
+            assertEquals(positions.size(), store.size());
+            for (GameState position : positions) store.append(position, Colour.BLUE);
+        }
+        assertThrows(IOException.class, () -> PositionStore.create(file, 4));
+
+        try (PositionStore store = PositionStore.open(file)) {
+            assertEquals(2 * positions.size(), store.size());
+            long[] position = new long[store.longs()];
+            GameState state = new GameState(3);
+            for (int i = 0; i < store.size(); i++) {
+                int outcome = store.read(i, position, 0);
+                assertEquals(i < positions.size() ? Colour.RED : Colour.BLUE, outcome);
+                PositionCodec.decode(position, 0, state);
+                assertSamePosition(positions.get(i % positions.size()), state);
+            }
+        }
+    }
+
+    @Test
+    public void testUnflushedAppendsAreNotCounted() throws IOException {
+        GameState state = new GameState(2);
+        PositionStore writer = PositionStore.create(file, 2);
+        writer.append(state, Colour.WHITE);
+        writer.flush();
+        writer.append(state, Colour.WHITE);
+        try (PositionStore reader = PositionStore.open(file)) {
+            assertEquals(1, reader.size());
+        }
+        writer.close();
+        try (PositionStore reader = PositionStore.open(file)) {
+            assertEquals(2, reader.size());
+        }
+    }
+
+    @Test
+    public void testRejectsOtherFiles() throws IOException {
+        Files.write(file, "rrb.b.. r 1\n".getBytes());
+        assertFalse(PositionStore.recognises(file));
+        assertThrows(IOException.class, () -> PositionStore.open(file));
+        assertThrows(IOException.class, () -> PositionStore.create(file, 2));
+    }
+}
@@ -0,0 +1,111 @@
+import java.nio.ByteBuffer;
+
+/**
+ * The binary messages spoken between HexOustServer and its clients over TCP.
+ * Every message is a frame: a big-endian unsigned 16-bit length of the rest of the frame, a type byte, then the
+ * payload. Cells are BoardTopology indexes sent as unsigned 16-bit numbers and colours are Colour values in a byte.
+ *
+ * A connection plays at most one match: it joins, plays until END, then closes. Any connection may also watch
+ * any number of matches, so frames about a match carry its id.
+ *
+ * Client to server:
+ * JOIN radius(u8) waits for an opponent on a board of that radius; the first of the pair plays red.
+ * MOVE cell(u16) places a stone for the sender.
+ * RESIGN ends the sender's match as a loss.
+ * WATCH match(i32) subscribes the sender to a match: it gets a SYNC, then the MOVED and END frames the players get.
+ *
+ * Server to client:
+ * START match(i32) radius(u8) colour(u8) tells a player its match and colour.
+ * MOVED match(i32) cell(u16) player(u8) next(u8) captured(u16) cell(u16)* reports a move to the players and
+ * watchers, with the player to move next after any passes (WHITE once the game is over) and every captured cell.
+ * ILLEGAL cell(u16) rejects the sender's move; nothing changed.
+ * END match(i32) winner(u8) closes the match, WHITE meaning a draw.
+ * SYNC match(i32) radius(u8) next(u8) red(u16) cell(u16)* blue(u16) cell(u16)* gives a watcher the whole board,
+ * when it starts watching or after it fell too far behind and missed moves; MOVED frames follow on from it.
+ * UNKNOWN match(i32) answers a WATCH for a match that is not being played.
+ */
+final class Protocol {
+    static final byte JOIN = 1;
+    static final byte MOVE = 2;
+    static final byte RESIGN = 3;
+    static final byte WATCH = 4;
+
+    static final byte START = 16;
+    static final byte MOVED = 17;
+    static final byte ILLEGAL = 18;
+    static final byte END = 19;
+    static final byte SYNC = 20;
+    static final byte UNKNOWN = 21;
+
+    static final int LENGTH_BYTES = 2;
+    static final int MAX_CLIENT_FRAME = 16; // longest client frame after the length, anything bigger is an error
+
+    private Protocol() {
+    }
+
+    static ByteBuffer join(int radius) {
+        return frame(2).put(JOIN).put((byte) radius).flip();
+    }
+
+    static ByteBuffer move(int cell) {
+        return frame(3).put(MOVE).putShort((short) cell).flip();
+    }
+
+    static ByteBuffer resign() {
+        return frame(1).put(RESIGN).flip();
+    }
+
+    static ByteBuffer watch(int match) {
+        return frame(5).put(WATCH).putInt(match).flip();
+    }
+
+    static ByteBuffer start(int match, int radius, int colour) {
+        return frame(7).put(START).putInt(match).put((byte) radius).put((byte) colour).flip();
+    }
+
+    /**
+     * @param next the player to move after the move, or Colour.WHITE when it ended the game
+     */
+    static ByteBuffer moved(int match, MoveResult result, int next) {
+        int captured = result.capturedStoneCount();
+        ByteBuffer frame = frame(11 + 2 * captured).put(MOVED).putInt(match).putShort((short) result.cell)
+                .put((byte) result.player).put((byte) next).putShort((short) captured);
+        for (int i = 0; i < captured; i++) frame.putShort((short) result.capturedStone(i));
+        return frame.flip();
+    }
+
+    static ByteBuffer illegal(int cell) {
+        return frame(3).put(ILLEGAL).putShort((short) cell).flip();
+    }
+
+    static ByteBuffer end(int match, int winner) {
+        return frame(6).put(END).putInt(match).put((byte) winner).flip();
+    }
+
+    /**
+     * @param next the player to move, or Colour.WHITE when the game is over
+     */
+    static ByteBuffer sync(int match, GameState state, int next) {
+        int red = state.stoneCount(Colour.RED);
+        int blue = state.stoneCount(Colour.BLUE);
+        ByteBuffer frame = frame(11 + 2 * (red + blue)).put(SYNC).putInt(match).put((byte) state.topology.radius)
+                .put((byte) next);
+        for (int colour : new int[] {Colour.RED, Colour.BLUE}) {
+            Bitboard stones = state.stonesOf(colour);
+            frame.putShort((short) stones.cardinality());
+            for (int cell = stones.nextSetBit(0); cell != -1; cell = stones.nextSetBit(cell + 1)) {
+                frame.putShort((short) cell);
+            }
+        }
+        return frame.flip();
+    }
+
+    static ByteBuffer unknown(int match) {
+        return frame(5).put(UNKNOWN).putInt(match).flip();
+    }
+
+    // A buffer holding the length prefix, ready for the type and payload
+    private static ByteBuffer frame(int length) {
+        return ByteBuffer.allocate(LENGTH_BYTES + length).putShort((short) length);
+    }
+}
@@ -0,0 +1,79 @@
+import java.util.SplittableRandom;
+
+/**
+ * Measures how fast the rules engine plays random games as the board grows.
+ * For each radius it plays seeded random games headlessly through evaluate/apply and the cached legal move table,
+ * then prints the move throughput and the average cost of a move.
+ * Usage: java RadiusBenchmark [radius ...], defaulting to 6 10 20 30 40 50.
+ */
+public class RadiusBenchmark {
+    private static final long SEED = 42;
+    private static final int WARMUP_GAMES = 3;
+    private static final long MIN_NANOS = 2_000_000_000L; // time spent per radius
+
+    public static void main(String[] args) {
+        int[] radii = {6, 10, 20, 30, 40, 50};
+        if (args.length > 0) {
+            radii = new int[args.length];
+            for (int i = 0; i < args.length; i++) radii[i] = Integer.parseInt(args[i]);
+        }
+
+        System.out.printf("%6s %8s %8s %10s %12s %10s%n", "radius", "cells", "games", "moves", "moves/sec", "us/move");
+        for (int radius : radii) {
+            SplittableRandom random = new SplittableRandom(SEED);
+            GameState state = new GameState(radius);
+            for (int i = 0; i < WARMUP_GAMES; i++) {
+                playRandomGame(state, random);
+            }
+
+            int games = 0;
+            long moves = 0;
+            long start = System.nanoTime();
+            long elapsed;
+            do {
+                moves += playRandomGame(state, random);
+                games++;
+                elapsed = System.nanoTime() - start;
+            } while (elapsed < MIN_NANOS);
+
+            System.out.printf("%6d %8d %8d %10d %12.0f %10.2f%n", radius, state.topology.cellCount, games, moves,
+                    moves * 1e9 / elapsed, elapsed / 1e3 / moves);
+        }
+    }
+
+    /**
+     * Plays one game of uniformly random legal moves from an empty board.
+     * The game ends when a colour is wiped out, when neither player can move, or after a move limit so that
+     * a game going round in circles cannot run forever.
+     *
+     * @return the number of moves played
+     */
+    static int playRandomGame(GameState state, SplittableRandom random) {
+        state.reset();
+        int limit = 20 * state.topology.cellCount;
+        int moves = 0;
+        while (moves < limit && GameManager.checkAndDeclareWinner(state) == null) {
+            int player = state.playerTurn;
+            Bitboard legal = GameManager.legalMoves(state, player);
+            if (legal.isEmpty()) {
+                int opponent = player == Colour.RED ? Colour.BLUE : Colour.RED;
+                if (!GameManager.hasLegalMove(state, opponent)) break;
+                GameManager.setPlayerTurn(state, opponent);
+                continue;
+            }
+            int cell = randomCell(legal, state.topology.cellCount, random);
+            GameManager.apply(state, GameManager.cachedEvaluate(state, cell, player));
+            moves++;
+        }
+        return moves;
+    }
+
+    // A few random probes find a legal cell quickly while most of the board is open; ranking the bits is the fallback
+    private static int randomCell(Bitboard legal, int cellCount, SplittableRandom random) {
+        for (int i = 0; i < 8; i++) {
+            int cell = random.nextInt(cellCount);
+            if (legal.get(cell)) return cell;
+        }
+        return legal.nthSetBit(random.nextInt(legal.cardinality()));
+    }
+}
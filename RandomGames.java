@@ -0,0 +1,74 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Seeded random games for tests. Each move is picked uniformly from the legal moves of the player to move, and a
+ * player without a legal move passes the turn through GameManager.playerTurnDecider, as in a real game. A game ends
+ * when it is won or neither player can move.
+ */
+final class RandomGames {
+    private RandomGames() {
+    }
+
+    /**
+     * Passes the turn if the player to move has no legal move but the opponent has.
+     *
+     * @param state the game, whose turn may change
+     * @return whether the player to move now has a legal move; false once the game is won or neither player can move
+     */
+    static boolean passIfStuck(GameState state) {
+        if (GameManager.winner(state) != -1) return false;
+        if (GameManager.hasLegalMove(state, state.playerTurn)) return true;
+        int opponent = state.playerTurn == Colour.RED ? Colour.BLUE : Colour.RED;
+        if (!GameManager.hasLegalMove(state, opponent)) return false;
+        GameManager.playerTurnDecider(state, state.playerTurn, true);
+        return true;
+    }
+
+    /**
+     * Plays one random legal move, passing the turn first if needed.
+     *
+     * @param state the game, changed by the move
+     * @param random where the move is drawn from
+     * @return the move played, or null if the game is won or neither player can move
+     */
+    static MoveResult play(GameState state, SplittableRandom random) {
+        if (!passIfStuck(state)) return null;
+        Bitboard legal = GameManager.legalMoves(state, state.playerTurn);
+        int cell = legal.nthSetBit(random.nextInt(legal.cardinality()));
+        MoveResult result = GameManager.evaluate(state, cell, state.playerTurn);
+        GameManager.apply(state, result);
+        return result;
+    }
+
+    /**
+     * Plays random games and keeps a copy of every position a move was played from, including those after a pass.
+     *
+     * @param radius the board radius
+     * @param games the number of games
+     * @param seed the seed of the moves
+     * @return the positions in the order they were played, at most 4 * cellCount moves a game
+     */
+    static List<GameState> positions(int radius, int games, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        List<GameState> positions = new ArrayList<>();
+        for (int g = 0; g < games; g++) {
+            GameState state = new GameState(radius);
+            while (state.move < 4 * state.topology.cellCount && passIfStuck(state)) {
+                positions.add(copy(state));
+                play(state, random);
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * @return a copy of a game that shares nothing with it
+     */
+    static GameState copy(GameState state) {
+        GameState copy = new GameState(state.topology.radius);
+        copy.copyFrom(state);
+        return copy;
+    }
+}
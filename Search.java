@@ -0,0 +1,333 @@
+/**
+ * Headless computer opponent: negamax alpha-beta search over GameManager's rules with iterative deepening.
+ * Each ply plays on a reused copy of the position, so the cached legal move tables carry over from parent to child
+ * and only the cells a move touches are evaluated again. Scores are always from the point of view of the player to
+ * move; a capture lets the same player move again, so its child is searched without flipping the score, and a
+ * player without a legal move passes, as in GameManager.playerTurnDecider.
+ * The transposition table is keyed by canonical position key, so the symmetric images of a position share one entry.
+ * The search checks a deadline and a cancel flag as it goes and always returns the best move found so far.
+ * An instance searches one position at a time; cancel may be called from any thread. A cancel that arrives while no
+ * search is running stops the next one as soon as it starts, so it is never lost; a caller that reuses an instance
+ * after cancelling it calls clearCancel before it decides to search again.
+ */
+public class Search {
+    public static final int WIN = 1_000_000;
+    public static final int MAX_DEPTH = 64;
+
+    private static final int CHECK_INTERVAL = 1024; // nodes between deadline checks
+    private static final int MAX_PLY = 2 * MAX_DEPTH + 2; // passes use a ply without using depth
+
+    private final TranspositionTable table;
+    private Tablebase tablebase;
+    private EvalWeights weights = EvalWeights.DEFAULT;
+    private BoardTopology topology;
+    private GameState[] stack;
+    private int[][] moves;
+    private int[][] order;
+
+    private volatile boolean cancelled;
+    private boolean stopped;
+    private long deadline;
+    private long nodes;
+    private long startNanos;
+    private long elapsedNanos;
+    private int completedDepth;
+    private int bestScore;
+    private MoveResult bestMove;
+
+    /**
+     * Creates a search with its own 16 MB transposition table.
+     */
+    public Search() {
+        this(new TranspositionTable(16));
+    }
+
+    /**
+     * Creates a search that stores its results in the given table, which may be shared with other searches.
+     *
+     * @param table the transposition table to use
+     */
+    public Search(TranspositionTable table) {
+        this.table = table;
+    }
+
+    /**
+     * Lets the search read exact results from a solved table instead of searching positions it covers.
+     *
+     * @param tablebase the table, or null to search everything
+     */
+    public void setTablebase(Tablebase tablebase) {
+        this.tablebase = tablebase;
+    }
+
+    /**
+     * Sets the weights of the heuristic score used at the leaves of the search.
+     *
+     * @param weights the weights, for example loaded from a file written by Tuner
+     */
+    public void setWeights(EvalWeights weights) {
+        this.weights = weights;
+    }
+
+    /**
+     * Searches the position for the player to move, deepening one ply at a time until the time runs out,
+     * the depth limit is reached, a forced result is found or the search is cancelled.
+     *
+     * @param position the game to search, left unchanged
+     * @param millis the time budget in milliseconds
+     * @param maxDepth the deepest iteration to run
+     * @return the best move found, or null if the player to move has no legal move
+     */
+    public MoveResult search(GameState position, long millis, int maxDepth) {
+        startNanos = System.nanoTime();
+        deadline = startNanos + millis * 1_000_000L;
+        stopped = false;
+        nodes = 0;
+        completedDepth = 0;
+        bestScore = 0;
+        bestMove = null;
+        table.newSearch();
+        prepare(position.topology);
+
+        GameState root = at(0);
+        root.copyFrom(position);
+        root.isGameOver = false;
+        int player = root.playerTurn;
+        int count = orderMoves(root, player, 0, TranspositionTable.NO_MOVE);
+        if (count > 0) {
+            bestMove = GameManager.cachedEvaluate(root, moves[0][0], player);
+        }
+
+        for (int depth = 1; depth <= Math.min(maxDepth, MAX_DEPTH) && count > 0; depth++) {
+            int alpha = -WIN - 1;
+            int iterationBest = -1;
+            for (int i = 0; i < count; i++) {
+                int score = searchMove(root, moves[0][i], depth, 0, alpha, WIN + 1);
+                if (stopped) break;
+                if (score > alpha) {
+                    alpha = score;
+                    iterationBest = i;
+                }
+            }
+            if (stopped && iterationBest == -1) break;
+
+            // A move that beat the previous best in an unfinished iteration is still an improvement
+            int best = moves[0][iterationBest];
+            bestMove = GameManager.cachedEvaluate(root, best, player);
+            bestScore = alpha;
+            if (stopped) break;
+            completedDepth = depth;
+            int transform = root.canonicalTransform();
+            table.store(root.symmetricKey(transform), topology.symmetry.map(transform, best), alpha, depth,
+                    TranspositionTable.EXACT);
+
+            // Search the best move first next time
+            System.arraycopy(moves[0], 0, moves[0], 1, iterationBest);
+            moves[0][0] = best;
+            if (Math.abs(alpha) >= WIN - MAX_PLY) break;
+        }
+        elapsedNanos = System.nanoTime() - startNanos;
+        return bestMove;
+    }
+
+    /**
+     * Stops the running search as soon as possible, or the next one if none is running; search then returns the best
+     * move found so far. The cancel holds until clearCancel.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Lets searches run again after a cancel. Call it before checking whether a search is still wanted, so a cancel
+     * that comes after the check stops the search instead of being cleared by it.
+     */
+    public void clearCancel() {
+        cancelled = false;
+    }
+
+    /**
+     * @return the best move of the last search, or null if there was none
+     */
+    public MoveResult bestMove() {
+        return bestMove;
+    }
+
+    /**
+     * @return the score of the best move for the player who was to move
+     */
+    public int score() {
+        return bestScore;
+    }
+
+    /**
+     * @return the depth of the last iteration that finished
+     */
+    public int completedDepth() {
+        return completedDepth;
+    }
+
+    /**
+     * @return the number of positions visited by the last search
+     */
+    public long nodes() {
+        return nodes;
+    }
+
+    /**
+     * @return the speed of the last search in positions per second
+     */
+    public long nodesPerSecond() {
+        long elapsed = elapsedNanos > 0 ? elapsedNanos : System.nanoTime() - startNanos;
+        return elapsed == 0 ? 0 : nodes * 1_000_000_000L / elapsed;
+    }
+
+    // Plays one move on the next ply's copy and searches the result
+    private int searchMove(GameState state, int cell, int depth, int ply, int alpha, int beta) {
+        GameState child = at(ply + 1);
+        child.copyFrom(state);
+        GameManager.apply(child, GameManager.cachedEvaluate(child, cell, state.playerTurn));
+        if (child.playerTurn == state.playerTurn) {
+            return negamax(child, depth - 1, ply + 1, alpha, beta); // captured, so the same player moves again
+        }
+        return -negamax(child, depth - 1, ply + 1, -beta, -alpha);
+    }
+
+    private int negamax(GameState state, int depth, int ply, int alpha, int beta) {
+        if (++nodes % CHECK_INTERVAL == 0 && (cancelled || System.nanoTime() > deadline)) {
+            stopped = true;
+        }
+        if (stopped) return 0;
+
+        int player = state.playerTurn;
+        int opponent = player == Colour.RED ? Colour.BLUE : Colour.RED;
+        if (!state.isStartOfGame) {
+            if (state.stoneCount(opponent) == 0) return WIN - ply;
+            if (state.stoneCount(player) == 0) return -WIN + ply;
+        }
+        if (tablebase != null && tablebase.radius == state.topology.radius) {
+            long exact = tablebase.probe(state);
+            if (exact != 0) return exactScore(exact, ply);
+        }
+        if (ply >= MAX_PLY - 1) return weights.score(state);
+
+        if (!GameManager.hasLegalMove(state, player)) {
+            if (!GameManager.hasLegalMove(state, opponent)) {
+                int material = state.stoneCount(player) - state.stoneCount(opponent);
+                return material == 0 ? 0 : Integer.signum(material) * (WIN - ply);
+            }
+            GameState child = at(ply + 1);
+            child.copyFrom(state);
+            GameManager.setPlayerTurn(child, opponent);
+            return -negamax(child, depth, ply + 1, -beta, -alpha);
+        }
+        if (depth <= 0) return weights.score(state);
+
+        // Symmetric positions share one entry, with the move stored as it is on the canonical board
+        int transform = state.canonicalTransform();
+        long key = state.symmetricKey(transform);
+        int hashMove = TranspositionTable.NO_MOVE;
+        long entry = table.probe(key);
+        if (entry != TranspositionTable.MISS) {
+            hashMove = TranspositionTable.move(entry);
+            if (hashMove != TranspositionTable.NO_MOVE) hashMove = topology.symmetry.unmap(transform, hashMove);
+            if (TranspositionTable.depth(entry) >= depth) {
+                int score = fromTable(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER && score >= beta)
+                        || (bound == TranspositionTable.UPPER && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+
+        int originalAlpha = alpha;
+        int best = -WIN - 1;
+        int bestCell = TranspositionTable.NO_MOVE;
+        int count = orderMoves(state, player, ply, hashMove);
+        for (int i = 0; i < count; i++) {
+            int score = searchMove(state, moves[ply][i], depth, ply, alpha, beta);
+            if (stopped) return 0;
+            if (score > best) {
+                best = score;
+                bestCell = moves[ply][i];
+            }
+            if (score > alpha) alpha = score;
+            if (alpha >= beta) break;
+        }
+
+        int bound = best <= originalAlpha ? TranspositionTable.UPPER
+                : best >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+        int stored = bestCell == TranspositionTable.NO_MOVE ? bestCell : topology.symmetry.map(transform, bestCell);
+        table.store(key, stored, toTable(best, ply), depth, bound);
+        return best;
+    }
+
+    // Fills moves[ply] with the legal cells: the table's move first, then captures by stones taken, then placements
+    private int orderMoves(GameState state, int player, int ply, int hashMove) {
+        Bitboard legal = GameManager.legalMoves(state, player);
+        int[] list = moves[ply];
+        int[] keys = order[ply];
+        int count = 0;
+        for (int cell = legal.nextSetBit(0); cell != -1; cell = legal.nextSetBit(cell + 1)) {
+            int key;
+            if (cell == hashMove) {
+                key = Integer.MAX_VALUE;
+            } else {
+                key = GameManager.cachedEvaluate(state, cell, player).capturedStoneCount();
+            }
+            // Insertion sort, highest key first; boards have few enough legal moves for it
+            int i = count++;
+            while (i > 0 && keys[i - 1] < key) {
+                list[i] = list[i - 1];
+                keys[i] = keys[i - 1];
+                i--;
+            }
+            list[i] = cell;
+            keys[i] = key;
+        }
+        return count;
+    }
+
+    // A table result as a win score, counting the table's remaining moves like plies
+    private static int exactScore(long entry, int ply) {
+        int plies = Math.min(ply + Tablebase.distance(entry), MAX_PLY - 1);
+        switch (Tablebase.value(entry)) {
+            case Tablebase.WIN: return WIN - plies;
+            case Tablebase.LOSS: return -WIN + plies;
+            default: return 0;
+        }
+    }
+
+    // Win scores are stored relative to the node so they stay right when the position is reached at another ply
+    private static int toTable(int score, int ply) {
+        if (score >= WIN - MAX_PLY) return score + ply;
+        if (score <= -WIN + MAX_PLY) return score - ply;
+        return score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        if (score >= WIN - MAX_PLY) return score - ply;
+        if (score <= -WIN + MAX_PLY) return score + ply;
+        return score;
+    }
+
+    private void prepare(BoardTopology topology) {
+        if (topology == this.topology) return;
+        this.topology = topology;
+        stack = new GameState[MAX_PLY + 1];
+        moves = new int[MAX_PLY + 1][];
+        order = new int[MAX_PLY + 1][];
+    }
+
+    // The reused position for a ply, created the first time the search gets that deep
+    private GameState at(int ply) {
+        if (stack[ply] == null) {
+            stack[ply] = new GameState(topology.radius);
+            moves[ply] = new int[topology.cellCount];
+            order[ply] = new int[topology.cellCount];
+        }
+        return stack[ply];
+    }
+}
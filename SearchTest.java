@@ -0,0 +1,193 @@
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SearchTest {
+    private GameState state;
+    private Search search;
+
+    @Before
+    public void setUp() {
+        state = new GameState();
+        search = new Search(new TranspositionTable(1));
+    }
+
+    private void startMidGame() {
+        state.move = 2;
+        state.isStartOfGame = false;
+    }
+
+    @Test
+    public void testFindsWinningCapture() {
+        GameManager.placeStone(state, state.hexAt(0, 0, 0), Colour.BLUE);
+        GameManager.placeStone(state, state.hexAt(1, -1, 0), Colour.RED);
+        GameManager.placeStone(state, state.hexAt(1, 0, -1), Colour.RED);
+        startMidGame();
+
+        MoveResult move = search.search(state, 1000, 4);
+
+        assertNotNull(move);
+        assertTrue(move.movesAgain);
+        assertTrue(search.score() >= Search.WIN - Search.MAX_DEPTH);
+    }
+
+    @Test
+    public void testSearchLeavesPositionUnchanged() {
+        GameManager.placeStone(state, state.hexAt(0, 0, 0), Colour.BLUE);
+        GameManager.placeStone(state, state.hexAt(0, 3, -3), Colour.BLUE);
+        GameManager.placeStone(state, state.hexAt(3, -3, 0), Colour.RED);
+        GameManager.placeStone(state, state.hexAt(-3, 0, 3), Colour.RED);
+        startMidGame();
+        long key = state.key();
+
+        search.search(state, 1000, 3);
+
+        assertEquals(key, state.key());
+        assertEquals(2, state.stoneCount(Colour.RED));
+        assertEquals(1, state.playerTurn);
+        assertEquals(3, search.completedDepth());
+        assertTrue(search.nodes() > 0);
+        assertTrue(search.nodesPerSecond() > 0);
+    }
+
+    @Test
+    public void testReturnsLegalMoveWhenOutOfTime() {
+        MoveResult move = search.search(state, 0, Search.MAX_DEPTH);
+
+        assertNotNull(move);
+        assertTrue(GameManager.evaluate(state, move.cell, Colour.RED).legal);
+    }
+
+    @Test
+    public void testCancelBeforeSearchIsNotLost() {
+        search.cancel();
+        long start = System.nanoTime();
+        MoveResult move = search.search(state, 60_000, Search.MAX_DEPTH);
+        assertNotNull(move);
+        assertTrue(System.nanoTime() - start < 10_000_000_000L);
+        assertTrue(search.completedDepth() < Search.MAX_DEPTH);
+
+        search.clearCancel();
+        search.search(state, 60_000, 3);
+        assertEquals(3, search.completedDepth());
+    }
+
+    @Test
+    public void testCancelStopsSearch() throws InterruptedException {
+        Thread canceller = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ignored) {
+            }
+            search.cancel();
+        });
+        canceller.start();
+        long start = System.nanoTime();
+        MoveResult move = search.search(state, 60_000, Search.MAX_DEPTH);
+        canceller.join();
+
+        assertNotNull(move);
+        assertTrue(System.nanoTime() - start < 10_000_000_000L);
+    }
+
+    @Test
+    public void testNoMoveWhenNothingIsLegal() {
+        for (HexCube hex : state.hexs()) {
+            GameManager.placeStone(state, hex, Colour.BLUE);
+        }
+        assertNull(search.search(state, 1000, 3));
+    }
+
+    private int extraMoves; // captures deeper than the root that gave the capturer another move
+    private int passes; // positions where the player to move had to pass
+
+    // Plain negamax over the same rules and scores as Search, without pruning, move ordering or a table
+    private int minimax(GameState state, int depth, int ply) {
+        int player = state.playerTurn;
+        int opponent = player == Colour.RED ? Colour.BLUE : Colour.RED;
+        if (!state.isStartOfGame) {
+            if (state.stoneCount(opponent) == 0) return Search.WIN - ply;
+            if (state.stoneCount(player) == 0) return -Search.WIN + ply;
+        }
+        if (!GameManager.hasLegalMove(state, player)) {
+            if (!GameManager.hasLegalMove(state, opponent)) {
+                int material = state.stoneCount(player) - state.stoneCount(opponent);
+                return material == 0 ? 0 : Integer.signum(material) * (Search.WIN - ply);
+            }
+            passes++;
+            GameState child = new GameState(state.topology.radius);
+            child.copyFrom(state);
+            GameManager.setPlayerTurn(child, opponent);
+            return -minimax(child, depth, ply + 1);
+        }
+        if (depth <= 0) return EvalWeights.DEFAULT.score(state);
+
+        int best = -Search.WIN - 1;
+        Bitboard legal = GameManager.legalMoves(state, player);
+        for (int cell = legal.nextSetBit(0); cell != -1; cell = legal.nextSetBit(cell + 1)) {
+            GameState child = new GameState(state.topology.radius);
+            child.copyFrom(state);
+            GameManager.apply(child, GameManager.evaluate(child, cell, player));
+            int score;
+            if (child.playerTurn == player) {
+                if (ply > 0 && depth > 1) extraMoves++;
+                score = minimax(child, depth - 1, ply + 1);
+            } else {
+                score = -minimax(child, depth - 1, ply + 1);
+            }
+            best = Math.max(best, score);
+        }
+        return best;
+    }
+
+    // Positions along random games, each with the player to move holding a legal move
+    private void checkAgainstMinimax(int radius, int games, int maxDepth, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int g = 0; g < games; g++) {
+            GameState position = new GameState(radius);
+            while (RandomGames.passIfStuck(position)) {
+                // the full tree grows with the legal moves, so crowded boards are checked deeper
+                int legal = GameManager.legalMoves(position, position.playerTurn).cardinality();
+                checkAgainstMinimax(position, Math.min(maxDepth, legal <= 12 ? 4 : 3));
+                RandomGames.play(position, random);
+            }
+        }
+    }
+
+    private void checkAgainstMinimax(GameState position, int depth) {
+        Search fresh = new Search(new TranspositionTable(1));
+        assertNotNull(fresh.search(position, 60_000, depth));
+        assertEquals(minimax(position, depth, 0), fresh.score(), "depth " + depth + " at move " + position.move);
+    }
+
+    // Crowded boards of random stones, where a player is often left with nowhere to place and has to pass
+    private void checkCrowdedBoardsAgainstMinimax(int boards, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int b = 0; b < boards; b++) {
+            GameState position = new GameState(2);
+            for (HexCube hex : position.hexs()) {
+                int roll = random.nextInt(8);
+                if (roll < 3) GameManager.placeStone(position, hex, Colour.RED);
+                else if (roll < 6) GameManager.placeStone(position, hex, Colour.BLUE);
+            }
+            position.move = 2;
+            position.isStartOfGame = false;
+            position.playerTurn = random.nextBoolean() ? Colour.RED : Colour.BLUE;
+            if (GameManager.winner(position) != -1) continue;
+            if (!GameManager.hasLegalMove(position, position.playerTurn)) continue;
+            checkAgainstMinimax(position, 4);
+        }
+    }
+
+    @Test
+    public void testScoresMatchPlainMinimax() {
+        checkAgainstMinimax(2, 12, 4, 21);
+        checkAgainstMinimax(3, 3, 4, 22);
+        checkCrowdedBoardsAgainstMinimax(200, 23);
+        assertTrue(extraMoves > 0);
+        assertTrue(passes > 0);
+    }
+}
@@ -0,0 +1,214 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Loopback load test for HexOustServer. Starts a server in this process, then plays many matches at once against
+ * it from a single client selector thread: two connections per match, each placing a random legal stone as soon as
+ * it is its turn. Reports matches and moves per second and the round trip of moves, from writing a MOVE to reading
+ * the MOVED that answers it.
+ * With a journal file every match is journalled as well, and the number of fsyncs it took is reported.
+ * Usage: java ServerBenchmark [matches] [radius] [workers] [journal], defaulting to 2000, 6, one worker per processor
+ * and no journal.
+ */
+public class ServerBenchmark {
+    private static final long SEED = 42;
+    private static final long TIMEOUT_MILLIS = 120_000;
+
+    /**
+     * What one load run measured.
+     */
+    static final class Report {
+        final int matches;
+        final int finished;
+        final int illegal; // moves the server rejected, which random legal play should never cause
+        final long nanos;
+        final long[] latency; // sorted round trips in nanoseconds, one per move
+
+        Report(int matches, int finished, int illegal, long nanos, long[] latency) {
+            this.matches = matches;
+            this.finished = finished;
+            this.illegal = illegal;
+            this.nanos = nanos;
+            this.latency = latency;
+        }
+
+        @Override
+        public String toString() {
+            double seconds = nanos / 1e9;
+            return String.format("%d/%d matches finished in %.2f s: %.0f matches/s, %.0f moves/s, %d illegal%n"
+                            + "move round trip ms: p50 %.2f  p90 %.2f  p99 %.2f  max %.2f",
+                    finished, matches, seconds, finished / seconds, latency.length / seconds, illegal,
+                    Tournament.percentile(latency, 50) / 1e6, Tournament.percentile(latency, 90) / 1e6,
+                    Tournament.percentile(latency, 99) / 1e6, Tournament.percentile(latency, 100) / 1e6);
+        }
+    }
+
+    // The client side of one match, shared by its two connections; whichever reads a MOVED first plays it here
+    private static final class ClientMatch {
+        final GameState state;
+        int applied;
+
+        ClientMatch(int radius) {
+            state = new GameState(radius);
+        }
+    }
+
+    private static final class Client {
+        final SocketChannel channel;
+        final ByteBuffer in = ByteBuffer.allocate(4096);
+        ClientMatch match;
+        int colour;
+        int seen; // MOVED frames read on this connection
+        long sentAt; // when the move waiting for its MOVED was written, 0 if none
+        boolean ended;
+
+        Client(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int matches = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int radius = args.length > 1 ? Integer.parseInt(args[1]) : GameState.DEFAULT_RADIUS;
+        int workers = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        MoveJournal journal = args.length > 3 ? MoveJournal.open(Paths.get(args[3])) : null;
+        try (HexOustServer server = new HexOustServer(new InetSocketAddress("127.0.0.1", 0), workers)) {
+            server.setJournal(journal);
+            server.start();
+            Report report = drive(server.address(), matches, radius, SEED);
+            System.out.printf("radius %d, %d workers, %d moves%n%s%n", radius, workers, server.movesPlayed(), report);
+        } finally {
+            if (journal != null) {
+                journal.close();
+                System.out.printf("journal: %d records in %d fsyncs%n", journal.records(), journal.syncs());
+            }
+        }
+    }
+
+    /**
+     * Plays matches against a running server until every one has ended or the run times out.
+     *
+     * @param address the server
+     * @param matches the number of matches to play at once
+     * @param radius the board radius to join with
+     * @param seed seeds the random moves
+     * @return what the run measured
+     */
+    static Report drive(InetSocketAddress address, int matches, int radius, long seed) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        Map<Integer, ClientMatch> byId = new HashMap<>();
+        List<Client> clients = new ArrayList<>(2 * matches);
+        long[] latency = new long[1024];
+        int moves = 0;
+        int finished = 0;
+        int illegal = 0;
+
+        long start = System.nanoTime();
+        try (Selector selector = Selector.open()) {
+            for (int i = 0; i < 2 * matches; i++) {
+                SocketChannel channel = SocketChannel.open(address);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                Client client = new Client(channel);
+                write(client, Protocol.join(radius));
+                channel.configureBlocking(false);
+                channel.register(selector, SelectionKey.OP_READ, client);
+                clients.add(client);
+            }
+
+            int ended = 0;
+            long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+            while (ended < clients.size() && System.currentTimeMillis() < deadline) {
+                selector.select(1000);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    Client client = (Client) key.attachment();
+                    if (client.channel.read(client.in) == -1) {
+                        key.cancel();
+                        if (!client.ended) ended++;
+                        client.ended = true;
+                        continue;
+                    }
+                    ByteBuffer in = client.in.flip();
+                    while (in.remaining() >= Protocol.LENGTH_BYTES && in.remaining()
+                            >= Protocol.LENGTH_BYTES + Short.toUnsignedInt(in.getShort(in.position()))) {
+                        int end = in.position() + Protocol.LENGTH_BYTES + Short.toUnsignedInt(in.getShort());
+                        byte type = in.get();
+                        if (type == Protocol.START) {
+                            int id = in.getInt();
+                            int boardRadius = in.get();
+                            client.colour = in.get();
+                            client.match = byId.computeIfAbsent(id, k -> new ClientMatch(boardRadius));
+                            // the other player may already have read the first MOVED, which prompts its own move
+                            if (client.match.applied == 0 && client.colour == client.match.state.playerTurn) {
+                                move(client, random);
+                            }
+                        } else if (type == Protocol.MOVED) {
+                            in.getInt(); // the match, which this connection plays
+                            int cell = Short.toUnsignedInt(in.getShort());
+                            int player = in.get();
+                            int next = in.get();
+                            ClientMatch match = client.match;
+                            if (++client.seen > match.applied) {
+                                GameManager.apply(match.state, GameManager.evaluate(match.state, cell, player));
+                                if (next != Colour.WHITE) GameManager.setPlayerTurn(match.state, next);
+                                match.applied++;
+                            }
+                            if (player == client.colour && client.sentAt != 0) {
+                                if (moves == latency.length) latency = Arrays.copyOf(latency, moves * 2);
+                                latency[moves++] = System.nanoTime() - client.sentAt;
+                                client.sentAt = 0;
+                            }
+                            if (next == client.colour) move(client, random);
+                        } else if (type == Protocol.ILLEGAL) {
+                            illegal++;
+                            client.sentAt = 0;
+                        } else if (type == Protocol.END) {
+                            if (client.colour == Colour.RED) finished++;
+                            client.ended = true;
+                            ended++;
+                            key.cancel();
+                            client.channel.close();
+                            in.position(end);
+                            break;
+                        }
+                        in.position(end);
+                    }
+                    in.compact();
+                }
+            }
+        } finally {
+            for (Client client : clients) client.channel.close();
+        }
+        long nanos = System.nanoTime() - start;
+        long[] sorted = Arrays.copyOf(latency, moves);
+        Arrays.sort(sorted);
+        return new Report(matches, finished, illegal, nanos, sorted);
+    }
+
+    private static void move(Client client, SplittableRandom random) throws IOException {
+        Bitboard legal = GameManager.legalMoves(client.match.state, client.colour);
+        if (legal.isEmpty()) return; // the server passes for us
+        client.sentAt = System.nanoTime();
+        write(client, Protocol.move(legal.nthSetBit(random.nextInt(legal.cardinality()))));
+    }
+
+    // Client frames are a few bytes, so a write only comes back short when the socket buffer is full
+    private static void write(Client client, ByteBuffer frame) throws IOException {
+        while (frame.hasRemaining()) client.channel.write(frame);
+    }
+}
@@ -0,0 +1,449 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Exact solver for small boards. It first lists every position reachable from the empty board under GameManager's
+ * rules, breadth first, then works backwards from the finished games: each pass marks a position won if one of its
+ * moves reaches a position lost for the player who then moves, and lost if every move reaches a position won for
+ * them. A capture keeps the turn, so its result is taken over without swapping sides. Positions still open when a
+ * pass changes nothing can only go round in circles and are draws. A game where neither player can move is decided
+ * by the stones on the board, as in Search.
+ * Every pass runs on a pool of threads over slices of the position table and only reads the results of earlier
+ * passes, so the distances it records are exact. The solved table is written in the format Tablebase maps.
+ *
+ * Radius 1 solves in a moment. Radius 2 has 61,913,079 positions up to symmetry and takes 16 passes: on one core with
+ * -Xmx4200m the build took about 50 minutes (16 to list the positions, 34 to solve them), the table grows to 2^27
+ * slots, so 1 GB of keys plus 384 MB of results, and the file written is 1 GB. The empty radius-2 board is a win in 3
+ * for red. Before the table grows the heap is checked for room, so a heap too small for the board fails with an
+ * IllegalStateException rather than running out of memory part way.
+ *
+ * Usage: java Solver --radius=R --out=FILE [--threads=N] to build a table, or
+ * java Solver --probe=FILE [--moves=CELL,CELL,...] [--validate=N --millis=MS] to analyse with one.
+ */
+public class Solver {
+    private static final int MAX_CAPACITY = 1 << 30;
+    private static final int SLICES_PER_THREAD = 8;
+
+    public final int radius;
+    public final int threads;
+    private final BoardTopology topology;
+    private PositionSet positions;
+    private byte[] values;
+    private short[] distances;
+    private int passes;
+
+    /**
+     * Creates a solver for one board.
+     *
+     * @param radius the board radius, at most 2
+     * @param threads the number of threads to solve on
+     */
+    public Solver(int radius, int threads) {
+        this.topology = BoardTopology.forRadius(radius);
+        if (!Tablebase.fits(topology)) {
+            throw new IllegalArgumentException("a radius " + radius + " board has too many cells for a tablebase");
+        }
+        this.radius = radius;
+        this.threads = threads;
+    }
+
+    /**
+     * Lists and solves every reachable position.
+     *
+     * @return the number of positions solved
+     */
+    public long solve() throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            enumerate(pool);
+            retrograde(pool);
+        } finally {
+            pool.shutdownNow();
+        }
+        return positions.size;
+    }
+
+    /**
+     * @return the number of passes the last solve needed
+     */
+    public int passes() {
+        return passes;
+    }
+
+    /**
+     * Returns the solved value of a position, for tests and callers that keep the solver in memory.
+     *
+     * @return Tablebase.WIN, LOSS or DRAW for the player to move, or UNKNOWN if the position is not reachable
+     */
+    public int value(GameState state) {
+        int slot = positions.indexOf(Tablebase.encode(state));
+        return slot == -1 ? Tablebase.UNKNOWN : values[slot];
+    }
+
+    /**
+     * Writes the solved table in the format Tablebase maps, keeping the slot layout of the solver's own table.
+     *
+     * @param path the file to write
+     */
+    public void write(Path path) throws IOException {
+        write(path, radius, positions.keys, values, distances);
+    }
+
+    // Writes a table from slots laid out as in PositionSet, so tests can write small tables of known results
+    static void write(Path path, int radius, long[] keys, byte[] values, short[] distances) throws IOException {
+        long slots = keys.length;
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw");
+             FileChannel channel = file.getChannel()) {
+            file.setLength(Tablebase.HEADER_BYTES + slots * 8);
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, Tablebase.HEADER_BYTES);
+            header.putInt(0, Tablebase.MAGIC);
+            header.putInt(4, Tablebase.VERSION);
+            header.putInt(8, radius);
+            header.putLong(16, slots);
+
+            int segment = 1 << 24;
+            for (long first = 0; first < slots; first += segment) {
+                int length = (int) Math.min(segment, slots - first);
+                MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE,
+                        Tablebase.HEADER_BYTES + first * 8, length * 8L);
+                for (int i = 0; i < length; i++) {
+                    int slot = (int) (first + i);
+                    long key = keys[slot];
+                    if (key != 0) out.putLong(i * 8, key << 16 | (long) distances[slot] << 2 | values[slot]);
+                }
+                out.force();
+            }
+        }
+    }
+
+    // Breadth first from the empty board; children are found in parallel and added to the table on this thread
+    private void enumerate(ExecutorService pool) throws InterruptedException {
+        positions = new PositionSet(1 << 12, capacityLimit(Runtime.getRuntime().maxMemory()));
+        GameState start = new GameState(radius);
+        long[] frontier = {Tablebase.encode(start)};
+        positions.add(frontier[0]);
+        while (frontier.length > 0) {
+            long[] level = frontier;
+            LongList[] found = inParallel(pool, level.length, (from, to, out, state, scratch, children) -> {
+                for (int i = from; i < to; i++) {
+                    Tablebase.decode(level[i], state);
+                    int count = children(state, scratch, children);
+                    for (int c = 0; c < count; c++) out.add(children[c]);
+                }
+            });
+            LongList next = new LongList();
+            for (LongList list : found) {
+                for (int i = 0; i < list.size; i++) {
+                    if (positions.add(list.items[i])) next.add(list.items[i]);
+                }
+            }
+            frontier = next.toArray();
+        }
+    }
+
+    // Jacobi passes: results found in a pass are stored only once the whole pass is done
+    private void retrograde(ExecutorService pool) throws InterruptedException {
+        long[] keys = positions.keys;
+        values = new byte[keys.length];
+        distances = new short[keys.length];
+        for (passes = 0; ; passes++) {
+            int pass = passes;
+            LongList[] resolved = inParallel(pool, keys.length, (from, to, out, state, scratch, children) -> {
+                for (int slot = from; slot < to; slot++) {
+                    if (keys[slot] == 0 || values[slot] != Tablebase.UNKNOWN) continue;
+                    Tablebase.decode(keys[slot] - 1, state);
+                    int value = pass == 0 ? terminalValue(state) : valueFromChildren(state, scratch, children);
+                    if (value != Tablebase.UNKNOWN) out.add((long) slot << 2 | value);
+                }
+            });
+            int changed = 0;
+            for (LongList list : resolved) {
+                for (int i = 0; i < list.size; i++) {
+                    int slot = (int) (list.items[i] >>> 2);
+                    values[slot] = (byte) (list.items[i] & 3);
+                    distances[slot] = (short) Math.min(pass, Tablebase.MAX_DISTANCE);
+                    changed++;
+                }
+            }
+            if (pass > 0 && changed == 0) break;
+        }
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != 0 && values[slot] == Tablebase.UNKNOWN) values[slot] = Tablebase.DRAW;
+        }
+    }
+
+    private static int terminalValue(GameState state) {
+        int player = state.playerTurn;
+        int opponent = player == Colour.RED ? Colour.BLUE : Colour.RED;
+        int winner = GameManager.winner(state);
+        if (winner != -1) return winner == player ? Tablebase.WIN : Tablebase.LOSS;
+        if (hasMove(state, player) || hasMove(state, opponent)) return Tablebase.UNKNOWN;
+        int material = state.stoneCount(player) - state.stoneCount(opponent);
+        return material > 0 ? Tablebase.WIN : material < 0 ? Tablebase.LOSS : Tablebase.DRAW;
+    }
+
+    private int valueFromChildren(GameState state, GameState scratch, long[] children) {
+        long side = 1L << (2 * topology.cellCount);
+        long mover = Tablebase.encode(state) & side;
+        int count = children(state, scratch, children);
+        boolean allLost = true;
+        for (int c = 0; c < count; c++) {
+            int value = values[positions.indexOf(children[c])];
+            if (value != Tablebase.UNKNOWN && value != Tablebase.DRAW && (children[c] & side) != mover) {
+                value = value == Tablebase.WIN ? Tablebase.LOSS : Tablebase.WIN; // the opponent moves there
+            }
+            if (value == Tablebase.WIN) return Tablebase.WIN;
+            if (value != Tablebase.LOSS) allLost = false;
+        }
+        return allLost ? Tablebase.LOSS : Tablebase.UNKNOWN;
+    }
+
+    /**
+     * Packs every position the player to move can reach in one move, or by passing when they have no move.
+     *
+     * @return the number of children, 0 when the game is over
+     */
+    static int children(GameState state, GameState scratch, long[] children) {
+        if (GameManager.winner(state) != -1) return 0;
+        int player = state.playerTurn;
+        int count = 0;
+        for (int cell = 0; cell < state.topology.cellCount; cell++) {
+            if (!GameManager.isLegal(state, cell, player)) continue;
+            scratch.copyFrom(state);
+            GameManager.apply(scratch, GameManager.evaluateBoard(scratch, cell, player));
+            children[count++] = Tablebase.encode(scratch);
+        }
+        int opponent = player == Colour.RED ? Colour.BLUE : Colour.RED;
+        if (count == 0 && hasMove(state, opponent)) {
+            scratch.copyFrom(state);
+            GameManager.setPlayerTurn(scratch, opponent);
+            children[count++] = Tablebase.encode(scratch);
+        }
+        return count;
+    }
+
+    private static boolean hasMove(GameState state, int player) {
+        for (int cell = 0; cell < state.topology.cellCount; cell++) {
+            if (GameManager.isLegal(state, cell, player)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * One slice of a parallel pass, given positions and a child buffer private to its thread.
+     */
+    private interface Slice {
+        void run(int from, int to, LongList out, GameState state, GameState scratch, long[] children);
+    }
+
+    private LongList[] inParallel(ExecutorService pool, int length, Slice slice) throws InterruptedException {
+        int count = Math.max(1, Math.min(length, threads * SLICES_PER_THREAD));
+        List<Callable<LongList>> tasks = new ArrayList<>(count);
+        for (int s = 0; s < count; s++) {
+            int from = (int) ((long) length * s / count);
+            int to = (int) ((long) length * (s + 1) / count);
+            tasks.add(() -> {
+                LongList out = new LongList();
+                slice.run(from, to, out, new GameState(radius), new GameState(radius), new long[topology.cellCount]);
+                return out;
+            });
+        }
+        LongList[] results = new LongList[count];
+        List<Future<LongList>> futures = pool.invokeAll(tasks);
+        for (int s = 0; s < count; s++) {
+            try {
+                results[s] = futures.get(s).get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("solver pass failed", e.getCause());
+            }
+        }
+        return results;
+    }
+
+    // The most slots a heap of the given size can take: growing to c slots holds the old and new keys, 12 bytes a slot,
+    // and a quarter of the heap is left for the lists of each level, so 16 bytes a slot; solving then needs 11
+    static int capacityLimit(long heapBytes) {
+        long limit = MAX_CAPACITY;
+        while (limit > 1 && 16 * limit > heapBytes) limit >>= 1;
+        return (int) limit;
+    }
+
+    /**
+     * Open-addressing set of packed positions with the slot layout of a Tablebase file: position + 1 is stored so
+     * that 0 marks an empty slot, and collisions probe the following slots.
+     */
+    static final class PositionSet {
+        long[] keys;
+        int size;
+        private final int maxCapacity;
+
+        PositionSet(int capacity, int maxCapacity) {
+            keys = new long[capacity];
+            this.maxCapacity = maxCapacity;
+        }
+
+        boolean add(long position) {
+            if (2 * (size + 1) > keys.length) grow();
+            long mask = keys.length - 1;
+            for (int slot = (int) Tablebase.slot(position, mask); ; slot = (int) ((slot + 1) & mask)) {
+                if (keys[slot] == position + 1) return false;
+                if (keys[slot] == 0) {
+                    keys[slot] = position + 1;
+                    size++;
+                    return true;
+                }
+            }
+        }
+
+        int indexOf(long position) {
+            long mask = keys.length - 1;
+            for (int slot = (int) Tablebase.slot(position, mask); ; slot = (int) ((slot + 1) & mask)) {
+                if (keys[slot] == position + 1) return slot;
+                if (keys[slot] == 0) return -1;
+            }
+        }
+
+        // Checks the limit before allocating, so a heap too small for the board fails here rather than running out
+        private void grow() {
+            if (keys.length >= maxCapacity) {
+                throw new IllegalStateException("more than " + maxCapacity / 2 + " reachable positions"
+                        + (maxCapacity < MAX_CAPACITY ? "; a larger heap (-Xmx) holds up to " + MAX_CAPACITY / 2 : ""));
+            }
+            long[] old = keys;
+            keys = new long[old.length * 2];
+            size = 0;
+            for (long key : old) {
+                if (key != 0) add(key - 1);
+            }
+        }
+    }
+
+    /**
+     * Growable list of longs, so passes do not box millions of positions.
+     */
+    static final class LongList {
+        long[] items = new long[16];
+        int size;
+
+        void add(long value) {
+            if (size == items.length) items = Arrays.copyOf(items, size * 2);
+            items[size++] = value;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(items, size);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String radius = "1";
+        String out = null;
+        String probe = null;
+        String moves = "";
+        int threads = Runtime.getRuntime().availableProcessors();
+        int validate = 0;
+        long millis = 100;
+        for (String arg : args) {
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (arg.startsWith("--radius=")) radius = value;
+            else if (arg.startsWith("--out=")) out = value;
+            else if (arg.startsWith("--probe=")) probe = value;
+            else if (arg.startsWith("--moves=")) moves = value;
+            else if (arg.startsWith("--threads=")) threads = Integer.parseInt(value);
+            else if (arg.startsWith("--validate=")) validate = Integer.parseInt(value);
+            else if (arg.startsWith("--millis=")) millis = Long.parseLong(value);
+            else throw new IllegalArgumentException("unknown option " + arg);
+        }
+
+        if (probe == null) {
+            if (out == null) throw new IllegalArgumentException("--out=FILE is required to build a tablebase");
+            Solver solver = new Solver(Integer.parseInt(radius), threads);
+            long start = System.nanoTime();
+            long solved = solver.solve();
+            solver.write(Paths.get(out));
+            System.out.printf("radius %s: %d positions in %d passes, %.1f s%n",
+                    radius, solved, solver.passes(), (System.nanoTime() - start) / 1e9);
+            return;
+        }
+
+        try (Tablebase table = Tablebase.open(Paths.get(probe))) {
+            GameState state = new GameState(table.radius);
+            for (String move : moves.split(",")) {
+                if (move.isEmpty()) continue;
+                MoveResult result = GameManager.evaluate(state, Integer.parseInt(move), state.playerTurn);
+                if (!result.legal) throw new IllegalArgumentException("illegal move " + move);
+                GameManager.apply(state, result);
+            }
+            System.out.println(describe(table.probe(state), state.playerTurn));
+            Bitboard legal = GameManager.legalMoves(state, state.playerTurn);
+            for (int cell = legal.nextSetBit(0); cell != -1; cell = legal.nextSetBit(cell + 1)) {
+                GameState after = new GameState(table.radius);
+                after.copyFrom(state);
+                GameManager.apply(after, GameManager.evaluate(after, cell, state.playerTurn));
+                System.out.println("  " + cell + ": " + describe(table.probe(after), after.playerTurn));
+            }
+            if (validate > 0) {
+                System.out.println(validate(table, new Search(), validate, millis, new SplittableRandom(1)));
+            }
+        }
+    }
+
+    private static String describe(long entry, int player) {
+        String side = player == Colour.RED ? "red" : "blue";
+        switch (Tablebase.value(entry)) {
+            case Tablebase.WIN: return side + " to move wins in " + Tablebase.distance(entry);
+            case Tablebase.LOSS: return side + " to move loses in " + Tablebase.distance(entry);
+            case Tablebase.DRAW: return "draw";
+            default: return "not in the table";
+        }
+    }
+
+    /**
+     * Checks a search against the table on random reachable positions: a move is wrong when it throws away a
+     * win or a draw the position had.
+     *
+     * @return a one-line report of how many moves were wrong
+     */
+    static String validate(Tablebase table, Search search, int samples, long millis, SplittableRandom random) {
+        int checked = 0;
+        int wrong = 0;
+        GameState state = new GameState(table.radius);
+        GameState after = new GameState(table.radius);
+        while (checked < samples) {
+            state.reset();
+            int plies = random.nextInt(2 * state.topology.cellCount);
+            for (int i = 0; i < plies && GameManager.winner(state) == -1; i++) {
+                Bitboard legal = GameManager.legalMoves(state, state.playerTurn);
+                if (legal.isEmpty()) break;
+                int cell = legal.nthSetBit(random.nextInt(legal.cardinality()));
+                GameManager.apply(state, GameManager.evaluate(state, cell, state.playerTurn));
+            }
+            if (GameManager.winner(state) != -1 || !GameManager.hasLegalMove(state, state.playerTurn)) continue;
+
+            int expected = Tablebase.value(table.probe(state));
+            MoveResult move = search.search(state, millis, Search.MAX_DEPTH);
+            after.copyFrom(state);
+            GameManager.apply(after, move);
+            int got = Tablebase.value(table.probe(after));
+            if (after.playerTurn != state.playerTurn && got != Tablebase.DRAW) {
+                got = got == Tablebase.WIN ? Tablebase.LOSS : Tablebase.WIN;
+            }
+            checked++;
+            if (got != expected) wrong++;
+        }
+        return String.format("%d of %d searched moves lost value", wrong, checked);
+    }
+}
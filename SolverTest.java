@@ -0,0 +1,222 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SolverTest {
+    private Solver solver;
+    private Path file;
+
+    // Entries of the radius-2 table built by java -Xmx4200m Solver --radius=2, in Tablebase slot format: the empty
+    // board (red wins in 3), a win in 5, losses in 2 and 12 and a position where the player to move must pass
+    private static final long[] RADIUS_2_POSITIONS = {
+            0x1000dL, 0x40010010090015L, 0x4000040001000aL, 0x40000001010032L, 0x14122669000aL
+    };
+
+    // The entries of every position one move from those above
+    private static final long[] RADIUS_2_CHILDREN = {
+            0x4000000002001dL, 0x40000000050029L, 0x40000001010032L, 0x4000040001000aL, 0x10010a10009L,
+            0x18010810009L, 0x10010890009L, 0x10018810009L, 0x12010810009L, 0x420020410009L,
+            0x10810090005L, 0x210010090009L, 0x420000610015L, 0x40000210810011L, 0x12010090005L,
+            0x420000490009L, 0x40000090810011L, 0x18010090005L, 0x400030005L, 0x400090005L,
+            0x402010005L, 0x1210005L, 0x4810005L, 0x8401001dL, 0x1090005L,
+            0x6010005L, 0x108010005L, 0x120010011L, 0x1030005L, 0x801010005L,
+            0x1200010005L, 0x108001002dL, 0x40141226690005L
+    };
+
+    @Before
+    public void setUp() throws Exception {
+        solver = new Solver(1, 2);
+        solver.solve();
+        file = Files.createTempFile("hexoust", ".tb");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    // Plays random games, passing when needed, and hands every position on the way to the check
+    private void randomGames(int games, long seed, Consumer<GameState> check) {
+        SplittableRandom random = new SplittableRandom(seed);
+        GameState state = new GameState(1);
+        for (int g = 0; g < games; g++) {
+            state.reset();
+            for (int plies = 0; plies < 40 && RandomGames.passIfStuck(state); plies++) {
+                check.accept(state);
+                RandomGames.play(state, random);
+            }
+            check.accept(state);
+        }
+    }
+
+    @Test
+    public void testEncodeDecodeRoundTrip() {
+        GameState decoded = new GameState(1);
+        randomGames(20, 1, state -> {
+            Tablebase.decode(Tablebase.encode(state), decoded);
+            assertEquals(state.canonicalKey(), decoded.canonicalKey());
+            assertEquals(state.isStartOfGame, decoded.isStartOfGame);
+            assertEquals(GameManager.winner(state), GameManager.winner(decoded));
+        });
+    }
+
+    @Test
+    public void testSolvesEveryReachablePosition() {
+        assertTrue(solver.passes() > 1);
+        assertNotEquals(Tablebase.UNKNOWN, solver.value(new GameState(1)));
+        randomGames(50, 2, state -> assertNotEquals(Tablebase.UNKNOWN, solver.value(state)));
+    }
+
+    @Test
+    public void testWonPositionsHaveAWinningMove() {
+        GameState scratch = new GameState(1);
+        long[] children = new long[7];
+        GameState child = new GameState(1);
+        randomGames(50, 3, state -> {
+            if (solver.value(state) != Tablebase.WIN || GameManager.winner(state) != -1) return;
+            if (!GameManager.hasLegalMove(state, state.playerTurn)) return; // won on stones
+            boolean found = false;
+            int count = Solver.children(state, scratch, children);
+            for (int c = 0; c < count; c++) {
+                Tablebase.decode(children[c], child);
+                int value = solver.value(child);
+                found |= child.playerTurn == state.playerTurn ? value == Tablebase.WIN : value == Tablebase.LOSS;
+            }
+            assertTrue(found);
+        });
+    }
+
+    @Test
+    public void testAgreesWithSearchOnForcedResults() {
+        Search search = new Search(new TranspositionTable(1));
+        randomGames(20, 4, state -> {
+            int value = solver.value(state);
+            if (value == Tablebase.DRAW || GameManager.winner(state) != -1) return;
+            if (!GameManager.hasLegalMove(state, state.playerTurn)) return;
+            search.search(state, 10_000, 12);
+            if (Math.abs(search.score()) < Search.WIN - 2 * Search.MAX_DEPTH) return; // not proven within the depth
+            assertEquals(value == Tablebase.WIN, search.score() > 0);
+        });
+    }
+
+    @Test
+    public void testMappedTableMatchesSolver() throws IOException {
+        solver.write(file);
+        try (Tablebase table = Tablebase.open(file)) {
+            assertEquals(1, table.radius);
+            randomGames(50, 5, state -> assertEquals(solver.value(state), Tablebase.value(table.probe(state))));
+            assertEquals(0, table.probe(new GameState(2)));
+        }
+    }
+
+    @Test
+    public void testSearchUsesTablebase() throws IOException {
+        solver.write(file);
+        try (Tablebase table = Tablebase.open(file)) {
+            Search search = new Search(new TranspositionTable(1));
+            search.setTablebase(table);
+            GameState state = new GameState(1);
+            MoveResult move = search.search(state, 1000, 2);
+
+            GameState after = new GameState(1);
+            after.copyFrom(state);
+            GameManager.apply(after, move);
+            int value = solver.value(state);
+            int reached = solver.value(after);
+            if (value == Tablebase.WIN) assertEquals(Tablebase.LOSS, reached);
+            if (value == Tablebase.DRAW) assertEquals(Tablebase.DRAW, reached);
+        }
+    }
+
+    @Test
+    public void testRejectsBoardsTooLargeToPack() {
+        assertThrows(IllegalArgumentException.class, () -> new Solver(3, 1));
+    }
+
+    @Test
+    public void testPositionLimitIsCheckedBeforeAllocating() {
+        assertEquals(1 << 30, Solver.capacityLimit(Long.MAX_VALUE));
+        assertEquals(1 << 26, Solver.capacityLimit(1L << 30));
+        assertEquals(1 << 25, Solver.capacityLimit((1L << 30) - 1));
+
+        Solver.PositionSet set = new Solver.PositionSet(4, 16);
+        for (long position = 0; position < 7; position++) assertTrue(set.add(position));
+        assertFalse(set.add(3));
+        assertTrue(set.add(7));
+        assertEquals(16, set.keys.length);
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> set.add(8));
+        assertTrue(e.getMessage().contains("-Xmx"));
+        assertEquals(16, set.keys.length);
+    }
+
+    @Test
+    public void testRadius2ResultsFollowFromTheirMoves() throws IOException {
+        Solver.PositionSet set = new Solver.PositionSet(1 << 7, 1 << 7);
+        for (long[] entries : new long[][] {RADIUS_2_POSITIONS, RADIUS_2_CHILDREN}) {
+            for (long entry : entries) set.add((entry >>> 16) - 1);
+        }
+        byte[] values = new byte[set.keys.length];
+        short[] distances = new short[set.keys.length];
+        for (long[] entries : new long[][] {RADIUS_2_POSITIONS, RADIUS_2_CHILDREN}) {
+            for (long entry : entries) {
+                int slot = set.indexOf((entry >>> 16) - 1);
+                values[slot] = (byte) Tablebase.value(entry);
+                distances[slot] = (short) Tablebase.distance(entry);
+            }
+        }
+        Solver.write(file, 2, set.keys, values, distances);
+
+        Search search = new Search(new TranspositionTable(1));
+        try (Tablebase table = Tablebase.open(file)) {
+            assertEquals(2, table.radius);
+            assertEquals(RADIUS_2_POSITIONS[0], table.probe(new GameState(2)));
+            GameState state = new GameState(2);
+            GameState scratch = new GameState(2);
+            GameState child = new GameState(2);
+            long[] children = new long[state.topology.cellCount];
+            for (long entry : RADIUS_2_POSITIONS) {
+                Tablebase.decode((entry >>> 16) - 1, state);
+                assertEquals(entry, table.probe(state));
+
+                // The value and distance a retrograde pass gives the position from its moves' entries
+                int count = Solver.children(state, scratch, children);
+                int shortestWin = Integer.MAX_VALUE;
+                int longestLoss = 0;
+                boolean allLost = count > 0;
+                for (int c = 0; c < count; c++) {
+                    Tablebase.decode(children[c], child);
+                    long reached = table.probe(child);
+                    assertNotEquals(0, reached);
+                    int value = Tablebase.value(reached);
+                    if (child.playerTurn != state.playerTurn && value != Tablebase.DRAW) {
+                        value = value == Tablebase.WIN ? Tablebase.LOSS : Tablebase.WIN;
+                    }
+                    if (value == Tablebase.WIN) shortestWin = Math.min(shortestWin, Tablebase.distance(reached) + 1);
+                    if (value != Tablebase.LOSS) allLost = false;
+                    longestLoss = Math.max(longestLoss, Tablebase.distance(reached) + 1);
+                }
+                if (shortestWin != Integer.MAX_VALUE) {
+                    assertEquals(Tablebase.WIN, Tablebase.value(entry));
+                    assertEquals(shortestWin, Tablebase.distance(entry));
+                } else {
+                    assertTrue(allLost);
+                    assertEquals(Tablebase.LOSS, Tablebase.value(entry));
+                    assertEquals(longestLoss, Tablebase.distance(entry));
+                }
+
+                if (Tablebase.distance(entry) > 10 || !GameManager.hasLegalMove(state, state.playerTurn)) continue;
+                search.search(state, 10_000, 12);
+                assertTrue(Math.abs(search.score()) >= Search.WIN - 2 * Search.MAX_DEPTH);
+                assertEquals(Tablebase.value(entry) == Tablebase.WIN, search.score() > 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,257 @@
+/**
+ * Keeps the groups of connected stones on a board up to date as stones are placed and captured.
+ * Groups are stored as a union-find forest with the size kept at each root, and every group's stones form a
+ * circular linked list, so placing a stone merges in near-constant time and a captured group is dissolved
+ * in time proportional to its size. Capture checks then only compare stored sizes.
+ */
+public final class StoneGroups {
+    private final BoardTopology topology;
+    private final int[] parent;
+    private final int[] size;
+    private final int[] next; // circular list of the stones in each group
+
+    public StoneGroups(BoardTopology topology) {
+        this.topology = topology;
+        this.parent = new int[topology.cellCount];
+        this.size = new int[topology.cellCount];
+        this.next = new int[topology.cellCount];
+        clear();
+    }
+
+    /**
+     * Forgets every group, leaving each cell as its own empty singleton.
+     */
+    public void clear() {
+        for (int i = 0; i < parent.length; i++) {
+            parent[i] = i;
+            size[i] = 1;
+            next[i] = i;
+        }
+    }
+
+    /**
+     * Makes these groups an exact copy of another set of groups on the same board.
+     *
+     * @param other the groups to copy
+     */
+    public void copyFrom(StoneGroups other) {
+        System.arraycopy(other.parent, 0, parent, 0, parent.length);
+        System.arraycopy(other.size, 0, size, 0, size.length);
+        System.arraycopy(other.next, 0, next, 0, next.length);
+    }
+
+    /**
+     * Finds the root of the group a stone belongs to, halving the path on the way.
+     *
+     * @param cell the cell holding the stone
+     * @return the root cell of its group
+     */
+    public int find(int cell) {
+        while (parent[cell] != cell) {
+            parent[cell] = parent[parent[cell]];
+            cell = parent[cell];
+        }
+        return cell;
+    }
+
+    /**
+     * Finds the root of the group a stone belongs to without changing the forest, so it is safe to call
+     * from several threads while no one is placing or removing stones.
+     *
+     * @param cell the cell holding the stone
+     * @return the root cell of its group
+     */
+    public int root(int cell) {
+        while (parent[cell] != cell) {
+            cell = parent[cell];
+        }
+        return cell;
+    }
+
+    /**
+     * @return the number of stones in the group containing the cell
+     */
+    public int size(int cell) {
+        return size[find(cell)];
+    }
+
+    /**
+     * Steps to the next stone of the same group. Starting at any stone and following this until it returns
+     * to the start visits the whole group once.
+     *
+     * @param cell the current stone
+     * @return the next stone of the group
+     */
+    public int next(int cell) {
+        return next[cell];
+    }
+
+    /**
+     * Joins a newly placed stone with every adjacent group of its colour.
+     *
+     * @param cell the cell the stone was placed on
+     * @param sameColour the stones of the placed colour
+     */
+    public void add(int cell, Bitboard sameColour) {
+        for (int n : topology.neighbours(cell)) {
+            if (sameColour.get(n)) {
+                union(cell, n);
+            }
+        }
+    }
+
+    /**
+     * Dissolves the group containing the cell after its stones were taken off the board.
+     *
+     * @param cell any stone of the group
+     */
+    public void removeGroup(int cell) {
+        int stone = cell;
+        do {
+            int following = next[stone];
+            parent[stone] = stone;
+            size[stone] = 1;
+            next[stone] = stone;
+            stone = following;
+        } while (stone != cell);
+    }
+
+    /**
+     * Takes a single stone out of its group and regroups whatever is left of the group around it.
+     *
+     * @param cell the cell of the removed stone
+     * @param sameColour the stones of that colour, no longer including the removed one
+     */
+    public void remove(int cell, Bitboard sameColour) {
+        removeGroup(cell);
+        FloodFill fill = topology.floodFill();
+        fill.reset();
+        for (int n : topology.neighbours(cell)) {
+            if (sameColour.get(n)) {
+                linkRange(fill, fill.append(n, sameColour));
+            }
+        }
+    }
+
+    /**
+     * Discards every group and rebuilds them from scratch for the given position.
+     *
+     * @param red the red stones
+     * @param blue the blue stones
+     */
+    public void rebuild(Bitboard red, Bitboard blue) {
+        clear();
+        FloodFill fill = topology.floodFill();
+        fill.reset();
+        for (int i = red.nextSetBit(0); i != -1; i = red.nextSetBit(i + 1)) {
+            linkRange(fill, fill.append(i, red));
+        }
+        for (int i = blue.nextSetBit(0); i != -1; i = blue.nextSetBit(i + 1)) {
+            linkRange(fill, fill.append(i, blue));
+        }
+    }
+
+    private void linkRange(FloodFill fill, int start) {
+        int[] cells = fill.cells();
+        for (int i = start + 1; i < fill.length(); i++) {
+            union(cells[start], cells[i]);
+        }
+    }
+
+    /**
+     * Works out which opponent groups a stone placed on the cell would capture, without changing the board.
+     * The placed stone joins every adjacent group of its own colour, and each opponent group touching that
+     * merged group is captured when it is strictly smaller. Only reads the groups, so several threads may
+     * call it at once on a position nobody is changing.
+     *
+     * @param cell the empty cell the stone would be placed on
+     * @param own the stones of the player placing
+     * @param opponent the stones of the other player
+     * @param captured receives the root of every captured group, may be null when only the count is needed
+     * @return the number of groups that would be captured
+     */
+    public int findCaptures(int cell, Bitboard own, Bitboard opponent, int[] captured) {
+        int[] adjacent = topology.neighbours(cell);
+        int mergedSize = 1;
+        for (int k = 0; k < adjacent.length; k++) {
+            if (isFirstOwnRoot(adjacent, k, own)) {
+                mergedSize += size[root(adjacent[k])];
+            }
+        }
+        if (mergedSize == 1) return 0; // a lone stone is never larger than a group it touches
+
+        FloodFill marks = topology.floodFill(); // the calling thread's stamps, one mark per opponent group
+        marks.reset();
+        int count = collectSmaller(cell, mergedSize, opponent, captured, 0, marks);
+        for (int k = 0; k < adjacent.length; k++) {
+            if (isFirstOwnRoot(adjacent, k, own)) {
+                int root = root(adjacent[k]);
+                int stone = root;
+                do {
+                    count = collectSmaller(stone, mergedSize, opponent, captured, count, marks);
+                    stone = next[stone];
+                } while (stone != root);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Finds the smallest opponent group touching a group, which decides whether growing the group captures.
+     *
+     * @param cell any stone of the group
+     * @param opponent the stones of the other colour
+     * @return the size of the smallest adjacent opponent group, or Integer.MAX_VALUE if none touches it
+     */
+    public int smallestAdjacent(int cell, Bitboard opponent) {
+        int smallest = Integer.MAX_VALUE;
+        int stone = cell;
+        do {
+            for (int n : topology.neighbours(stone)) {
+                if (opponent.get(n)) smallest = Math.min(smallest, size[find(n)]);
+            }
+            stone = next[stone];
+        } while (stone != cell);
+        return smallest;
+    }
+
+    // True when adjacent[k] is an own stone whose group did not already show up earlier in the list
+    private boolean isFirstOwnRoot(int[] adjacent, int k, Bitboard own) {
+        if (!own.get(adjacent[k])) return false;
+        int root = root(adjacent[k]);
+        for (int j = 0; j < k; j++) {
+            if (own.get(adjacent[j]) && root(adjacent[j]) == root) return false;
+        }
+        return true;
+    }
+
+    private int collectSmaller(int cell, int mergedSize, Bitboard opponent, int[] captured, int count, FloodFill marks) {
+        for (int n : topology.neighbours(cell)) {
+            if (opponent.get(n)) {
+                int root = root(n);
+                if (marks.mark(root) && size[root] < mergedSize) {
+                    if (captured != null) captured[count] = root;
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private void union(int a, int b) {
+        int rootA = find(a);
+        int rootB = find(b);
+        if (rootA == rootB) return;
+        if (size[rootA] < size[rootB]) {
+            int swap = rootA;
+            rootA = rootB;
+            rootB = swap;
+        }
+        parent[rootB] = rootA;
+        size[rootA] += size[rootB];
+        // Splice the two circular member lists together
+        int following = next[rootA];
+        next[rootA] = next[rootB];
+        next[rootB] = following;
+    }
+}
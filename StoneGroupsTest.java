@@ -0,0 +1,95 @@
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StoneGroupsTest {
+    private BoardTopology topology;
+    private Bitboard red;
+    private Bitboard blue;
+    private StoneGroups groups;
+
+    @Before
+    public void setup() {
+        topology = BoardTopology.forRadius(6);
+        red = new Bitboard(topology.cellCount);
+        blue = new Bitboard(topology.cellCount);
+        groups = new StoneGroups(topology);
+    }
+
+    private int place(Bitboard stones, int q, int r) {
+        int cell = topology.index(q, r);
+        stones.set(cell);
+        groups.add(cell, stones);
+        return cell;
+    }
+
+    @Test
+    public void testPlacementMergesGroups() {
+        int a = place(red, 0, 0);
+        int b = place(red, 2, 0);
+        assertEquals(1, groups.size(a));
+        assertNotEquals(groups.find(a), groups.find(b));
+
+        place(red, 1, 0);
+        assertEquals(3, groups.size(a));
+        assertEquals(groups.find(a), groups.find(b));
+    }
+
+    @Test
+    public void testMemberListVisitsWholeGroup() {
+        int a = place(red, 0, 0);
+        place(red, 1, 0);
+        place(red, 1, -1);
+
+        int count = 0;
+        int stone = a;
+        do {
+            assertTrue(red.get(stone));
+            count++;
+            stone = groups.next(stone);
+        } while (stone != a);
+        assertEquals(3, count);
+    }
+
+    @Test
+    public void testRemoveGroupDissolvesIt() {
+        int a = place(blue, 0, 0);
+        int b = place(blue, 1, 0);
+        blue.clear(a);
+        blue.clear(b);
+        groups.removeGroup(a);
+
+        assertEquals(1, groups.size(a));
+        assertEquals(1, groups.size(b));
+    }
+
+    @Test
+    public void testRemoveSplitsRemainingStones() {
+        int a = place(red, -1, 0);
+        int middle = place(red, 0, 0);
+        int b = place(red, 1, 0);
+
+        red.clear(middle);
+        groups.remove(middle, red);
+
+        assertEquals(1, groups.size(a));
+        assertEquals(1, groups.size(b));
+    }
+
+    @Test
+    public void testFindCapturesComparesMergedSize() {
+        place(red, 1, -1);
+        place(red, 1, 0);
+        int blueStone = place(blue, 0, 0);
+        place(blue, 3, -1);
+        place(blue, 4, -1);
+
+        int[] captured = new int[topology.cellCount];
+        int count = groups.findCaptures(topology.index(0, -1), red, blue, captured);
+
+        assertEquals(1, count);
+        assertEquals(groups.find(blueStone), captured[0]);
+        assertEquals(0, groups.findCaptures(topology.index(-3, 0), red, blue, null));
+    }
+}
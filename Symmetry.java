@@ -0,0 +1,55 @@
+/**
+ * The twelve symmetries of a hexagonal board: six rotations about the centre cell, each with or without a
+ * reflection. Every transform is kept as a precomputed cell permutation, so moving a position or a move between
+ * equivalent boards is one array lookup per cell. Positions related by a transform have the same game value, so
+ * engines store them once under a canonical representative: the transform that gives the smallest key.
+ * One instance is built per BoardTopology and shared.
+ */
+public final class Symmetry {
+    public static final int COUNT = 12;
+    public static final int IDENTITY = 0;
+
+    private final int[][] forward; // transform -> cell -> image cell
+    private final int[][] inverse; // transform -> image cell -> cell
+
+    Symmetry(BoardTopology topology) {
+        int cells = topology.cellCount;
+        forward = new int[COUNT][cells];
+        inverse = new int[COUNT][cells];
+        for (int t = 0; t < COUNT; t++) {
+            for (int cell = 0; cell < cells; cell++) {
+                int q = topology.q(cell);
+                int r = topology.r(cell);
+                int s = topology.s(cell);
+                if (t >= 6) { // reflect across the q axis by swapping r and s
+                    int swap = r;
+                    r = s;
+                    s = swap;
+                }
+                for (int k = 0; k < t % 6; k++) { // rotate 60 degrees: (q, r, s) -> (-r, -s, -q)
+                    int oldQ = q;
+                    q = -r;
+                    r = -s;
+                    s = -oldQ;
+                }
+                int image = topology.index(q, r);
+                forward[t][cell] = image;
+                inverse[t][image] = cell;
+            }
+        }
+    }
+
+    /**
+     * @return the cell a transform moves the given cell to
+     */
+    public int map(int transform, int cell) {
+        return forward[transform][cell];
+    }
+
+    /**
+     * @return the cell a transform moves to the given cell, undoing map
+     */
+    public int unmap(int transform, int cell) {
+        return inverse[transform][cell];
+    }
+}
@@ -0,0 +1,103 @@
+import org.junit.Test;
+
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SymmetryTest {
+    private final BoardTopology topology = BoardTopology.forRadius(3);
+    private final Symmetry symmetry = topology.symmetry;
+
+    @Test
+    public void testTransformsArePermutationsThatKeepAdjacency() {
+        for (int t = 0; t < Symmetry.COUNT; t++) {
+            HashSet<Integer> images = new HashSet<>();
+            for (int cell = 0; cell < topology.cellCount; cell++) {
+                int image = symmetry.map(t, cell);
+                images.add(image);
+                assertEquals(cell, symmetry.unmap(t, image));
+                for (int n : topology.neighbours(cell)) {
+                    boolean adjacent = false;
+                    for (int m : topology.neighbours(image)) adjacent |= m == symmetry.map(t, n);
+                    assertTrue(adjacent);
+                }
+            }
+            assertEquals(topology.cellCount, images.size());
+        }
+    }
+
+    @Test
+    public void testTransformsAreDistinct() {
+        HashSet<String> seen = new HashSet<>();
+        int corner = topology.index(3, -1);
+        for (int t = 0; t < Symmetry.COUNT; t++) {
+            seen.add(symmetry.map(t, corner) + "," + symmetry.map(t, topology.index(1, 0)));
+        }
+        assertEquals(Symmetry.COUNT, seen.size());
+        assertEquals(topology.index(0, 0), symmetry.map(5, topology.index(0, 0)));
+    }
+
+    @Test
+    public void testSymmetricPositionsShareCanonicalKey() {
+        int[] red = {topology.index(1, 0), topology.index(2, -1), topology.index(-3, 3)};
+        int[] blue = {topology.index(0, 0), topology.index(0, 2)};
+        GameState original = new GameState(3);
+        place(original, red, blue, Symmetry.IDENTITY);
+        for (int t = 0; t < Symmetry.COUNT; t++) {
+            GameState image = new GameState(3);
+            place(image, red, blue, t);
+            assertEquals(original.canonicalKey(), image.canonicalKey());
+            assertEquals(original.symmetricKey(t), image.key());
+        }
+
+        GameState different = new GameState(3);
+        place(different, new int[] {topology.index(1, 0), topology.index(2, -1), topology.index(-2, 3)}, blue, 0);
+        assertNotEquals(original.canonicalKey(), different.canonicalKey());
+    }
+
+    @Test
+    public void testCanonicalKeyFollowsCapturesAndTurn() {
+        GameState state = new GameState(3);
+        GameManager.placeStone(state, state.hexAt(0, 0, 0), Colour.BLUE);
+        GameManager.placeStone(state, state.hexAt(1, -1, 0), Colour.RED);
+        GameManager.placeStone(state, state.hexAt(1, 0, -1), Colour.RED);
+        state.move = 2;
+        state.isStartOfGame = false;
+        long before = state.canonicalKey();
+
+        GameManager.apply(state, GameManager.evaluate(state, topology.index(0, 1), Colour.RED));
+
+        GameState rebuilt = new GameState(3);
+        for (int cell = 0; cell < topology.cellCount; cell++) {
+            if (state.colourAt(cell) != Colour.WHITE) rebuilt.setStone(cell, state.colourAt(cell));
+        }
+        rebuilt.playerTurn = state.playerTurn;
+        assertEquals(rebuilt.canonicalKey(), state.canonicalKey());
+        assertNotEquals(before, state.canonicalKey());
+        rebuilt.playerTurn = Colour.BLUE;
+        assertNotEquals(rebuilt.canonicalKey(), state.canonicalKey());
+    }
+
+    @Test
+    public void testSearchSharesTableEntriesAcrossSymmetry() {
+        TranspositionTable table = new TranspositionTable(1);
+        Search search = new Search(table);
+        GameState state = new GameState(3);
+        place(state, new int[] {topology.index(2, 0)}, new int[] {topology.index(-1, 0)}, 0);
+        state.move = 2;
+        state.isStartOfGame = false;
+        search.search(state, 10_000, 3);
+
+        GameState image = new GameState(3);
+        place(image, new int[] {symmetry.map(7, topology.index(2, 0))}, new int[] {symmetry.map(7, topology.index(-1, 0))}, 0);
+        long entry = table.probe(image.canonicalKey());
+        assertNotEquals(TranspositionTable.MISS, entry);
+        int move = symmetry.unmap(image.canonicalTransform(), TranspositionTable.move(entry));
+        assertTrue(GameManager.isLegal(image, move, Colour.RED));
+    }
+
+    private void place(GameState state, int[] red, int[] blue, int transform) {
+        for (int cell : red) GameManager.placeStone(state, state.hexs().get(symmetry.map(transform, cell)), Colour.RED);
+        for (int cell : blue) GameManager.placeStone(state, state.hexs().get(symmetry.map(transform, cell)), Colour.BLUE);
+    }
+}
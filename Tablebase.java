@@ -0,0 +1,152 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+/**
+ * Read-only table of exact game values for every reachable position of a small board, as written by Solver.
+ * The file is memory-mapped rather than read, so opening it costs nothing on the heap and the operating system pages
+ * in only the slots that are probed. Positions are packed into a long, two bits per cell plus the side to move, and
+ * found by open addressing with linear probing, so a probe is O(1) on average. Only the canonical image of each
+ * position under the board symmetries is stored.
+ *
+ * File layout: a 32-byte header (magic, version, radius, slot count) followed by one 8-byte slot per table entry.
+ * A slot holds (position + 1) << 16 | distance << 2 | value, or 0 when empty.
+ */
+public final class Tablebase implements AutoCloseable {
+    public static final int UNKNOWN = 0;
+    public static final int WIN = 1; // for the player to move
+    public static final int LOSS = 2;
+    public static final int DRAW = 3;
+
+    static final int MAGIC = 0x48585442; // "HXTB"
+    static final int VERSION = 2;
+    static final int HEADER_BYTES = 32;
+    static final int MAX_DISTANCE = (1 << 14) - 1;
+    private static final int SEGMENT_SHIFT = 27; // slots per mapped segment, keeping each under 2 GB
+
+    public final int radius;
+    private final BoardTopology topology;
+    private final RandomAccessFile file;
+    private final MappedByteBuffer[] segments;
+    private final long mask;
+
+    private Tablebase(Path path) throws IOException {
+        file = new RandomAccessFile(path.toFile(), "r");
+        FileChannel channel = file.getChannel();
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            file.close();
+            throw new IOException(path + " is not a HexOust tablebase");
+        }
+        radius = header.getInt(8);
+        long slots = header.getLong(16);
+        topology = BoardTopology.forRadius(radius);
+        mask = slots - 1;
+
+        int count = (int) ((slots + (1L << SEGMENT_SHIFT) - 1) >>> SEGMENT_SHIFT);
+        segments = new MappedByteBuffer[count];
+        for (int s = 0; s < count; s++) {
+            long first = (long) s << SEGMENT_SHIFT;
+            long length = Math.min(1L << SEGMENT_SHIFT, slots - first) * 8;
+            segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + first * 8, length);
+        }
+    }
+
+    /**
+     * Maps a tablebase file into memory.
+     *
+     * @param path the file written by Solver
+     * @return the opened table
+     */
+    public static Tablebase open(Path path) throws IOException {
+        return new Tablebase(path);
+    }
+
+    /**
+     * Looks up a position.
+     *
+     * @param state a game on a board of this table's radius
+     * @return the packed entry, to be read with value and distance, or 0 if the position is not in the table
+     */
+    public long probe(GameState state) {
+        if (state.topology != topology) return 0;
+        long position = encode(state);
+        long wanted = position + 1;
+        for (long slot = slot(position, mask); ; slot = (slot + 1) & mask) {
+            long entry = segments[(int) (slot >>> SEGMENT_SHIFT)].getLong((int) (slot & ((1L << SEGMENT_SHIFT) - 1)) * 8);
+            if (entry == 0) return 0;
+            if (entry >>> 16 == wanted) return entry;
+        }
+    }
+
+    /**
+     * @return WIN, LOSS or DRAW for the player to move
+     */
+    public static int value(long entry) {
+        return (int) entry & 3;
+    }
+
+    /**
+     * @return the number of moves to the end of the game with best play, or 0 for a draw
+     */
+    public static int distance(long entry) {
+        return (int) (entry >>> 2) & MAX_DISTANCE;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    /**
+     * Packs a position into a long: two bits per cell holding its colour, then one bit for blue to move.
+     * Of the twelve symmetric images of the position the smallest packing is used, so equivalent positions share it.
+     * Only boards of at most 23 cells fit a slot, which is radius 2 and below.
+     */
+    static long encode(GameState state) {
+        int cells = state.topology.cellCount;
+        Symmetry symmetry = state.topology.symmetry;
+        long side = state.playerTurn == Colour.BLUE ? 1L << (2 * cells) : 0;
+        long best = Long.MAX_VALUE;
+        for (int t = 0; t < Symmetry.COUNT; t++) {
+            long position = side;
+            for (int cell = 0; cell < cells; cell++) {
+                position |= (long) state.colourAt(cell) << (2 * symmetry.map(t, cell));
+            }
+            best = Math.min(best, position);
+        }
+        return best;
+    }
+
+    /**
+     * Sets a game to a packed position, with its move count worked out by GameState.inferOpening.
+     */
+    static void decode(long position, GameState state) {
+        int cells = state.topology.cellCount;
+        state.reset();
+        for (int cell = 0; cell < cells; cell++) {
+            int colour = (int) (position >>> (2 * cell)) & 3;
+            if (colour != Colour.WHITE) state.setStone(cell, colour);
+        }
+        state.groups.rebuild(state.redStones, state.blueStones);
+        state.playerTurn = (position >>> (2 * cells) & 1) != 0 ? Colour.BLUE : Colour.RED;
+        state.inferOpening();
+    }
+
+    /**
+     * @return the first slot to probe for a position in a table of mask + 1 slots
+     */
+    static long slot(long position, long mask) {
+        long h = position * 0x9E3779B97F4A7C15L;
+        return (h ^ (h >>> 29)) & mask;
+    }
+
+    /**
+     * @return true if positions of the board pack into 48 bits, leaving 16 bits of a slot for the value
+     */
+    static boolean fits(BoardTopology topology) {
+        return 2 * topology.cellCount + 1 <= 48;
+    }
+}
@@ -5,7 +5,24 @@ import org.junit.runners.Suite;
 @Suite.SuiteClasses({
         GameManagerTest.class,
         FrontEndTest.class,
-        HexCubeTest.class
+        HexCubeTest.class,
+        BoardTopologyTest.class,
+        StoneGroupsTest.class,
+        FloodFillTest.class,
+        TranspositionTableTest.class,
+        SearchTest.class,
+        MonteCarloSearchTest.class,
+        ComputerPlayerTest.class,
+        TournamentTest.class,
+        SolverTest.class,
+        OpeningBookTest.class,
+        SymmetryTest.class,
+        BatchEvaluatorTest.class,
+        TunerTest.class,
+        HexOustServerTest.class,
+        MoveJournalTest.class,
+        GameRecordingTest.class,
+        PositionStoreTest.class
 })
 public class TestSuite {
 }
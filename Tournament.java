@@ -0,0 +1,394 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Headless engine-vs-engine match runner, with no JavaFX involved.
+ * Games run concurrently on a fixed pool of threads, each with its own engines. Every opening is a seeded sequence
+ * of random legal moves played twice with the colours swapped, so a run with the same seed and depth-limited
+ * engines is reproducible. Each finished game is written as one line to the output as soon as it ends, and the
+ * summary reports games per second, the Elo difference of engine A over engine B with a 95% confidence interval,
+ * and the latency percentiles of each engine's moves.
+ *
+ * Usage: java Tournament [--a=alphabeta|mcts|random] [--b=...] [--games=N] [--threads=N] [--radius=R]
+ * [--millis=MS] [--depth=D] [--openings=PLIES] [--seed=S] [--book=FILE] [--weights=FILE] [--out=FILE]
+ * With --book, alphabeta engines play from the opening book while the position is in it.
+ * An engine named alphabeta:FILE is an alphabeta engine scoring positions with the weights in FILE, and
+ * --weights=FILE sets the weights of plain alphabeta engines.
+ */
+public class Tournament {
+    public final String engineA;
+    public final String engineB;
+    public final int games;
+    public final int threads;
+    public final int radius;
+    public final long millis;
+    public final int depth;
+    public final int openingPlies;
+    public final long seed;
+    private OpeningBook book;
+    private EvalWeights weights = EvalWeights.DEFAULT;
+    private long lastElapsedNanos;
+
+    /**
+     * Picks moves for one side of a game. An instance is used by one thread at a time.
+     */
+    interface Engine {
+        MoveResult choose(GameState state);
+
+        /** Forgets anything learned in earlier games, so a game does not depend on which thread plays it. */
+        default void newGame() {
+        }
+
+        default void close() {
+        }
+    }
+
+    /**
+     * The outcome of one game, written to the output stream as one line.
+     */
+    static final class GameRecord {
+        final int game;
+        final String red;
+        final String blue;
+        final int winner; // Colour.RED, Colour.BLUE or Colour.WHITE for a draw
+        final int moves;
+        final long[] latencyA; // nanoseconds per move of engine A
+        final long[] latencyB;
+
+        GameRecord(int game, String red, String blue, int winner, int moves, long[] latencyA, long[] latencyB) {
+            this.game = game;
+            this.red = red;
+            this.blue = blue;
+            this.winner = winner;
+            this.moves = moves;
+            this.latencyA = latencyA;
+            this.latencyB = latencyB;
+        }
+
+        /**
+         * @return 1 if engine A won, 0.5 for a draw, 0 if it lost
+         */
+        double scoreA() {
+            if (winner == Colour.WHITE) return 0.5;
+            boolean aIsRed = game % 2 == 0;
+            return (winner == Colour.RED) == aIsRed ? 1 : 0;
+        }
+
+        @Override
+        public String toString() {
+            String result = winner == Colour.RED ? "red" : winner == Colour.BLUE ? "blue" : "draw";
+            return "game=" + game + " red=" + red + " blue=" + blue + " winner=" + result + " moves=" + moves;
+        }
+    }
+
+    public Tournament(String engineA, String engineB, int games, int threads, int radius, long millis, int depth,
+                      int openingPlies, long seed) {
+        this.engineA = engineA;
+        this.engineB = engineB;
+        this.games = games;
+        this.threads = threads;
+        this.radius = radius;
+        this.millis = millis;
+        this.depth = depth;
+        this.openingPlies = openingPlies;
+        this.seed = seed;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String a = "alphabeta";
+        String b = "random";
+        int games = 100;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int radius = GameState.DEFAULT_RADIUS;
+        long millis = 50;
+        int depth = Search.MAX_DEPTH;
+        int openings = 4;
+        long seed = 1;
+        String out = null;
+        String book = null;
+        String weights = null;
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            if (option.length != 2) throw new IllegalArgumentException("expected --name=value: " + arg);
+            switch (option[0]) {
+                case "--a": a = option[1]; break;
+                case "--b": b = option[1]; break;
+                case "--games": games = Integer.parseInt(option[1]); break;
+                case "--threads": threads = Integer.parseInt(option[1]); break;
+                case "--radius": radius = Integer.parseInt(option[1]); break;
+                case "--millis": millis = Long.parseLong(option[1]); break;
+                case "--depth": depth = Integer.parseInt(option[1]); break;
+                case "--openings": openings = Integer.parseInt(option[1]); break;
+                case "--seed": seed = Long.parseLong(option[1]); break;
+                case "--book": book = option[1]; break;
+                case "--weights": weights = option[1]; break;
+                case "--out": out = option[1]; break;
+                default: throw new IllegalArgumentException("unknown option " + option[0]);
+            }
+        }
+
+        Tournament tournament = new Tournament(a, b, games, threads, radius, millis, depth, openings, seed);
+        if (book != null) tournament.useBook(OpeningBook.open(Paths.get(book)));
+        if (weights != null) tournament.useWeights(EvalWeights.load(Paths.get(weights)));
+        try (Writer writer = out == null ? new OutputStreamWriter(System.out) : new FileWriter(out)) {
+            List<GameRecord> records = tournament.run(writer);
+            writer.flush();
+            System.out.println(tournament.summary(records));
+        }
+    }
+
+    /**
+     * Lets the alphabeta engines play book moves. Call before run.
+     *
+     * @param book the opening book, or null to search every move
+     */
+    public void useBook(OpeningBook book) {
+        this.book = book;
+    }
+
+    /**
+     * Sets the weights plain alphabeta engines score positions with. Call before run.
+     *
+     * @param weights the evaluation weights
+     */
+    public void useWeights(EvalWeights weights) {
+        this.weights = weights;
+    }
+
+    /**
+     * Plays every game, writing each result line as soon as its game ends.
+     *
+     * @param out receives one line per game, in the order games finish
+     * @return the records of all games, in game order
+     */
+    public List<GameRecord> run(Writer out) throws Exception {
+        long start = System.nanoTime();
+        PrintWriter lines = new PrintWriter(out, true);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        ThreadLocal<Engine[]> engines = new ThreadLocal<>();
+        List<Engine[]> created = new ArrayList<>();
+
+        List<Future<GameRecord>> futures = new ArrayList<>();
+        for (int g = 0; g < games; g++) {
+            int game = g;
+            futures.add(pool.submit(() -> {
+                Engine[] pair = engines.get(); // each pool thread builds its own engines on first use
+                if (pair == null) {
+                    pair = new Engine[] {createEngine(engineA), createEngine(engineB)};
+                    engines.set(pair);
+                    synchronized (created) {
+                        created.add(pair);
+                    }
+                }
+                GameRecord record = play(game, pair[0], pair[1]);
+                synchronized (lines) {
+                    lines.println(record);
+                }
+                return record;
+            }));
+        }
+
+        List<GameRecord> records = new ArrayList<>();
+        try {
+            for (Future<GameRecord> future : futures) records.add(future.get());
+        } finally {
+            pool.shutdown();
+            for (Engine[] pair : created) {
+                pair[0].close();
+                pair[1].close();
+            }
+        }
+        lastElapsedNanos = System.nanoTime() - start;
+        return records;
+    }
+
+    /**
+     * Plays one game from its seeded opening. Even games give engine A red, odd games give it blue, and both games
+     * of a pair share an opening.
+     */
+    GameRecord play(int game, Engine a, Engine b) {
+        GameState state = new GameState(radius);
+        playOpening(state, new SplittableRandom(seed * 1_000_003L + game / 2));
+        boolean aIsRed = game % 2 == 0;
+        long[] latencyA = new long[64];
+        long[] latencyB = new long[64];
+        int countA = 0;
+        int countB = 0;
+
+        a.newGame();
+        b.newGame();
+        int limit = 4 * state.topology.cellCount;
+        int moves = 0;
+        int winner = -1;
+        while (moves < limit) {
+            winner = GameManager.winner(state);
+            if (winner != -1) break;
+            int player = state.playerTurn;
+            int opponent = player == Colour.RED ? Colour.BLUE : Colour.RED;
+            if (!GameManager.hasLegalMove(state, player)) {
+                if (!GameManager.hasLegalMove(state, opponent)) break;
+                GameManager.setPlayerTurn(state, opponent);
+                continue;
+            }
+
+            boolean aToMove = (player == Colour.RED) == aIsRed;
+            long before = System.nanoTime();
+            MoveResult move = (aToMove ? a : b).choose(state);
+            long latency = System.nanoTime() - before;
+            if (aToMove) {
+                if (countA == latencyA.length) latencyA = Arrays.copyOf(latencyA, countA * 2);
+                latencyA[countA++] = latency;
+            } else {
+                if (countB == latencyB.length) latencyB = Arrays.copyOf(latencyB, countB * 2);
+                latencyB[countB++] = latency;
+            }
+            GameManager.apply(state, GameManager.evaluate(state, move.cell, player));
+            moves++;
+        }
+        if (winner == -1) {
+            int difference = state.stoneCount(Colour.RED) - state.stoneCount(Colour.BLUE);
+            winner = difference > 0 ? Colour.RED : difference < 0 ? Colour.BLUE : Colour.WHITE;
+        }
+        return new GameRecord(game, aIsRed ? engineA : engineB, aIsRed ? engineB : engineA, winner, moves,
+                Arrays.copyOf(latencyA, countA), Arrays.copyOf(latencyB, countB));
+    }
+
+    private void playOpening(GameState state, SplittableRandom random) {
+        for (int ply = 0; ply < openingPlies; ply++) {
+            Bitboard legal = GameManager.legalMoves(state, state.playerTurn);
+            if (legal.isEmpty()) return;
+            int cell = legal.nthSetBit(random.nextInt(legal.cardinality()));
+            GameManager.apply(state, GameManager.evaluate(state, cell, state.playerTurn));
+        }
+    }
+
+    private Engine createEngine(String name) {
+        if (name.startsWith("alphabeta:")) {
+            try {
+                return alphaBeta(EvalWeights.load(Paths.get(name.substring("alphabeta:".length()))));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        switch (name) {
+            case "alphabeta":
+                return alphaBeta(weights);
+            case "mcts": {
+                MonteCarloSearch search = new MonteCarloSearch(1);
+                return new Engine() {
+                    public MoveResult choose(GameState state) {
+                        return search.search(state, Long.MAX_VALUE, millis);
+                    }
+
+                    public void close() {
+                        search.shutdown();
+                    }
+                };
+            }
+            case "random":
+                return state -> {
+                    // Seeded by the position, so the same position always gets the same move
+                    SplittableRandom random = new SplittableRandom(seed ^ state.key());
+                    Bitboard legal = GameManager.legalMoves(state, state.playerTurn);
+                    return GameManager.evaluate(state, legal.nthSetBit(random.nextInt(legal.cardinality())), state.playerTurn);
+                };
+            default:
+                throw new IllegalArgumentException("unknown engine " + name);
+        }
+    }
+
+    // Depth- and time-limited alpha-beta with its own table, cleared every game
+    private Engine alphaBeta(EvalWeights weights) {
+        TranspositionTable table = new TranspositionTable(16);
+        Search search = new Search(table);
+        search.setWeights(weights);
+        return new Engine() {
+            public MoveResult choose(GameState state) {
+                MoveResult move = book == null ? null : book.probe(state);
+                return move != null ? move : search.search(state, millis, depth);
+            }
+
+            public void newGame() {
+                table.clear();
+            }
+        };
+    }
+
+    /**
+     * Describes a finished run: throughput, the Elo estimate and the move latencies of both engines.
+     */
+    String summary(List<GameRecord> records) {
+        long elapsedNanos = lastElapsedNanos;
+        int n = records.size();
+        double total = 0;
+        int wins = 0, draws = 0, losses = 0;
+        for (GameRecord record : records) {
+            double score = record.scoreA();
+            total += score;
+            if (score == 1) wins++; else if (score == 0) losses++; else draws++;
+        }
+        double mean = n == 0 ? 0.5 : total / n;
+        double variance = 0;
+        for (GameRecord record : records) {
+            variance += (record.scoreA() - mean) * (record.scoreA() - mean);
+        }
+        double error = n < 2 ? 0 : Math.sqrt(variance / (n - 1) / n);
+
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("%s vs %s: +%d =%d -%d in %d games, %.2f games/sec%n",
+                engineA, engineB, wins, draws, losses, n, n * 1e9 / Math.max(1, elapsedNanos)));
+        text.append(String.format("Elo %+.1f, 95%% interval [%+.1f, %+.1f]%n",
+                elo(mean), elo(mean - 1.96 * error), elo(mean + 1.96 * error)));
+        text.append(latencyLine(engineA + " (A)", records, true));
+        text.append(latencyLine(engineB + " (B)", records, false));
+        return text.toString();
+    }
+
+    private static String latencyLine(String name, List<GameRecord> records, boolean engineA) {
+        int count = 0;
+        for (GameRecord record : records) count += (engineA ? record.latencyA : record.latencyB).length;
+        long[] all = new long[count];
+        int i = 0;
+        for (GameRecord record : records) {
+            long[] latency = engineA ? record.latencyA : record.latencyB;
+            System.arraycopy(latency, 0, all, i, latency.length);
+            i += latency.length;
+        }
+        Arrays.sort(all);
+        return String.format("%s move latency ms: p50 %.2f  p90 %.2f  p99 %.2f  max %.2f  (%d moves)%n", name,
+                percentile(all, 50) / 1e6, percentile(all, 90) / 1e6, percentile(all, 99) / 1e6,
+                percentile(all, 100) / 1e6, count);
+    }
+
+    /**
+     * @return the value below which the given percentage of the sorted values fall, by nearest rank
+     */
+    static long percentile(long[] sorted, double percent) {
+        if (sorted.length == 0) return 0;
+        int rank = (int) Math.ceil(percent / 100 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+
+    /**
+     * Converts an expected score into an Elo difference, clamped so a whitewash stays finite.
+     *
+     * @param score the expected score, from 0 to 1
+     * @return the rating difference that predicts that score
+     */
+    static double elo(double score) {
+        double clamped = Math.max(0.001, Math.min(0.999, score));
+        return -400 * Math.log10(1 / clamped - 1);
+    }
+}
@@ -0,0 +1,42 @@
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TournamentTest {
+
+    @Test
+    public void testEloOfEvenScoreIsZero() {
+        assertEquals(0, Tournament.elo(0.5), 1e-9);
+        assertEquals(191, Tournament.elo(0.75), 1);
+        assertEquals(-191, Tournament.elo(0.25), 1);
+        assertTrue(Double.isFinite(Tournament.elo(1)));
+    }
+
+    @Test
+    public void testPercentileByNearestRank() {
+        long[] sorted = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
+        assertEquals(5, Tournament.percentile(sorted, 50));
+        assertEquals(9, Tournament.percentile(sorted, 90));
+        assertEquals(10, Tournament.percentile(sorted, 100));
+        assertEquals(0, Tournament.percentile(new long[0], 50));
+    }
+
+    @Test
+    public void testRunIsReproducible() throws Exception {
+        Tournament tournament = new Tournament("random", "alphabeta", 6, 2, 3, 10_000, 1, 3, 7);
+        StringWriter first = new StringWriter();
+        List<Tournament.GameRecord> records = tournament.run(first);
+        StringWriter second = new StringWriter();
+        List<Tournament.GameRecord> again = tournament.run(second);
+
+        assertEquals(6, records.size());
+        assertEquals(6, first.toString().split("\n").length);
+        for (int g = 0; g < records.size(); g++) {
+            assertEquals(records.get(g).toString(), again.get(g).toString());
+        }
+        assertTrue(tournament.summary(records).contains("Elo"));
+    }
+}
@@ -0,0 +1,114 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size table of search results keyed by Zobrist position key, shared by any number of search threads
+ * without locks. Each entry is two longs: the packed data and the key XOR-ed with that data, so an entry torn by
+ * two threads writing at once simply fails the key check on the next probe instead of returning wrong data.
+ * A slot is replaced only by a search at least as deep, unless its entry is left over from an earlier search.
+ */
+public final class TranspositionTable {
+    public static final int EXACT = 1;
+    public static final int LOWER = 2; // score is at least the stored value
+    public static final int UPPER = 3; // score is at most the stored value
+
+    public static final long MISS = 0;
+    public static final int NO_MOVE = 0xFFFF;
+
+    private static final int ENTRY_BYTES = 16;
+
+    private final AtomicLongArray table;
+    private final int mask;
+    private volatile int age = 1;
+
+    /**
+     * Creates an empty table using about the given amount of memory, rounded down to a power of two entries.
+     *
+     * @param megabytes the memory to use
+     */
+    public TranspositionTable(int megabytes) {
+        long entries = Long.highestOneBit(Math.max(1L, (long) megabytes * 1024 * 1024 / ENTRY_BYTES));
+        if (entries > (1 << 29)) entries = 1 << 29;
+        this.table = new AtomicLongArray((int) entries * 2);
+        this.mask = (int) entries - 1;
+    }
+
+    /**
+     * Starts a new search; entries from earlier searches become the first to be replaced.
+     */
+    public void newSearch() {
+        age = (age % 63) + 1;
+    }
+
+    /**
+     * Empties the table.
+     */
+    public void clear() {
+        for (int i = 0; i < table.length(); i++) {
+            table.set(i, 0);
+        }
+    }
+
+    /**
+     * Looks up a position.
+     *
+     * @param key the position key
+     * @return the packed entry, to be read with move/score/depth/bound, or MISS if the position is not stored
+     */
+    public long probe(long key) {
+        int slot = (int) key & mask;
+        long data = table.get(2 * slot + 1);
+        long check = table.get(2 * slot);
+        if (data == MISS || (check ^ data) != key) return MISS;
+        return data;
+    }
+
+    /**
+     * Stores a search result, unless the slot holds a deeper result from the current search.
+     *
+     * @param key the position key
+     * @param move the best move found, or NO_MOVE
+     * @param score the score of the position for the side to move
+     * @param depth the remaining depth the score was searched to
+     * @param bound EXACT, LOWER or UPPER
+     */
+    public void store(long key, int move, int score, int depth, int bound) {
+        int slot = (int) key & mask;
+        long old = table.get(2 * slot + 1);
+        if (old != MISS) {
+            boolean sameKey = (table.get(2 * slot) ^ old) == key;
+            if (!sameKey && age(old) == age && depth(old) > depth) return;
+            if (sameKey && move == NO_MOVE) move = move(old); // keep the best move we already knew
+        }
+        long data = pack(move, score, depth, bound, age);
+        table.set(2 * slot + 1, data);
+        table.set(2 * slot, key ^ data);
+    }
+
+    static long pack(int move, int score, int depth, int bound, int age) {
+        return ((long) score << 32)
+                | ((long) (move & 0xFFFF) << 16)
+                | ((long) Math.max(0, Math.min(depth, 255)) << 8)
+                | ((long) bound << 6)
+                | age;
+    }
+
+    public static int move(long entry) {
+        return (int) (entry >>> 16) & 0xFFFF;
+    }
+
+    public static int score(long entry) {
+        return (int) (entry >> 32);
+    }
+
+    public static int depth(long entry) {
+        return (int) (entry >>> 8) & 0xFF;
+    }
+
+    public static int bound(long entry) {
+        return (int) (entry >>> 6) & 0x3;
+    }
+
+    static int age(long entry) {
+        return (int) entry & 0x3F;
+    }
+}
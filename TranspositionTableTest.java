@@ -0,0 +1,64 @@
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TranspositionTableTest {
+
+    @Test
+    public void testStoreAndProbe() {
+        TranspositionTable table = new TranspositionTable(1);
+        long key = 0x1234_5678_9ABC_DEF0L;
+        table.store(key, 42, -17, 5, TranspositionTable.EXACT);
+
+        long entry = table.probe(key);
+        assertNotEquals(TranspositionTable.MISS, entry);
+        assertEquals(42, TranspositionTable.move(entry));
+        assertEquals(-17, TranspositionTable.score(entry));
+        assertEquals(5, TranspositionTable.depth(entry));
+        assertEquals(TranspositionTable.EXACT, TranspositionTable.bound(entry));
+        assertEquals(TranspositionTable.MISS, table.probe(key + 1));
+    }
+
+    @Test
+    public void testDeeperEntryIsKept() {
+        TranspositionTable table = new TranspositionTable(1);
+        long key = 7;
+        long other = key + (1L << 40); // same slot, different position
+        table.store(key, 1, 10, 8, TranspositionTable.EXACT);
+        table.store(other, 2, 20, 3, TranspositionTable.LOWER);
+
+        assertEquals(1, TranspositionTable.move(table.probe(key)));
+        assertEquals(TranspositionTable.MISS, table.probe(other));
+
+        table.newSearch();
+        table.store(other, 2, 20, 3, TranspositionTable.LOWER);
+        assertEquals(2, TranspositionTable.move(table.probe(other)));
+    }
+
+    @Test
+    public void testConcurrentWritersNeverReturnForeignData() throws InterruptedException {
+        TranspositionTable table = new TranspositionTable(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int seed = t;
+            threads.add(new Thread(() -> {
+                SplittableRandom random = new SplittableRandom(seed);
+                for (int i = 0; i < 200_000; i++) {
+                    long key = random.nextLong();
+                    // The score is derived from the key, so any entry read back must match its own key
+                    table.store(key, (int) (key & 0xFFF), (int) (key >> 40), (int) (key & 31), TranspositionTable.EXACT);
+                    long entry = table.probe(key);
+                    if (entry != TranspositionTable.MISS && TranspositionTable.score(entry) != (int) (key >> 40)) {
+                        throw new AssertionError("entry does not belong to its key");
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) thread.start();
+        for (Thread thread : threads) thread.join();
+    }
+}
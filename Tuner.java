@@ -0,0 +1,371 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+/**
+ * Texel-style tuner for EvalWeights. It reads positions labelled with the final result of the game they came from,
+ * then fits the weights so that a logistic curve of the score predicts those results, by minimising the mean
+ * squared error. The stone weight stays fixed to anchor the scale; the curve's steepness is fitted to it first.
+ * Positions are streamed from disk in blocks and their features extracted through GameManager's rules on a parallel
+ * stream, and every loss and gradient is summed over chunks in parallel.
+ * It also writes such datasets from self-play games of a depth-limited Search.
+ *
+ * Dataset lines are "CELLS SIDE RESULT": one character per cell in BoardTopology order ('r', 'b' or '.'),
+ * the side to move ('r' or 'b') and red's result (1, 0.5 or 0). Datasets can also be PositionStore files, which
+ * take a quarter of the space and load without parsing; an --out file ending in .positions is written as one.
+ *
+ * Usage: java Tuner --generate=GAMES --out=FILE [--radius=R] [--depth=D] [--seed=S] [--threads=N] to write a
+ * dataset, or java Tuner --data=FILE --out=WEIGHTS [--iterations=N] to tune.
+ */
+public class Tuner {
+    private static final int BLOCK = 1 << 16; // lines read before their features are extracted in parallel
+    private static final int CHUNK = 1 << 14; // positions per parallel loss task
+    private static final int OPENING_PLIES = 4;
+    private static final double RATE = 2.0;
+    private static final long NO_TIME_LIMIT = 24 * 3600 * 1000L; // self-play searches stop at their depth
+    static final String STORE_EXTENSION = ".positions";
+
+    /**
+     * Feature differences from red's side and red's result for every position of a dataset.
+     */
+    static final class Dataset {
+        int size;
+        int[] features = new int[EvalWeights.FEATURES * 1024];
+        double[] results = new double[1024];
+
+        void ensure(int capacity) {
+            if (capacity <= results.length) return;
+            int grown = Math.max(capacity, results.length * 2);
+            features = Arrays.copyOf(features, grown * EvalWeights.FEATURES);
+            results = Arrays.copyOf(results, grown);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String generate = null;
+        String data = null;
+        String out = null;
+        int radius = GameState.DEFAULT_RADIUS;
+        int depth = 2;
+        long seed = 1;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int iterations = 300;
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            if (option.length != 2) throw new IllegalArgumentException("expected --name=value: " + arg);
+            switch (option[0]) {
+                case "--generate": generate = option[1]; break;
+                case "--data": data = option[1]; break;
+                case "--out": out = option[1]; break;
+                case "--radius": radius = Integer.parseInt(option[1]); break;
+                case "--depth": depth = Integer.parseInt(option[1]); break;
+                case "--seed": seed = Long.parseLong(option[1]); break;
+                case "--threads": threads = Integer.parseInt(option[1]); break;
+                case "--iterations": iterations = Integer.parseInt(option[1]); break;
+                default: throw new IllegalArgumentException("unknown option " + option[0]);
+            }
+        }
+        if (out == null) throw new IllegalArgumentException("--out=FILE is required");
+
+        long start = System.nanoTime();
+        if (generate != null) {
+            long positions = generate(Paths.get(out), Integer.parseInt(generate), radius, depth, seed, threads);
+            System.out.printf("wrote %d positions in %.1f s%n", positions, (System.nanoTime() - start) / 1e9);
+            return;
+        }
+        if (data == null) throw new IllegalArgumentException("--data=FILE or --generate=GAMES is required");
+        Dataset dataset = load(Paths.get(data));
+        System.out.printf("loaded %d positions in %.1f s%n", dataset.size, (System.nanoTime() - start) / 1e9);
+        double k = fitScale(dataset, EvalWeights.DEFAULT);
+        System.out.printf("scale %.3f, loss %.6f with %s%n", k, loss(dataset, EvalWeights.DEFAULT, k),
+                EvalWeights.DEFAULT);
+        EvalWeights tuned = tune(dataset, EvalWeights.DEFAULT, k, iterations);
+        System.out.printf("loss %.6f with %s after %.1f s%n", loss(dataset, tuned, k), tuned,
+                (System.nanoTime() - start) / 1e9);
+        tuned.save(Paths.get(out), "tuned on " + dataset.size + " positions from " + data);
+    }
+
+    /**
+     * Reads a dataset, extracting the features of each block of lines in parallel.
+     */
+    static Dataset load(Path path) throws IOException {
+        if (PositionStore.recognises(path)) return loadStore(path);
+        Dataset dataset = new Dataset();
+        ThreadLocal<GameState> states = new ThreadLocal<>();
+        ThreadLocal<int[]> buffers = ThreadLocal.withInitial(() -> new int[EvalWeights.FEATURES]);
+        try (BufferedReader reader = Files.newBufferedReader(path)) {
+            String[] block = new String[BLOCK];
+            int count;
+            do {
+                count = 0;
+                for (String line; count < BLOCK && (line = reader.readLine()) != null; ) {
+                    if (!line.isEmpty()) block[count++] = line;
+                }
+                int base = dataset.size;
+                dataset.ensure(base + count);
+                String[] lines = block;
+                IntStream.range(0, count).parallel().forEach(i -> {
+                    String[] fields = lines[i].split(" ");
+                    int radius = radiusOf(fields[0].length());
+                    GameState state = states.get();
+                    if (state == null || state.topology.radius != radius) {
+                        state = new GameState(radius);
+                        states.set(state);
+                    }
+                    parse(fields[0], fields[1], state);
+                    int[] features = buffers.get();
+                    EvalWeights.features(state, Colour.RED, features);
+                    System.arraycopy(features, 0, dataset.features, (base + i) * EvalWeights.FEATURES,
+                            EvalWeights.FEATURES);
+                    dataset.results[base + i] = Double.parseDouble(fields[2]);
+                });
+                dataset.size += count;
+            } while (count == BLOCK);
+        }
+        return dataset;
+    }
+
+    // Reads a PositionStore dataset, unpacking and extracting the features of each chunk of positions in parallel
+    private static Dataset loadStore(Path path) throws IOException {
+        try (PositionStore store = PositionStore.open(path)) {
+            if (store.size() > Integer.MAX_VALUE / EvalWeights.FEATURES) {
+                throw new IOException(path + " has too many positions to tune on in memory");
+            }
+            int size = (int) store.size();
+            Dataset dataset = new Dataset();
+            dataset.ensure(size);
+            IntStream.range(0, (size + CHUNK - 1) / CHUNK).parallel().forEach(chunk -> {
+                GameState state = new GameState(store.radius);
+                int[] features = new int[EvalWeights.FEATURES];
+                long end = Math.min(size, (long) (chunk + 1) * CHUNK);
+                store.scan((long) chunk * CHUNK, end, (index, position, outcome) -> {
+                    PositionCodec.decode(position, 0, state);
+                    EvalWeights.features(state, Colour.RED, features);
+                    System.arraycopy(features, 0, dataset.features, (int) index * EvalWeights.FEATURES,
+                            EvalWeights.FEATURES);
+                    dataset.results[(int) index] = result(outcome);
+                });
+            });
+            dataset.size = size;
+            return dataset;
+        }
+    }
+
+    // Red's result for the winner of a game
+    private static double result(int winner) {
+        return winner == Colour.RED ? 1 : winner == Colour.BLUE ? 0 : 0.5;
+    }
+
+    /**
+     * Finds the curve steepness that best fits the given weights, by golden-section search.
+     */
+    static double fitScale(Dataset dataset, EvalWeights weights) {
+        double low = 0.01;
+        double high = 10;
+        double ratio = (Math.sqrt(5) - 1) / 2;
+        for (int i = 0; i < 60; i++) {
+            double a = high - ratio * (high - low);
+            double b = low + ratio * (high - low);
+            if (loss(dataset, weights, a) < loss(dataset, weights, b)) high = b; else low = a;
+        }
+        return (low + high) / 2;
+    }
+
+    /**
+     * @return the mean squared error between the results and the predicted results
+     */
+    static double loss(Dataset dataset, EvalWeights weights, double k) {
+        double[] w = new double[EvalWeights.FEATURES];
+        for (int f = 0; f < w.length; f++) w[f] = weights.weight(f);
+        return sum(dataset, w, k, null) / Math.max(1, dataset.size);
+    }
+
+    /**
+     * Adjusts every weight but the stone weight by gradient descent with per-weight step sizes (Adam),
+     * then rounds them to whole numbers.
+     */
+    static EvalWeights tune(Dataset dataset, EvalWeights initial, double k, int iterations) {
+        int n = EvalWeights.FEATURES;
+        double[] w = new double[n];
+        for (int f = 0; f < n; f++) w[f] = initial.weight(f);
+        double[] gradient = new double[n];
+        double[] mean = new double[n];
+        double[] variance = new double[n];
+        for (int t = 1; t <= iterations; t++) {
+            Arrays.fill(gradient, 0);
+            sum(dataset, w, k, gradient);
+            for (int f = 1; f < n; f++) {
+                double g = gradient[f] / Math.max(1, dataset.size);
+                mean[f] = 0.9 * mean[f] + 0.1 * g;
+                variance[f] = 0.999 * variance[f] + 0.001 * g * g;
+                double m = mean[f] / (1 - Math.pow(0.9, t));
+                double v = variance[f] / (1 - Math.pow(0.999, t));
+                w[f] -= RATE * m / (Math.sqrt(v) + 1e-12);
+            }
+        }
+        return new EvalWeights((int) Math.round(w[0]), (int) Math.round(w[1]), (int) Math.round(w[2]),
+                (int) Math.round(w[3]));
+    }
+
+    // Sums the squared errors over parallel chunks, adding the gradient of the sum when gradient is not null
+    private static double sum(Dataset dataset, double[] w, double k, double[] gradient) {
+        int n = EvalWeights.FEATURES;
+        int chunks = (dataset.size + CHUNK - 1) / CHUNK;
+        double[][] partial = IntStream.range(0, chunks).parallel().mapToObj(chunk -> {
+            double[] local = new double[n + 1];
+            int end = Math.min(dataset.size, (chunk + 1) * CHUNK);
+            for (int i = chunk * CHUNK; i < end; i++) {
+                int at = i * n;
+                double score = 0;
+                for (int f = 0; f < n; f++) score += w[f] * dataset.features[at + f];
+                double predicted = 1 / (1 + Math.exp(-k * score / 400));
+                double error = predicted - dataset.results[i];
+                local[n] += error * error;
+                if (gradient != null) {
+                    double slope = 2 * error * predicted * (1 - predicted) * k / 400;
+                    for (int f = 0; f < n; f++) local[f] += slope * dataset.features[at + f];
+                }
+            }
+            return local;
+        }).toArray(double[][]::new);
+
+        double total = 0;
+        for (double[] local : partial) {
+            total += local[n];
+            if (gradient != null) {
+                for (int f = 0; f < n; f++) gradient[f] += local[f];
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Plays self-play games on a pool of threads and writes every position with the game's result,
+     * to a PositionStore if the path ends in .positions and as dataset lines otherwise.
+     * Each game opens with a few seeded random moves, so the games differ.
+     *
+     * @return the number of positions written
+     */
+    static long generate(Path path, int games, int radius, int depth, long seed, int threads) throws Exception {
+        boolean packed = path.toString().endsWith(STORE_EXTENSION);
+        if (packed) Files.deleteIfExists(path);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        ThreadLocal<Search> searches = ThreadLocal.withInitial(() -> new Search(new TranspositionTable(4)));
+        long written = 0;
+        try (PositionStore store = packed ? PositionStore.create(path, radius) : null;
+             PrintWriter out = packed ? null : new PrintWriter(new BufferedWriter(Files.newBufferedWriter(path)))) {
+            Object lock = new Object();
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int g = 0; g < games; g++) {
+                int game = g;
+                futures.add(pool.submit(() -> {
+                    List<long[]> positions = new ArrayList<>();
+                    int winner = selfPlay(searches.get(), radius, depth, new SplittableRandom(seed + game), positions);
+                    GameState state = new GameState(radius);
+                    synchronized (lock) {
+                        for (long[] position : positions) {
+                            if (packed) {
+                                store.append(position, 0, winner);
+                            } else {
+                                PositionCodec.decode(position, 0, state);
+                                out.println(format(state) + " " + formatResult(winner));
+                            }
+                        }
+                    }
+                    return positions.size();
+                }));
+            }
+            for (Future<Integer> future : futures) written += future.get();
+            if (out != null && out.checkError()) throw new IOException("could not write " + path);
+        } finally {
+            pool.shutdownNow();
+        }
+        return written;
+    }
+
+    // Plays one game, collecting the packed positions the search moved from, and returns the winner
+    private static int selfPlay(Search search, int radius, int depth, SplittableRandom random, List<long[]> positions) {
+        GameState state = new GameState(radius);
+        int longs = PositionCodec.longs(state.topology.cellCount);
+        int limit = 4 * state.topology.cellCount;
+        int winner = -1;
+        for (int ply = 0; ply < limit; ply++) {
+            winner = GameManager.winner(state);
+            if (winner != -1) break;
+            int player = state.playerTurn;
+            int opponent = player == Colour.RED ? Colour.BLUE : Colour.RED;
+            Bitboard legal = GameManager.legalMoves(state, player);
+            if (legal.isEmpty()) {
+                if (!GameManager.hasLegalMove(state, opponent)) break;
+                GameManager.setPlayerTurn(state, opponent);
+                continue;
+            }
+            MoveResult move;
+            if (ply < OPENING_PLIES) {
+                move = GameManager.evaluate(state, legal.nthSetBit(random.nextInt(legal.cardinality())), player);
+            } else {
+                long[] position = new long[longs];
+                PositionCodec.encode(state, position, 0);
+                positions.add(position);
+                move = search.search(state, NO_TIME_LIMIT, depth);
+            }
+            GameManager.apply(state, move);
+        }
+        if (winner == -1) {
+            int difference = state.stoneCount(Colour.RED) - state.stoneCount(Colour.BLUE);
+            winner = difference > 0 ? Colour.RED : difference < 0 ? Colour.BLUE : Colour.WHITE;
+        }
+        return winner;
+    }
+
+    // Red's result for the winner of a game as it is written in dataset lines
+    private static String formatResult(int winner) {
+        return winner == Colour.RED ? "1" : winner == Colour.BLUE ? "0" : "0.5";
+    }
+
+    /**
+     * @return the cells and side to move of a position as a dataset line, without the result
+     */
+    static String format(GameState state) {
+        StringBuilder line = new StringBuilder(state.topology.cellCount + 2);
+        for (int cell = 0; cell < state.topology.cellCount; cell++) {
+            int colour = state.colourAt(cell);
+            line.append(colour == Colour.RED ? 'r' : colour == Colour.BLUE ? 'b' : '.');
+        }
+        return line.append(' ').append(state.playerTurn == Colour.RED ? 'r' : 'b').toString();
+    }
+
+    /**
+     * Sets a game to the position of a dataset line.
+     */
+    static void parse(String cells, String side, GameState state) {
+        state.reset();
+        for (int cell = 0; cell < cells.length(); cell++) {
+            char c = cells.charAt(cell);
+            if (c != '.') state.setStone(cell, c == 'r' ? Colour.RED : Colour.BLUE);
+        }
+        state.groups.rebuild(state.redStones, state.blueStones);
+        state.playerTurn = side.equals("b") ? Colour.BLUE : Colour.RED;
+        state.move = 2;
+        state.isStartOfGame = false;
+    }
+
+    private static int radiusOf(int cells) {
+        int radius = 0;
+        while (3 * radius * (radius + 1) + 1 < cells) radius++;
+        if (3 * radius * (radius + 1) + 1 != cells) throw new IllegalArgumentException("not a board: " + cells);
+        return radius;
+    }
+}
@@ -0,0 +1,122 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TunerTest {
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("hexoust-tuner");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) Files.delete(file);
+        }
+        Files.delete(directory);
+    }
+
+    private GameState midGame() {
+        GameState state = new GameState(3);
+        GameManager.placeStone(state, state.hexAt(0, 0, 0), Colour.RED);
+        GameManager.placeStone(state, state.hexAt(1, 0, -1), Colour.RED);
+        GameManager.placeStone(state, state.hexAt(1, -1, 0), Colour.BLUE);
+        GameManager.placeStone(state, state.hexAt(-2, 1, 1), Colour.BLUE);
+        GameManager.placeStone(state, state.hexAt(3, -3, 0), Colour.BLUE);
+        state.move = 2;
+        state.isStartOfGame = false;
+        return state;
+    }
+
+    @Test
+    public void testFormatAndParseRoundTrip() {
+        GameState state = midGame();
+        state.playerTurn = Colour.BLUE;
+        String[] fields = Tuner.format(state).split(" ");
+
+        GameState parsed = new GameState(3);
+        Tuner.parse(fields[0], fields[1], parsed);
+
+        assertEquals(state.key(), parsed.key());
+        assertEquals(3, parsed.groups.size(parsed.topology.index(3, -3)) + parsed.groups.size(parsed.topology.index(0, 0)));
+    }
+
+    @Test
+    public void testFeaturesMatchTheScore() {
+        GameState state = midGame();
+        EvalWeights weights = new EvalWeights(100, 7, 11, 3);
+        int[] red = new int[EvalWeights.FEATURES];
+        int[] blue = new int[EvalWeights.FEATURES];
+        EvalWeights.features(state, Colour.RED, red);
+        EvalWeights.features(state, Colour.BLUE, blue);
+
+        int dot = 0;
+        for (int f = 0; f < EvalWeights.FEATURES; f++) {
+            assertEquals(-red[f], blue[f]);
+            dot += weights.weight(f) * red[f];
+        }
+        assertEquals(-1, red[0]);
+        assertEquals(1, red[1]); // a pair against single stones
+        assertEquals(dot, weights.score(state));
+        state.playerTurn = Colour.BLUE;
+        assertEquals(-dot, weights.score(state));
+    }
+
+    @Test
+    public void testWeightsSaveAndLoad() throws IOException {
+        Path file = directory.resolve("weights.properties");
+        new EvalWeights(100, -4, 12, 5).save(file, "test");
+
+        EvalWeights loaded = EvalWeights.load(file);
+
+        assertEquals("stones=100 largestGroup=-4 captureThreats=12 mobility=5", loaded.toString());
+        Files.write(file, List.of("mobility=9"));
+        assertEquals(9, EvalWeights.load(file).weight(3));
+        assertEquals(EvalWeights.DEFAULT.weight(0), EvalWeights.load(file).weight(0));
+    }
+
+    @Test
+    public void testTuningDoesNotIncreaseLoss() throws Exception {
+        Path data = directory.resolve("positions.txt");
+        long written = Tuner.generate(data, 12, 2, 1, 7, 2);
+        assertTrue(written > 0);
+
+        Tuner.Dataset dataset = Tuner.load(data);
+        assertEquals(written, dataset.size);
+        double k = Tuner.fitScale(dataset, EvalWeights.DEFAULT);
+        double before = Tuner.loss(dataset, EvalWeights.DEFAULT, k);
+        EvalWeights tuned = Tuner.tune(dataset, EvalWeights.DEFAULT, k, 100);
+
+        assertEquals(EvalWeights.DEFAULT.weight(0), tuned.weight(0));
+        assertTrue(Tuner.loss(dataset, tuned, k) <= before + 1e-9);
+    }
+
+    @Test
+    public void testPositionStoreDatasetMatchesText() throws Exception {
+        Path text = directory.resolve("positions.txt");
+        Path store = directory.resolve("positions" + Tuner.STORE_EXTENSION);
+        long written = Tuner.generate(text, 6, 2, 1, 3, 1);
+        assertEquals(written, Tuner.generate(store, 6, 2, 1, 3, 1));
+        assertTrue(Files.size(store) < Files.size(text));
+
+        Tuner.Dataset fromText = Tuner.load(text);
+        Tuner.Dataset fromStore = Tuner.load(store);
+        assertEquals(written, fromStore.size);
+        double[] results = Arrays.copyOf(fromStore.results, fromStore.size);
+        assertArrayEquals(Arrays.copyOf(fromText.results, fromText.size), results);
+        int features = EvalWeights.FEATURES * fromText.size;
+        assertArrayEquals(Arrays.copyOf(fromText.features, features),
+                Arrays.copyOf(fromStore.features, features));
+    }
+}
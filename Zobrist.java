@@ -0,0 +1,33 @@
+import java.util.SplittableRandom;
+
+/**
+ * Random 64-bit keys for every (cell, colour) pair of a board plus one for blue to move.
+ * XOR-ing the keys of every stone on the board gives a position key that can be kept up to date one stone at a time,
+ * and the same arrangement of stones always gets the same key however it was reached. The keys come from a fixed
+ * seed, so they are identical across runs and can be stored on disk.
+ */
+public final class Zobrist {
+    private static final long SEED = 0x48657841757374L;
+
+    private final long[] red;
+    private final long[] blue;
+    public final long blueToMove;
+
+    Zobrist(int cellCount) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        red = new long[cellCount];
+        blue = new long[cellCount];
+        for (int cell = 0; cell < cellCount; cell++) {
+            red[cell] = random.nextLong();
+            blue[cell] = random.nextLong();
+        }
+        blueToMove = random.nextLong();
+    }
+
+    /**
+     * @return the key of a stone of the given colour on the given cell
+     */
+    public long stone(int cell, int colour) {
+        return colour == Colour.RED ? red[cell] : blue[cell];
+    }
+}